@@ -0,0 +1,80 @@
+package dev.firstdark.rpc.benchmarks;
+
+import dev.firstdark.rpc.DiscordRpc;
+import dev.firstdark.rpc.RpcFixtures;
+import dev.firstdark.rpc.benchmarks.support.Payloads;
+import dev.firstdark.rpc.connection.unix.LoopbackBackend;
+import dev.firstdark.rpc.enums.OpCode;
+import dev.firstdark.rpc.handlers.RPCEventHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author HypherionSA
+ * Inbound event handling in {@link DiscordRpc#updateConnection()}, from raw frames to queued callbacks.
+ * Runs over an in-memory transport, so no socket overhead is included. Optionally with traffic capture enabled,
+ * and with metrics disabled, to measure the overhead of both
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EventDispatchBenchmark {
+
+    @Param({"1", "50"})
+    public int burstSize;
+
+    @Param({"false", "true"})
+    public boolean capture;
+
+    @Param({"true", "false"})
+    public boolean metrics;
+
+    private LoopbackBackend backend;
+    private DiscordRpc rpc;
+    private byte[] burst;
+    private Path captureFile;
+
+    @Setup
+    public void setup() throws Exception {
+        this.backend = new LoopbackBackend();
+        this.rpc = new DiscordRpc(true);
+        this.rpc.getMetrics().setEnabled(this.metrics);
+
+        if (this.capture) {
+            this.captureFile = Files.createTempFile("discord-rpc-capture", ".bin");
+            this.rpc.startCapture(this.captureFile, 64 * 1024 * 1024);
+        }
+
+        RpcFixtures.init(this.rpc, Payloads.APPLICATION_ID, new RPCEventHandler(), this.backend, "loopback");
+
+        // Handshake, then READY
+        this.rpc.updateConnection();
+        this.backend.feedFrame(OpCode.FRAME, Payloads.READY);
+        this.rpc.updateConnection();
+        this.rpc.runCallbacks();
+
+        this.burst = Payloads.eventBurst(this.burstSize);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        this.rpc.shutdown();
+
+        if (this.captureFile != null)
+            Files.deleteIfExists(this.captureFile);
+    }
+
+    @Benchmark
+    public void dispatchBurst() throws Exception {
+        this.backend.feed(this.burst);
+        this.rpc.updateConnection();
+        this.rpc.runCallbacks();
+        this.backend.drainOutbound();
+    }
+}
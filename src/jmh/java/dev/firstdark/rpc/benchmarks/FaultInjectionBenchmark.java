@@ -0,0 +1,74 @@
+package dev.firstdark.rpc.benchmarks;
+
+import dev.firstdark.rpc.DiscordRpc;
+import dev.firstdark.rpc.RpcFixtures;
+import dev.firstdark.rpc.benchmarks.support.Payloads;
+import dev.firstdark.rpc.connection.unix.FaultInjectingBackend;
+import dev.firstdark.rpc.connection.unix.FaultProfile;
+import dev.firstdark.rpc.connection.unix.LoopbackBackend;
+import dev.firstdark.rpc.enums.OpCode;
+import dev.firstdark.rpc.handlers.RPCEventHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author HypherionSA
+ * Event dispatch and presence sending throughput when the transport splits every read and write.
+ * Compare the "short-io" profile against "none" to see the cost of handling partial I/O
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FaultInjectionBenchmark {
+
+    @Param({"none", "short-io"})
+    public String faults;
+
+    private LoopbackBackend backend;
+    private DiscordRpc rpc;
+    private byte[] burst;
+
+    @Setup
+    public void setup() throws Exception {
+        FaultProfile profile = this.faults.equals("none") ? FaultProfile.none() : FaultProfile.builder()
+                .seed(42)
+                .shortReadChance(1)
+                .shortWriteChance(1)
+                .build();
+
+        this.backend = new LoopbackBackend();
+        this.rpc = new DiscordRpc(true);
+        RpcFixtures.init(this.rpc, Payloads.APPLICATION_ID, new RPCEventHandler(), new FaultInjectingBackend(this.backend, profile), "loopback");
+
+        this.rpc.updateConnection();
+        this.backend.feedFrame(OpCode.FRAME, Payloads.READY);
+        this.rpc.updateConnection();
+        this.rpc.runCallbacks();
+
+        this.burst = Payloads.eventBurst(50);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.rpc.shutdown();
+    }
+
+    @Benchmark
+    public void dispatchBurst() throws Exception {
+        this.backend.feed(this.burst);
+        this.rpc.updateConnection();
+        this.rpc.runCallbacks();
+        this.backend.drainOutbound();
+    }
+
+    @Benchmark
+    public void sendPresence() throws Exception {
+        this.rpc.updatePresence(Payloads.fullPresence());
+        this.rpc.updateConnection();
+        this.backend.drainOutbound();
+    }
+}
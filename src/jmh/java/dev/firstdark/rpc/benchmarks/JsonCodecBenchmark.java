@@ -0,0 +1,80 @@
+package dev.firstdark.rpc.benchmarks;
+
+import dev.firstdark.rpc.benchmarks.support.Payloads;
+import dev.firstdark.rpc.json.GsonJsonCodec;
+import dev.firstdark.rpc.json.JsonCodec;
+import dev.firstdark.rpc.json.StreamingJsonCodec;
+import dev.firstdark.rpc.models.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author HypherionSA
+ * The built-in {@link StreamingJsonCodec} against the {@link GsonJsonCodec}, for every shape the SDK writes and reads.
+ * Reads go through {@link InboundMessage}, like they do in the SDK. Join requests repeat the same user, like requests
+ * from the same friend do, so they are served by the {@link dev.firstdark.rpc.json.UserCache}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JsonCodecBenchmark {
+
+    @Param({"builtin", "gson"})
+    public String codecName;
+
+    private JsonCodec codec;
+    private DiscordRichPresence presence;
+    private final InboundMessage message = new InboundMessage();
+    private byte[] ready;
+    private byte[] joinRequest;
+    private byte[] joinSecret;
+    private long nonce;
+
+    @Setup
+    public void setup() {
+        this.codec = this.codecName.equals("gson") ? new GsonJsonCodec() : new StreamingJsonCodec();
+        this.presence = Payloads.fullPresence();
+        this.ready = Payloads.READY.getBytes(StandardCharsets.UTF_8);
+        this.joinRequest = Payloads.ACTIVITY_JOIN_REQUEST.getBytes(StandardCharsets.UTF_8);
+        this.joinSecret = Payloads.ACTIVITY_JOIN.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] writeHandshake() {
+        return this.codec.writeHandshake(1, Payloads.APPLICATION_ID);
+    }
+
+    @Benchmark
+    public byte[] writeCommand() {
+        return this.codec.writeCommand("SEND_ACTIVITY_JOIN_INVITE", null, Collections.singletonMap("user_id", "234567890123456789"), this.nonce++);
+    }
+
+    @Benchmark
+    public byte[] writeActivity() {
+        return this.codec.writeActivity(this.presence, 4242, this.nonce++);
+    }
+
+    @Benchmark
+    public ReadyEvent readReady() {
+        this.message.decode(this.ready, 0, this.ready.length);
+        return this.message.readData(this.codec, ReadyEvent.class);
+    }
+
+    @Benchmark
+    public DiscordJoinRequest readJoinRequest() {
+        this.message.decode(this.joinRequest, 0, this.joinRequest.length);
+        return this.message.readData(this.codec, DiscordJoinRequest.class);
+    }
+
+    @Benchmark
+    public SecretEvent readSecret() {
+        this.message.decode(this.joinSecret, 0, this.joinSecret.length);
+        return this.message.readData(this.codec, SecretEvent.class);
+    }
+}
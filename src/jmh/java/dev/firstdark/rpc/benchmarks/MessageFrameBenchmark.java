@@ -0,0 +1,55 @@
+package dev.firstdark.rpc.benchmarks;
+
+import dev.firstdark.rpc.benchmarks.support.Payloads;
+import dev.firstdark.rpc.enums.OpCode;
+import dev.firstdark.rpc.models.MessageFrame;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author HypherionSA
+ * Encoding and decoding cost of a single IPC frame
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MessageFrameBenchmark {
+
+    @Param({"128", "1024", "16384"})
+    public int payloadSize;
+
+    private MessageFrame outbound;
+    private MessageFrame inbound;
+
+    @Setup
+    public void setup() {
+        this.outbound = new MessageFrame(OpCode.FRAME, Payloads.eventOfSize(this.payloadSize));
+        byte[] encoded = this.outbound.write().array();
+
+        this.inbound = new MessageFrame();
+        System.arraycopy(encoded, 0, this.inbound.getHeaderBuffer(), 0, 8);
+        System.arraycopy(encoded, 8, this.inbound.getMessageBuffer(), 0, encoded.length - 8);
+        this.inbound.parseHeader();
+    }
+
+    @Benchmark
+    public ByteBuffer write() {
+        return this.outbound.write();
+    }
+
+    @Benchmark
+    public boolean parseHeader() {
+        return this.inbound.parseHeader();
+    }
+
+    @Benchmark
+    public String parseMessage() {
+        this.inbound.parseMessage();
+        return this.inbound.getMessage();
+    }
+}
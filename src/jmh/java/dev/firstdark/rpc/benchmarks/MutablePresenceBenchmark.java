@@ -0,0 +1,61 @@
+package dev.firstdark.rpc.benchmarks;
+
+import dev.firstdark.rpc.benchmarks.support.Payloads;
+import dev.firstdark.rpc.models.DiscordRichPresence;
+import dev.firstdark.rpc.presence.MutablePresence;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author HypherionSA
+ * Per-frame presence updates from a render loop, where most frames don't change anything.
+ * Compares building a new {@link DiscordRichPresence} every frame, against mutating a single {@link MutablePresence}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MutablePresenceBenchmark {
+
+    private final String[] states = { "Wave 12 of 50", "Wave 13 of 50" };
+
+    private MutablePresence presence;
+    private MutablePresence shadow;
+    private int frame;
+
+    @Setup
+    public void setup() {
+        this.presence = new MutablePresence().set(Payloads.fullPresence());
+        this.shadow = new MutablePresence();
+        this.presence.copyTo(this.shadow);
+    }
+
+    @Benchmark
+    public DiscordRichPresence builderPerFrame() {
+        return DiscordRichPresence.builder()
+                .state(this.states[(this.frame++ >> 6) & 1])
+                .details("Survival - Hard")
+                .largeImageKey("map_forest")
+                .largeImageText("Whispering Forest")
+                .partySize(3)
+                .partyMax(4)
+                .button(DiscordRichPresence.RPCButton.of("Website", "https://firstdark.dev"))
+                .build();
+    }
+
+    @Benchmark
+    public int mutablePerFrame() {
+        // The state changes once every 64 frames, like a wave counter
+        this.presence.setState(this.states[(this.frame++ >> 6) & 1])
+                .setDetails("Survival - Hard")
+                .setLargeImage("map_forest", "Whispering Forest")
+                .setPartySize(3, 4)
+                .setButton(0, "Website", "https://firstdark.dev");
+
+        // What the IO thread does on every tick
+        return this.presence.isChanged() ? this.presence.copyTo(this.shadow) : 0;
+    }
+}
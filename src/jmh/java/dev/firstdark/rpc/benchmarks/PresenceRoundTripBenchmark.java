@@ -0,0 +1,88 @@
+package dev.firstdark.rpc.benchmarks;
+
+import dev.firstdark.rpc.DiscordRpc;
+import dev.firstdark.rpc.RpcFixtures;
+import dev.firstdark.rpc.benchmarks.support.LocalIpcServer;
+import dev.firstdark.rpc.benchmarks.support.Payloads;
+import dev.firstdark.rpc.enums.OpCode;
+import dev.firstdark.rpc.handlers.RPCEventHandler;
+import dev.firstdark.rpc.models.DiscordRichPresence;
+import dev.firstdark.rpc.models.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author HypherionSA
+ * End-to-end cost of {@link DiscordRpc#updatePresence(DiscordRichPresence)}, until the frame
+ * has been received by a local IPC server over a real UNIX socket
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PresenceRoundTripBenchmark {
+
+    @Param({"minimal", "full"})
+    public String presenceShape;
+
+    private Path directory;
+    private LocalIpcServer server;
+    private LocalIpcServer.Client client;
+    private DiscordRpc rpc;
+    private DiscordRichPresence presence;
+
+    @Setup
+    public void setup() throws Exception {
+        this.presence = this.presenceShape.equals("full") ? Payloads.fullPresence() : Payloads.minimalPresence();
+        this.directory = Files.createTempDirectory("discord-rpc-bench");
+        this.server = new LocalIpcServer(this.directory.resolve("discord-ipc-0"));
+        this.server.start();
+
+        AtomicBoolean ready = new AtomicBoolean(false);
+        this.rpc = new DiscordRpc(true);
+        RpcFixtures.init(this.rpc, Payloads.APPLICATION_ID, new RPCEventHandler() {
+            @Override
+            public void ready(User user) {
+                ready.set(true);
+            }
+        }, null, this.server.getSocketPath().toString());
+
+        // Connect and send the handshake
+        this.rpc.updateConnection();
+        this.client = this.server.accept();
+        this.client.readFrame();
+        this.client.writeFrame(OpCode.FRAME, Payloads.READY);
+
+        while (!ready.get()) {
+            this.rpc.updateConnection();
+            this.rpc.runCallbacks();
+            Thread.sleep(1);
+        }
+
+        // Event subscriptions sent after READY
+        this.rpc.updateConnection();
+        for (int i = 0; i < 3; i++)
+            this.client.readFrame();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        this.rpc.shutdown();
+        this.client.close();
+        this.server.close();
+        Files.deleteIfExists(this.directory);
+    }
+
+    @Benchmark
+    public int updatePresence() throws Exception {
+        this.rpc.updatePresence(this.presence);
+        this.rpc.updateConnection();
+        return this.client.readFrame().payload.length;
+    }
+}
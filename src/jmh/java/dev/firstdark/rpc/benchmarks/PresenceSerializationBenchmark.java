@@ -0,0 +1,75 @@
+package dev.firstdark.rpc.benchmarks;
+
+import com.google.gson.JsonObject;
+import dev.firstdark.rpc.benchmarks.support.Payloads;
+import dev.firstdark.rpc.models.DiscordRichPresence;
+import dev.firstdark.rpc.presence.MutablePresence;
+import dev.firstdark.rpc.presence.PresenceEncoder;
+import dev.firstdark.rpc.presence.PresenceTemplate;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author HypherionSA
+ * Cost of turning a {@link DiscordRichPresence} into the bytes that get queued for sending.
+ * Compared against the {@link PresenceEncoder}, when only the state of a {@link MutablePresence} changed,
+ * and against patching a number into a compiled {@link PresenceTemplate}
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PresenceSerializationBenchmark {
+
+    @Param({"minimal", "full"})
+    public String presenceShape;
+
+    private DiscordRichPresence presence;
+    private long nonce;
+
+    private final String[] states = { "Wave 12 of 50", "Wave 13 of 50" };
+    private MutablePresence mutable;
+    private MutablePresence shadow;
+    private PresenceEncoder encoder;
+    private PresenceTemplate template;
+    private int scoreSlot;
+
+    @Setup
+    public void setup() {
+        this.presence = this.presenceShape.equals("full") ? Payloads.fullPresence() : Payloads.minimalPresence();
+
+        this.mutable = new MutablePresence().set(this.presence);
+        this.shadow = new MutablePresence();
+        this.encoder = new PresenceEncoder();
+        this.encoder.encode(this.shadow, this.mutable.copyTo(this.shadow), 4242, this.nonce++);
+
+        this.template = PresenceTemplate.compile(new MutablePresence().set(this.presence).setState("Score: {score}").toRichPresence());
+        this.scoreSlot = this.template.slot("score");
+    }
+
+    @Benchmark
+    public JsonObject toJson() {
+        return this.presence.toJson(4242, this.nonce++);
+    }
+
+    @Benchmark
+    public byte[] toBytes() {
+        return this.presence.toJson(4242, this.nonce++).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encodeStateChange() {
+        this.mutable.setState(this.states[(int) (this.nonce & 1)]);
+        return this.encoder.encode(this.shadow, this.mutable.copyTo(this.shadow), 4242, this.nonce++);
+    }
+
+    @Benchmark
+    public byte[] templatePatch() {
+        this.template.set(this.scoreSlot, this.nonce * 31);
+        return this.template.render(4242, this.nonce++);
+    }
+}
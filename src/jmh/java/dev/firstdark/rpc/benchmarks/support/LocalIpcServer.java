@@ -0,0 +1,161 @@
+package dev.firstdark.rpc.benchmarks.support;
+
+import dev.firstdark.rpc.enums.OpCode;
+import dev.firstdark.rpc.models.MessageFrame;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * @author HypherionSA
+ * Minimal stand-in for the Discord IPC server, listening on a local UNIX socket
+ */
+public class LocalIpcServer implements Closeable {
+
+    private final Path socketPath;
+    private ServerSocketChannel server;
+
+    /**
+     * Create a new server. Nothing is bound until {@link #start()} is called
+     *
+     * @param socketPath The socket file to listen on
+     */
+    public LocalIpcServer(Path socketPath) {
+        this.socketPath = socketPath;
+    }
+
+    /**
+     * Bind the socket and start accepting connections
+     *
+     * @throws IOException Thrown when the socket could not be bound
+     */
+    public void start() throws IOException {
+        Files.deleteIfExists(this.socketPath);
+        this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        this.server.bind(UnixDomainSocketAddress.of(this.socketPath));
+    }
+
+    /**
+     * Wait for the SDK to connect
+     *
+     * @return The connected client
+     * @throws IOException Thrown when the server is closed
+     */
+    public Client accept() throws IOException {
+        return new Client(this.server.accept());
+    }
+
+    /**
+     * @return The socket file the server listens on
+     */
+    public Path getSocketPath() {
+        return this.socketPath;
+    }
+
+    /**
+     * Stop listening and remove the socket file. Connected clients are left open
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.server != null)
+            this.server.close();
+
+        Files.deleteIfExists(this.socketPath);
+    }
+
+    /**
+     * A single connection from the SDK
+     */
+    public static class Client implements Closeable {
+
+        private final SocketChannel channel;
+        private final ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+
+        Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Block until a complete frame is received
+         *
+         * @return The received frame
+         * @throws IOException Thrown when the connection is closed
+         */
+        public Frame readFrame() throws IOException {
+            this.header.clear();
+            this.readFully(this.header);
+            this.header.flip();
+
+            OpCode opCode = OpCode.values()[this.header.getInt()];
+            ByteBuffer payload = ByteBuffer.allocate(this.header.getInt());
+            this.readFully(payload);
+
+            return new Frame(opCode, payload.array());
+        }
+
+        /**
+         * Send a frame to the SDK
+         *
+         * @param opCode The {@link OpCode} of the frame
+         * @param json The JSON payload
+         * @throws IOException Thrown when the connection is closed
+         */
+        public void writeFrame(OpCode opCode, String json) throws IOException {
+            this.write(new MessageFrame(opCode, json).write());
+        }
+
+        /**
+         * Send pre-encoded bytes to the SDK
+         *
+         * @param buffer The bytes to send
+         * @throws IOException Thrown when the connection is closed
+         */
+        public void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining())
+                this.channel.write(buffer);
+        }
+
+        private void readFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (this.channel.read(buffer) < 0)
+                    throw new EOFException("Client disconnected");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.channel.close();
+        }
+    }
+
+    /**
+     * A frame received from the SDK
+     */
+    public static class Frame {
+
+        public final OpCode opCode;
+        public final byte[] payload;
+
+        Frame(OpCode opCode, byte[] payload) {
+            this.opCode = opCode;
+            this.payload = payload;
+        }
+
+        /**
+         * @return The payload decoded as UTF-8
+         */
+        public String json() {
+            return new String(this.payload, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package dev.firstdark.rpc.benchmarks.support;
+
+import dev.firstdark.rpc.enums.ActivityType;
+import dev.firstdark.rpc.enums.OpCode;
+import dev.firstdark.rpc.models.DiscordRichPresence;
+import dev.firstdark.rpc.models.MessageFrame;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * @author HypherionSA
+ * Shared fixtures for benchmarks and load tests, modelled on real Discord IPC traffic
+ */
+public final class Payloads {
+
+    public static final String APPLICATION_ID = "1000773209924317265";
+
+    public static final String READY = "{\"cmd\":\"DISPATCH\",\"evt\":\"READY\",\"nonce\":null,\"data\":{\"v\":1,"
+            + "\"config\":{\"cdn_host\":\"cdn.discordapp.com\",\"api_endpoint\":\"//discord.com/api\",\"environment\":\"production\"},"
+            + "\"user\":{\"id\":\"123456789012345678\",\"username\":\"benchmark\",\"discriminator\":\"0\",\"global_name\":\"Benchmark\","
+            + "\"avatar\":\"a_0123456789abcdef0123456789abcdef\",\"bot\":false,\"flags\":0,\"premium_type\":0}}}";
+
+    public static final String ACTIVITY_JOIN = "{\"cmd\":\"DISPATCH\",\"evt\":\"ACTIVITY_JOIN\",\"nonce\":null,\"data\":{\"secret\":\"join-secret-0123456789\"}}";
+
+    public static final String ACTIVITY_SPECTATE = "{\"cmd\":\"DISPATCH\",\"evt\":\"ACTIVITY_SPECTATE\",\"nonce\":null,\"data\":{\"secret\":\"spectate-secret-0123456789\"}}";
+
+    public static final String ACTIVITY_JOIN_REQUEST = "{\"cmd\":\"DISPATCH\",\"evt\":\"ACTIVITY_JOIN_REQUEST\",\"nonce\":null,\"data\":{\"user\":"
+            + "{\"id\":\"234567890123456789\",\"username\":\"friend\",\"discriminator\":\"0\",\"global_name\":\"Friend\","
+            + "\"avatar\":\"0123456789abcdef0123456789abcdef\"}}}";
+
+    public static final String SET_ACTIVITY_ACK = "{\"cmd\":\"SET_ACTIVITY\",\"evt\":null,\"nonce\":\"42\",\"data\":{\"name\":\"Benchmark\","
+            + "\"application_id\":\"1000773209924317265\",\"type\":0}}";
+
+    private Payloads() {}
+
+    /**
+     * Build a DISPATCH frame payload of roughly the requested size
+     *
+     * @param size The approximate size of the JSON, in bytes
+     * @return The JSON payload
+     */
+    public static String eventOfSize(int size) {
+        StringBuilder secret = new StringBuilder();
+
+        while (secret.length() + 80 < size)
+            secret.append((char) ('a' + secret.length() % 26));
+
+        return "{\"cmd\":\"DISPATCH\",\"evt\":\"ACTIVITY_JOIN\",\"nonce\":null,\"data\":{\"secret\":\"" + secret + "\"}}";
+    }
+
+    /**
+     * Encode a burst of inbound events, cycling through join, spectate, join request and command acks
+     *
+     * @param count The number of frames in the burst
+     * @return The encoded frames, back to back
+     */
+    public static byte[] eventBurst(int count) {
+        String[] events = {ACTIVITY_JOIN, ACTIVITY_SPECTATE, ACTIVITY_JOIN_REQUEST, SET_ACTIVITY_ACK};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for (int i = 0; i < count; i++) {
+            byte[] frame = new MessageFrame(OpCode.FRAME, events[i % events.length]).write().array();
+            out.write(frame, 0, frame.length);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * A presence with only the fields most games set
+     *
+     * @return The presence
+     */
+    public static DiscordRichPresence minimalPresence() {
+        return DiscordRichPresence.builder()
+                .details("In the main menu")
+                .largeImageKey("logo")
+                .build();
+    }
+
+    /**
+     * A presence with every section populated
+     *
+     * @return The presence
+     */
+    public static DiscordRichPresence fullPresence() {
+        return DiscordRichPresence.builder()
+                .state("Wave 12 of 50")
+                .details("Survival - Hard")
+                .startTimestamp(1_700_000_000L)
+                .endTimestamp(1_700_003_600L)
+                .largeImageKey("map_forest")
+                .largeImageText("Whispering Forest")
+                .smallImageKey("class_ranger")
+                .smallImageText("Ranger - Level 42")
+                .partyId("party-0123456789")
+                .partySize(3)
+                .partyMax(4)
+                .matchSecret("match-secret-0123456789")
+                .joinSecret("join-secret-0123456789")
+                .spectateSecret("spectate-secret-0123456789")
+                .activityType(ActivityType.PLAYING)
+                .button(DiscordRichPresence.RPCButton.of("Website", "https://firstdark.dev"))
+                .button(DiscordRichPresence.RPCButton.of("Discord", "https://discord.firstdark.dev"))
+                .build();
+    }
+}
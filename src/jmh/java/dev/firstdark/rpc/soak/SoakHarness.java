@@ -0,0 +1,288 @@
+package dev.firstdark.rpc.soak;
+
+import dev.firstdark.rpc.DiscordRpc;
+import dev.firstdark.rpc.RpcFixtures;
+import dev.firstdark.rpc.benchmarks.support.Payloads;
+import dev.firstdark.rpc.enums.ErrorCode;
+import dev.firstdark.rpc.handlers.RPCEventHandler;
+import dev.firstdark.rpc.metrics.HistogramSnapshot;
+import dev.firstdark.rpc.metrics.LatencyHistogram;
+import dev.firstdark.rpc.metrics.RpcMetricsSnapshot;
+import dev.firstdark.rpc.models.DiscordJoinRequest;
+import dev.firstdark.rpc.models.DiscordRichPresence;
+import dev.firstdark.rpc.models.User;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * @author HypherionSA
+ * Long-running load test for {@link DiscordRpc}. Drives presence updates and inbound events at fixed rates
+ * against a {@link StandInServer}, which is periodically killed and restarted to exercise the reconnect path.
+ * Latencies, heap and thread usage are sampled for the whole run and written to a summary report.
+ * <p>
+ * Run with {@code ./gradlew soak -PsoakArgs="--duration=3600 --presence-rate=20"}
+ */
+public class SoakHarness {
+
+    private final Map<String, String> options;
+
+    private final LatencyHistogram presenceLatency = new LatencyHistogram();
+    private final LatencyHistogram eventLatency = new LatencyHistogram();
+    private final LatencyHistogram reconnectLatency = new LatencyHistogram();
+
+    private final AtomicLong presencesSent = new AtomicLong();
+    private final AtomicLong eventsReceived = new AtomicLong();
+    private final AtomicLong readyCallbacks = new AtomicLong();
+    private final AtomicLong disconnectCallbacks = new AtomicLong();
+    private final AtomicLong errorCallbacks = new AtomicLong();
+    private final List<long[]> samples = new ArrayList<>();
+
+    private volatile long restartedAt;
+
+    private SoakHarness(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("="))
+                continue;
+
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+
+        new SoakHarness(options).run();
+        System.exit(0);
+    }
+
+    private long option(String name, long fallback) {
+        String value = this.options.get(name);
+        return value == null ? fallback : Long.parseLong(value);
+    }
+
+    private void run() throws Exception {
+        long durationSeconds = this.option("duration", 600);
+        long presenceRate = this.option("presence-rate", 20);
+        long eventRate = this.option("event-rate", 50);
+        long chaosSeconds = this.option("chaos-interval", 60);
+        long downtimeMs = this.option("downtime", 2000);
+        long sampleSeconds = this.option("sample-interval", 5);
+        Path output = Paths.get(this.options.getOrDefault("output", "build/reports/soak"));
+
+        Path directory = Files.createTempDirectory("discord-rpc-soak");
+        StandInServer server = new StandInServer(directory.resolve("discord-ipc-0"), this.presenceLatency);
+        server.start();
+        this.restartedAt = System.nanoTime();
+
+        DiscordRpc rpc = new DiscordRpc();
+
+        // Reconnects are timed from the ready callback, so every reconnect has to be reported
+        rpc.setFlapWindowMs(0);
+        RpcFixtures.init(rpc, Payloads.APPLICATION_ID, new Handler(), null, directory.resolve("discord-ipc-0").toString());
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(3, runnable -> {
+            Thread thread = new Thread(runnable, "soak-driver");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        if (presenceRate > 0) {
+            scheduler.scheduleAtFixedRate(() -> {
+                rpc.updatePresence(DiscordRichPresence.builder()
+                        .state(String.valueOf(System.nanoTime()))
+                        .details("Soak test")
+                        .largeImageKey("logo")
+                        .build());
+                this.presencesSent.incrementAndGet();
+            }, 0, TimeUnit.SECONDS.toMicros(1) / presenceRate, TimeUnit.MICROSECONDS);
+        }
+
+        if (eventRate > 0) {
+            scheduler.scheduleAtFixedRate(() -> server.push(
+                    "{\"cmd\":\"DISPATCH\",\"evt\":\"ACTIVITY_JOIN_REQUEST\",\"nonce\":null,\"data\":{\"user\":"
+                            + "{\"id\":\"234567890123456789\",\"username\":\"" + System.nanoTime() + "\"}}}"),
+                    0, TimeUnit.SECONDS.toMicros(1) / eventRate, TimeUnit.MICROSECONDS);
+        }
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        scheduler.scheduleAtFixedRate(() -> {
+            RpcMetricsSnapshot metrics = rpc.getMetrics().snapshot();
+
+            synchronized (this.samples) {
+                this.samples.add(new long[] {
+                        TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start),
+                        memory.getHeapMemoryUsage().getUsed(),
+                        threads.getThreadCount(),
+                        this.presencesSent.get() - server.presencesReceived.get() - metrics.getCounter("presence.coalesced"),
+                        server.eventsSent.get() - this.eventsReceived.get(),
+                        metrics.getGauge("queue.presence"),
+                        metrics.getGauge("queue.send")
+                });
+            }
+        }, 0, sampleSeconds, TimeUnit.SECONDS);
+
+        System.out.printf("Soak test running for %d s (presence %d/s, events %d/s, restart every %d s)%n",
+                durationSeconds, presenceRate, eventRate, chaosSeconds);
+
+        long nextChaos = start + TimeUnit.SECONDS.toNanos(chaosSeconds);
+
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(100);
+
+            if (chaosSeconds > 0 && System.nanoTime() >= nextChaos) {
+                server.kill();
+                Thread.sleep(downtimeMs);
+                server.start();
+                this.restartedAt = System.nanoTime();
+                nextChaos = System.nanoTime() + TimeUnit.SECONDS.toNanos(chaosSeconds);
+            }
+        }
+
+        scheduler.shutdownNow();
+        RpcMetricsSnapshot metrics = rpc.getMetrics().snapshot();
+        rpc.shutdown();
+        server.kill();
+        deleteDirectory(directory);
+
+        this.report(output, server, metrics, durationSeconds);
+    }
+
+    /**
+     * Delete a directory with everything in it, like the socket files the stand-in server leaves behind
+     */
+    private static void deleteDirectory(Path directory) throws IOException {
+        List<Path> paths;
+
+        try (Stream<Path> walk = Files.walk(directory)) {
+            paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+
+        for (Path path : paths)
+            Files.deleteIfExists(path);
+    }
+
+    private void report(Path output, StandInServer server, RpcMetricsSnapshot metrics, long durationSeconds) throws IOException {
+        Files.createDirectories(output);
+        List<long[]> series;
+
+        synchronized (this.samples) {
+            series = new ArrayList<>(this.samples);
+        }
+
+        try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(output.resolve("timeseries.csv"), StandardCharsets.UTF_8))) {
+            csv.println("seconds,heap_bytes,threads,presence_in_flight,events_in_flight,presence_queue,send_queue");
+
+            for (long[] sample : series)
+                csv.printf("%d,%d,%d,%d,%d,%d,%d%n", sample[0], sample[1], sample[2], sample[3], sample[4], sample[5], sample[6]);
+        }
+
+        long heapMin = Long.MAX_VALUE, heapMax = 0, threadMin = Long.MAX_VALUE, threadMax = 0;
+
+        for (long[] sample : series) {
+            heapMin = Math.min(heapMin, sample[1]);
+            heapMax = Math.max(heapMax, sample[1]);
+            threadMin = Math.min(threadMin, sample[2]);
+            threadMax = Math.max(threadMax, sample[2]);
+        }
+
+        List<String> lines = new ArrayList<>();
+        lines.add("Discord RPC soak test - " + durationSeconds + " s");
+        lines.add("");
+        lines.add(summary("presence", this.presenceLatency.snapshot()));
+        lines.add(summary("event", this.eventLatency.snapshot()));
+        lines.add(summary("reconnect", this.reconnectLatency.snapshot()));
+        lines.add(summary("callback", metrics.getHistogram("callback.duration")));
+        lines.add(summary("sdk queue", metrics.getHistogram("presence.queue")));
+        lines.add(summary("sdk ack", metrics.getHistogram("presence.ack")));
+        lines.add("");
+        lines.add(String.format("presence      sent=%d received=%d coalesced=%d dropped=%d", this.presencesSent.get(),
+                server.presencesReceived.get(), metrics.getCounter("presence.coalesced"), metrics.getCounter("presence.dropped")));
+        lines.add(String.format("events        sent=%d received=%d", server.eventsSent.get(), this.eventsReceived.get()));
+        lines.add(String.format("connections   accepted=%d ready=%d disconnected=%d errored=%d",
+                server.connections.get(), this.readyCallbacks.get(), this.disconnectCallbacks.get(), this.errorCallbacks.get()));
+        lines.add(String.format("commands      received=%d", server.commandsReceived.get()));
+        lines.add(String.format("sdk           frames in=%d out=%d write failures=%d corrupt=%d reconnects=%d",
+                metrics.getCounter("frames.in"), metrics.getCounter("frames.out"), metrics.getCounter("frames.write.failures"),
+                metrics.getCounter("frames.corrupt"), metrics.getCounter("connection.reconnects")));
+
+        if (!series.isEmpty()) {
+            long[] first = series.get(0);
+            long[] last = series.get(series.size() - 1);
+            lines.add(String.format("heap          first=%.1fMB last=%.1fMB min=%.1fMB max=%.1fMB",
+                    first[1] / 1048576.0, last[1] / 1048576.0, heapMin / 1048576.0, heapMax / 1048576.0));
+            lines.add(String.format("threads       first=%d last=%d min=%d max=%d", first[2], last[2], threadMin, threadMax));
+            lines.add(String.format("in flight     presence=%d events=%d (at end)", last[3], last[4]));
+        }
+
+        Files.write(output.resolve("summary.txt"), lines, StandardCharsets.UTF_8);
+        lines.forEach(System.out::println);
+        System.out.println();
+        System.out.println("Report written to " + output.toAbsolutePath());
+    }
+
+    /**
+     * Format a histogram as a single summary line, in milliseconds
+     */
+    private static String summary(String name, HistogramSnapshot histogram) {
+        return String.format("%-12s count=%-10d p50=%9.3fms p99=%9.3fms p999=%9.3fms max=%9.3fms mean=%9.3fms",
+                name, histogram.getCount(), histogram.getP50() / 1e6, histogram.getP99() / 1e6,
+                histogram.getP999() / 1e6, histogram.getMax() / 1e6, histogram.getMean() / 1e6);
+    }
+
+    /**
+     * Records callback latencies. Callbacks run on the SDK's IO thread
+     */
+    private class Handler extends RPCEventHandler {
+
+        @Override
+        public void ready(User user) {
+            readyCallbacks.incrementAndGet();
+            reconnectLatency.record(System.nanoTime() - restartedAt);
+        }
+
+        @Override
+        public void disconnected(ErrorCode errorCode, @Nullable String message) {
+            disconnectCallbacks.incrementAndGet();
+        }
+
+        @Override
+        public void errored(ErrorCode errorCode, @Nullable String message) {
+            errorCallbacks.incrementAndGet();
+        }
+
+        @Override
+        public void joinRequest(DiscordJoinRequest joinRequest) {
+            eventsReceived.incrementAndGet();
+
+            // The server stamps each request with its System.nanoTime() in the username
+            eventLatency.record(System.nanoTime() - Long.parseLong(joinRequest.getUser().getUsername()));
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package dev.firstdark.rpc.soak;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dev.firstdark.rpc.benchmarks.support.LocalIpcServer;
+import dev.firstdark.rpc.benchmarks.support.Payloads;
+import dev.firstdark.rpc.enums.OpCode;
+import dev.firstdark.rpc.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author HypherionSA
+ * A stand-in Discord client for soak testing. It completes the handshake, acknowledges commands
+ * like Discord does, and can push events or be killed and restarted at any time
+ */
+public class StandInServer {
+
+    private final Path socketPath;
+    private final LatencyHistogram presenceLatency;
+
+    final AtomicLong connections = new AtomicLong();
+    final AtomicLong presencesReceived = new AtomicLong();
+    final AtomicLong commandsReceived = new AtomicLong();
+    final AtomicLong eventsSent = new AtomicLong();
+
+    private LocalIpcServer server;
+    private volatile LocalIpcServer.Client client;
+    private Thread acceptThread;
+
+    /**
+     * @param socketPath The socket to listen on
+     * @param presenceLatency Receives the time from updatePresence until the frame arrived here
+     */
+    public StandInServer(Path socketPath, LatencyHistogram presenceLatency) {
+        this.socketPath = socketPath;
+        this.presenceLatency = presenceLatency;
+    }
+
+    /**
+     * Start listening, and serve one SDK connection at a time
+     *
+     * @throws IOException Thrown when the socket could not be bound
+     */
+    public synchronized void start() throws IOException {
+        this.server = new LocalIpcServer(this.socketPath);
+        this.server.start();
+
+        LocalIpcServer listening = this.server;
+        this.acceptThread = new Thread(() -> this.serve(listening), "soak-ipc-server");
+        this.acceptThread.setDaemon(true);
+        this.acceptThread.start();
+    }
+
+    /**
+     * Kill the server, dropping the connected SDK without a CLOSE frame, like a crashing Discord client
+     */
+    public synchronized void kill() throws Exception {
+        if (this.server == null)
+            return;
+
+        this.server.close();
+        LocalIpcServer.Client current = this.client;
+
+        if (current != null)
+            current.close();
+
+        this.acceptThread.join(5000);
+        this.server = null;
+        this.client = null;
+    }
+
+    /**
+     * Push an event to the connected SDK, if any
+     *
+     * @param json The event payload
+     * @return True if the event was sent
+     */
+    public boolean push(String json) {
+        LocalIpcServer.Client current = this.client;
+        if (current == null)
+            return false;
+
+        try {
+            synchronized (current) {
+                current.writeFrame(OpCode.FRAME, json);
+            }
+            this.eventsSent.incrementAndGet();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void serve(LocalIpcServer listening) {
+        while (true) {
+            LocalIpcServer.Client accepted;
+
+            try {
+                accepted = listening.accept();
+            } catch (IOException e) {
+                // Server was killed
+                return;
+            }
+
+            try {
+                this.handle(accepted);
+            } catch (IOException ignored) {
+                // Client went away, or we were killed. Wait for the next one
+            } finally {
+                this.client = null;
+
+                try {
+                    accepted.close();
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    private void handle(LocalIpcServer.Client accepted) throws IOException {
+        LocalIpcServer.Frame handshake = accepted.readFrame();
+        if (handshake.opCode != OpCode.HANDSHAKE)
+            return;
+
+        synchronized (accepted) {
+            accepted.writeFrame(OpCode.FRAME, Payloads.READY);
+        }
+
+        this.client = accepted;
+        this.connections.incrementAndGet();
+
+        while (true) {
+            LocalIpcServer.Frame frame = accepted.readFrame();
+            long received = System.nanoTime();
+
+            if (frame.opCode == OpCode.CLOSE)
+                return;
+
+            if (frame.opCode != OpCode.FRAME)
+                continue;
+
+            JsonObject command = JsonParser.parseString(frame.json()).getAsJsonObject();
+            String cmd = command.get("cmd").getAsString();
+            JsonElement nonce = command.get("nonce");
+
+            if (cmd.equals("SET_ACTIVITY")) {
+                this.presencesReceived.incrementAndGet();
+                this.recordPresenceLatency(command, received);
+            } else {
+                this.commandsReceived.incrementAndGet();
+            }
+
+            JsonObject ack = new JsonObject();
+            ack.addProperty("cmd", cmd);
+            ack.add("evt", null);
+            ack.add("nonce", nonce);
+            ack.add("data", new JsonObject());
+
+            synchronized (accepted) {
+                accepted.writeFrame(OpCode.FRAME, ack.toString());
+            }
+        }
+    }
+
+    private void recordPresenceLatency(JsonObject command, long received) {
+        JsonObject activity = command.getAsJsonObject("args").getAsJsonObject("activity");
+        if (activity == null || !activity.has("state"))
+            return;
+
+        // The harness stamps each update with its System.nanoTime() in the state field
+        this.presenceLatency.record(received - Long.parseLong(activity.get("state").getAsString()));
+    }
+}
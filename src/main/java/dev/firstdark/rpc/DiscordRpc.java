@@ -1,36 +1,76 @@
 package dev.firstdark.rpc;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonPrimitive;
+import dev.firstdark.rpc.capture.CaptureReader;
+import dev.firstdark.rpc.capture.CaptureReplayer;
+import dev.firstdark.rpc.capture.TrafficCapture;
+import dev.firstdark.rpc.connection.OutboundScheduler;
 import dev.firstdark.rpc.connection.RPCConnection;
+import dev.firstdark.rpc.connection.unix.IUnixBackend;
 import dev.firstdark.rpc.enums.DiscordReply;
 import dev.firstdark.rpc.enums.ErrorCode;
+import dev.firstdark.rpc.enums.OpCode;
+import dev.firstdark.rpc.enums.OutboundPriority;
+import dev.firstdark.rpc.enums.OverflowStrategy;
+import dev.firstdark.rpc.enums.RPCState;
+import dev.firstdark.rpc.enums.TraceCategory;
+import dev.firstdark.rpc.enums.TraceLevel;
+import dev.firstdark.rpc.exceptions.JsonCodecException;
 import dev.firstdark.rpc.exceptions.NoDiscordClientException;
 import dev.firstdark.rpc.exceptions.PipeAccessDenied;
 import dev.firstdark.rpc.exceptions.UnsupportedOsType;
 import dev.firstdark.rpc.handlers.DiscordEventHandler;
+import dev.firstdark.rpc.handlers.EventDispatchTable;
+import dev.firstdark.rpc.handlers.EventSubscription;
+import dev.firstdark.rpc.handlers.RpcEventPublisher;
+import dev.firstdark.rpc.jfr.JfrEvents;
+import dev.firstdark.rpc.json.JsonCodec;
+import dev.firstdark.rpc.json.JsonCodecs;
+import dev.firstdark.rpc.metrics.RpcMetrics;
 import dev.firstdark.rpc.models.DiscordJoinRequest;
 import dev.firstdark.rpc.models.DiscordRichPresence;
+import dev.firstdark.rpc.models.ErrorEvent;
+import dev.firstdark.rpc.models.InboundMessage;
+import dev.firstdark.rpc.models.OutboundMessage;
+import dev.firstdark.rpc.models.RpcEvent;
+import dev.firstdark.rpc.models.SecretEvent;
 import dev.firstdark.rpc.models.User;
+import dev.firstdark.rpc.presence.MutablePresence;
+import dev.firstdark.rpc.presence.PresenceComposer;
+import dev.firstdark.rpc.presence.PresenceEncoder;
+import dev.firstdark.rpc.presence.PresenceSnapshot;
+import dev.firstdark.rpc.presence.PresenceTemplate;
+import dev.firstdark.rpc.tracing.PresenceTracker;
+import dev.firstdark.rpc.tracing.Tracer;
 import dev.firstdark.rpc.utils.Backoff;
+import dev.firstdark.rpc.utils.EventBuffer;
 import lombok.Getter;
 import lombok.Setter;
+import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
 
 /**
  * @author HypherionSA
@@ -38,6 +78,23 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 public class DiscordRpc {
 
+    // Join requests waiting for runCallbacks(). The oldest are dropped when the game stops calling it
+    private static final int MAX_PENDING_JOIN_REQUESTS = 64;
+
+    // Handlers from subscribe() waiting for runCallbacks(). The oldest are dropped when the game stops calling it
+    private static final int MAX_PENDING_EVENT_CALLBACKS = 256;
+
+    // How often a full pipe is retried, when the connection can't wait for room to write
+    private static final long WRITE_RETRY_MS = 10L;
+
+    // How long before the shutdown deadline the pipe of a stuck IO thread is closed, so it can stop in time
+    private static final long SHUTDOWN_GRACE_MS = 100L;
+
+    /**
+     * How long {@link DiscordRpc#shutdown()} waits for queued updates to be sent, and for the IO thread to stop
+     */
+    public static final Duration DEFAULT_SHUTDOWN_DEADLINE = Duration.ofSeconds(2);
+
     /**
      * The logger that is currently in use
      */
@@ -53,11 +110,91 @@ public class DiscordRpc {
     @Setter
     private boolean isDebugMode = false;
 
+    /**
+     * The {@link JsonCodec} used for everything the SDK sends and receives.
+     * Defaults to the codec shared by all instances, see {@link JsonCodecs#getDefault()}
+     */
+    @Getter
+    @Setter
+    @NotNull
+    private volatile JsonCodec jsonCodec = JsonCodecs.getDefault();
+
+    /**
+     * The active raw traffic capture, if any. See {@link DiscordRpc#startCapture(Path, int)}
+     */
+    @Getter
+    @Nullable
+    private volatile TrafficCapture trafficCapture;
+
+    /**
+     * Counters, gauges and latency histograms for this instance. See {@link RpcMetrics}
+     */
+    @Getter
+    private final RpcMetrics metrics = new RpcMetrics();
+
+    /**
+     * Per-category debug tracing. See {@link Tracer}
+     */
+    @Getter
+    private final Tracer tracer = new Tracer(this);
+
+    /**
+     * Follows every presence update from {@link DiscordRpc#updatePresence(DiscordRichPresence)} to Discord's response.
+     * See {@link PresenceTracker}
+     */
+    @Getter
+    private final PresenceTracker presenceTracker = new PresenceTracker(this.metrics);
+
+    /**
+     * The inbound events of this instance, with backpressure. In the modern (Java 16+) build,
+     * this is a {@link java.util.concurrent.Flow.Publisher}. See {@link RpcEventPublisher}
+     */
+    @Getter
+    private final RpcEventPublisher eventPublisher = new RpcEventPublisher(this::getLogger, this.metrics.getDroppedEvents(), this::subscribeHandlerEvents);
+
+    /**
+     * How long a response to a join request stays valid while Discord is not connected. Older responses are dropped instead of sent
+     */
+    @Getter
+    @Setter
+    private long joinResponseTimeoutMs = 30000L;
+
+    /**
+     * A disconnect followed by a reconnect within this window is reported as a single net callback: nothing when the same
+     * user is back, or {@code ready} when the user switched accounts. A connection that is lost within this window after it
+     * was established counts as a flap. 0 reports every transition, and disables flap detection
+     */
+    @Getter
+    @Setter
+    private long flapWindowMs = 5000L;
+
+    /**
+     * The number of flaps in a row after which the SDK waits {@link DiscordRpc#getFlapCoolOffMs()} before reconnecting
+     */
+    @Getter
+    @Setter
+    private int flapThreshold = 3;
+
+    /**
+     * How long to wait before reconnecting once the connection is flapping
+     */
+    @Getter
+    @Setter
+    private long flapCoolOffMs = 30000L;
+
+    /**
+     * The number of connections that were lost within {@link DiscordRpc#getFlapWindowMs()} after they were established,
+     * or while the handshake was in progress
+     */
+    @Getter
+    private volatile long flapCount;
+
     private final boolean disableIoThread;
 
     private long pid;
-    private long nonce;
-    private DiscordEventHandler eventHandler;
+    private final AtomicLong nonce;
+    // Volatile, because shutdown detaches the handler while the IO thread may still run callbacks
+    private volatile DiscordEventHandler eventHandler;
     private RPCConnection rpcConnection;
     private final Backoff reconnectTimeMs;
 
@@ -78,9 +215,29 @@ public class DiscordRpc {
     private final AtomicBoolean wasSpectateGame;
     private final AtomicBoolean isFirstConnect;
 
-    private final Queue<byte[]> sendQueue;
-    private final Queue<byte[]> presenceQueue;
-    private final Queue<DiscordJoinRequest> joinAskQueue;
+    private final OutboundScheduler outboundScheduler;
+    private final List<ByteBuffer[]> outboundBatch = new ArrayList<>();
+    private volatile MutablePresence livePresence;
+    private final MutablePresence presenceShadow;
+    private final PresenceEncoder presenceEncoder;
+    private MutablePresence ownPresence;
+    @Nullable
+    private volatile PresenceComposer presenceComposer;
+
+    // The presence that should be displayed, serialized again with a new nonce when it has to be sent again. Guarded by presenceLock
+    private LongFunction<ByteBuffer[]> currentPresence;
+    private final Object presenceLock = new Object();
+    @Nullable
+    private volatile PresenceSnapshot presenceSnapshot;
+
+    // Set while the IO thread waits on a full pipe instead of the IO condition. Changed with the IO lock held
+    private volatile boolean awaitingWritable;
+    private final EventBuffer<DiscordJoinRequest> joinAskQueue;
+    private final EventBuffer<Runnable> eventCallbacks;
+
+    private final Object subscriptionLock = new Object();
+    private volatile EventDispatchTable eventTable = EventDispatchTable.EMPTY;
+    private boolean handlerEventsSubscribed;
 
     private final AtomicBoolean keepRunning;
     private final Lock waitForIoMutex;
@@ -89,6 +246,16 @@ public class DiscordRpc {
 
     private int reconnectAttempts = 0;
 
+    // Flap detection. Only used by the IO thread
+    private long connectedAt;
+    private int consecutiveFlaps;
+
+    // The connection state the event handler was told about. Only used by runCallbacks()
+    private boolean reportedConnected;
+    private User reportedUser;
+    private long pendingDisconnectSince;
+    private String reportedFailure;
+
     /**
      * Create a new RPC SDK instance, with the internal thread enabled
      */
@@ -106,7 +273,7 @@ public class DiscordRpc {
         this.disableIoThread = disableIoThread;
 
         this.pid = -1;
-        this.nonce = -1;
+        this.nonce = new AtomicLong(-1);
         this.eventHandler = null;
         this.rpcConnection = null;
         this.reconnectTimeMs = new Backoff(1000L, 60000L);
@@ -121,9 +288,20 @@ public class DiscordRpc {
         this.wasSpectateGame = new AtomicBoolean(false);
         this.isFirstConnect = new AtomicBoolean(true);
 
-        this.sendQueue = new ConcurrentLinkedQueue<>();
-        this.presenceQueue = new ConcurrentLinkedQueue<>();
-        this.joinAskQueue = new ConcurrentLinkedQueue<>();
+        this.outboundScheduler = new OutboundScheduler(this.metrics);
+        this.livePresence = null;
+        this.presenceShadow = new MutablePresence();
+        this.presenceEncoder = new PresenceEncoder();
+        this.joinAskQueue = new EventBuffer<>(MAX_PENDING_JOIN_REQUESTS, OverflowStrategy.DROP_OLDEST);
+        this.eventCallbacks = new EventBuffer<>(MAX_PENDING_EVENT_CALLBACKS, OverflowStrategy.DROP_OLDEST);
+
+        // Queue sizes are only walked when a snapshot is taken
+        this.metrics.gauge("queue.control", () -> this.outboundScheduler.size(OutboundPriority.CONTROL));
+        this.metrics.gauge("queue.send", () -> this.outboundScheduler.size(OutboundPriority.INTERACTIVE));
+        this.metrics.gauge("queue.send.bytes", () -> this.outboundScheduler.bytes(OutboundPriority.INTERACTIVE));
+        this.metrics.gauge("queue.presence", () -> this.outboundScheduler.size(OutboundPriority.PRESENCE));
+        this.metrics.gauge("queue.joinRequests", this.joinAskQueue::size);
+        this.metrics.gauge("queue.events", this.eventCallbacks::size);
 
         this.keepRunning = new AtomicBoolean(true);
         this.waitForIoMutex = new ReentrantLock(true);
@@ -168,24 +346,91 @@ public class DiscordRpc {
                 this.register(applicationId, null);
         }
 
+        this.start();
+    }
+
+    /**
+     * Start an RPC connection that replays a captured session, instead of connecting to Discord
+     *
+     * @param applicationId The discord Application ID to use
+     * @param handler Optional {@link DiscordEventHandler} to handle events
+     * @param replayer The {@link CaptureReplayer} that feeds the captured frames to the SDK
+     */
+    public void init(@NotNull String applicationId, @Nullable DiscordEventHandler handler, @NotNull CaptureReplayer replayer) {
+        this.init(applicationId, handler, replayer.getBackend(), "replay");
+    }
+
+    /**
+     * Internal method
+     * Start an RPC connection over a specific UNIX socket, instead of scanning for a Discord client.
+     * Used by replays, and by the test fixtures to run the SDK against a local or in-memory IPC server
+     *
+     * @param applicationId The discord Application ID to use
+     * @param handler Optional {@link DiscordEventHandler} to handle events
+     * @param backend The {@link IUnixBackend} to use, or null to use the default backend
+     * @param pipePath The socket path to connect to
+     */
+    void init(@NotNull String applicationId, @Nullable DiscordEventHandler handler, @Nullable IUnixBackend backend, @NotNull String pipePath) {
+        if (this.rpcConnection != null)
+            return;
+
+        this.pid = this.getProcessId();
+        this.eventHandler = handler;
+
+        this.rpcConnection = RPCConnection.createUnix(applicationId, this, backend, pipePath);
+        this.start();
+    }
+
+    /**
+     * Internal method
+     * Used to hook up the connection callbacks, and start the IO thread if enabled
+     */
+    private void start() {
+        if (this.eventHandler != null || this.eventPublisher.hasSubscribers())
+            this.subscribeHandlerEvents();
+
         this.rpcConnection.setConnectedCallback((user) -> {
+            this.metrics.getConnects().increment();
+
+            if (!this.isFirstConnect.get())
+                this.metrics.getReconnects().increment();
+
             this.wasJustConnected.set(true);
             this.connectedUser.set(user);
             this.isFirstConnect.set(false);
             this.reconnectAttempts = 0;
+            this.connectedAt = System.currentTimeMillis();
 
-            if (this.eventHandler != null) {
-                this.registerForEvent("ACTIVITY_JOIN");
-                this.registerForEvent("ACTIVITY_SPECTATE");
-                this.registerForEvent("ACTIVITY_JOIN_REQUEST");
+            // Discord forgets subscriptions when the connection closes, so they are sent again on every connect
+            synchronized (this.subscriptionLock) {
+                for (String event : this.eventTable.getEvents())
+                    this.sendEventCommand("SUBSCRIBE", event);
             }
+
+            // Discord forgets the presence as well. It is queued again before any callbacks run, so it goes out with the subscriptions
+            this.replayPresence();
+
+            // Everything queued while disconnected is compacted, and sent with the next write
+            int compacted = this.outboundScheduler.compact();
+            int queued = this.outboundScheduler.size(OutboundPriority.INTERACTIVE);
+            this.tracer.trace(TraceCategory.PROTOCOL, TraceLevel.DEBUG, () -> "Sending " + queued + " queued commands, dropped " + compacted + " while compacting");
+
+            if (this.eventPublisher.hasSubscribers())
+                this.eventPublisher.publish(RpcEvent.ready(user));
         });
 
         this.rpcConnection.setDisconnectedCallback(((lastErrorCode, lastErrorMessage) -> {
+            this.metrics.getDisconnects().increment();
             this.lastDisconnectErrorCode = lastErrorCode;
             this.lastDisconnectErrorMessage = lastErrorMessage;
             this.wasJustDisconnected.set(true);
+            this.presenceTracker.connectionLost();
             this.updateReconnectTime();
+            this.dampFlap();
+            this.tracer.trace(TraceCategory.EVENTS, TraceLevel.DEBUG, () -> "Disconnected, next attempt in " + (this.nextConnect - System.currentTimeMillis()) + "ms");
+
+            if (this.eventPublisher.hasSubscribers())
+                this.eventPublisher.publish(RpcEvent.disconnected(lastErrorCode, lastErrorMessage));
         }));
 
         if (!this.disableIoThread) {
@@ -200,66 +445,557 @@ public class DiscordRpc {
     }
 
     /**
-     * Shut down the RPC connection, not allowing new updates
+     * Shut down the RPC connection, not allowing new updates. Waits at most {@link DiscordRpc#DEFAULT_SHUTDOWN_DEADLINE}
      */
     public void shutdown() {
+        this.shutdown(DEFAULT_SHUTDOWN_DEADLINE);
+    }
+
+    /**
+     * Shut down the RPC connection, not allowing new updates. While Discord is connected, updates that are still queued,
+     * like the last presence or {@code updatePresence(null)} to clear it, are sent first, for as long as the deadline allows.
+     * When the IO thread doesn't stop in time, for example because it is stuck in a blocking read, its pipe is closed under it
+     * a little before the deadline, and the IO thread closes the connection once it notices. Either way, this returns by the deadline
+     *
+     * @param deadline How long to wait for queued updates to be sent, and for the IO thread to stop
+     * @return True if everything queued was sent, and the IO thread stopped before the deadline
+     */
+    public boolean shutdown(@NotNull Duration deadline) {
         if (this.rpcConnection == null)
-            return;
+            return true;
+
+        long start = System.nanoTime();
+        long end = start + deadline.toNanos();
 
         this.rpcConnection.setDisconnectedCallback(null);
         this.rpcConnection.setConnectedCallback(null);
         this.eventHandler = null;
 
-        if (!this.disableIoThread) {
-            this.keepRunning.set(false);
-            this.signalIoActivity();
+        // With an IO thread, the flush leaves the grace period, in case the thread is stuck and its pipe needs closing
+        boolean flushed = this.flushQueued(this.disableIoThread ? end : end - TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_GRACE_MS));
+        this.unbindLivePresence();
+        boolean stopped = this.stopIoThread(end);
 
-            try {
-                this.ioThread.join();
-            } catch (Exception ignored) {
-                // TODO Logging
+        this.tracer.trace(TraceCategory.TRANSPORT, TraceLevel.DEBUG, () -> "Shut down in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                + "ms, " + (flushed ? "sent everything queued" : "dropped queued updates") + (stopped ? "" : ", IO thread missed the deadline"));
+
+        // A stuck IO thread still uses the connection. It closes the connection itself, once its pipe call fails
+        if (this.ioThread == null || !this.ioThread.isAlive()) {
+            RPCConnection.destroy(this.rpcConnection);
+            this.rpcConnection = null;
+        }
+
+        this.outboundScheduler.clear(OutboundPriority.CONTROL);
+        this.outboundScheduler.clear(OutboundPriority.INTERACTIVE);
+        OutboundMessage presence = this.outboundScheduler.takePresence();
+        if (presence != null)
+            this.presenceTracker.dropped(presence.getNonce());
+
+        this.joinAskQueue.clear();
+        this.eventCallbacks.clear();
+        this.eventPublisher.complete();
+        this.stopCapture();
+        this.closePresenceSnapshot();
+        this.metrics.unregisterMBean();
+
+        return flushed && stopped;
+    }
+
+    /**
+     * Internal method
+     * Send everything that is queued, while Discord is connected, and the deadline hasn't passed
+     *
+     * @param end The {@link System#nanoTime()} to give up at
+     * @return True if nothing is queued anymore
+     */
+    private boolean flushQueued(long end) {
+        while (!this.isFlushed()) {
+            if (!this.isConnected() || System.nanoTime() - end >= 0)
+                return false;
+
+            if (this.disableIoThread) {
+                try {
+                    this.updateConnection();
+                } catch (NoDiscordClientException | PipeAccessDenied e) {
+                    return false;
+                }
+            } else {
+                this.signalIoActivity();
             }
+
+            // Gives the pipe, or the IO thread, time to make progress
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
         }
 
-        RPCConnection.destroy(this.rpcConnection);
-        this.rpcConnection = null;
+        return true;
     }
 
     /**
-     * Update the RPC that is displayed currently
+     * Internal method
+     * @return True if no control frames, commands or presence updates are waiting to be sent
+     */
+    private boolean isFlushed() {
+        MutablePresence live = this.livePresence;
+
+        return this.outboundScheduler.size(OutboundPriority.CONTROL) == 0
+                && this.outboundScheduler.size(OutboundPriority.INTERACTIVE) == 0
+                && this.outboundScheduler.peekPresence() == null
+                && (live == null || !live.isChanged())
+                && !this.rpcConnection.hasUnsentData();
+    }
+
+    /**
+     * Internal method
+     * Stop the IO thread. If it doesn't stop shortly before the deadline, the pipe is closed, so a blocking read or write fails.
+     * Only the pipe is closed from this thread, the rest of the connection belongs to the IO thread
+     *
+     * @param end The {@link System#nanoTime()} to stop waiting at
+     * @return True if the IO thread stopped before the deadline
+     */
+    private boolean stopIoThread(long end) {
+        if (this.disableIoThread || this.ioThread == null)
+            return true;
+
+        this.keepRunning.set(false);
+        this.signalIoActivity();
+
+        // The grace period comes out of the deadline, so closing the pipe doesn't make shutdown overshoot it
+        if (join(this.ioThread, end - TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_GRACE_MS)))
+            return true;
+
+        this.logger.warn("Discord RPC IO thread did not stop in time, closing the connection");
+        RPCConnection.closePipe(this.rpcConnection);
+        return join(this.ioThread, end);
+    }
+
+    /**
+     * Internal method
+     * Wait for a thread to finish, until a deadline
+     *
+     * @param thread The thread to wait for
+     * @param end The {@link System#nanoTime()} to stop waiting at
+     * @return True if the thread finished
+     */
+    private static boolean join(Thread thread, long end) {
+        try {
+            long remaining = end - System.nanoTime();
+
+            // join(0) waits forever, so a passed deadline only checks the thread
+            if (remaining > 0)
+                thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return !thread.isAlive();
+    }
+
+    /**
+     * Start recording all raw IPC frames to a memory-mapped ring file. Once the file is full, the oldest frames are overwritten.
+     * The capture can be read with {@link CaptureReader}, and replayed with {@link CaptureReplayer}
+     *
+     * @param file The file to write to. Any existing file is replaced
+     * @param capacityBytes The maximum size of the captured data
+     * @throws IOException Thrown when the file could not be created
+     */
+    public void startCapture(@NotNull Path file, int capacityBytes) throws IOException {
+        this.stopCapture();
+        this.trafficCapture = TrafficCapture.create(file, capacityBytes);
+    }
+
+    /**
+     * Stop recording raw IPC frames, and flush the capture file to disk
+     */
+    public void stopCapture() {
+        TrafficCapture capture = this.trafficCapture;
+        this.trafficCapture = null;
+
+        if (capture == null)
+            return;
+
+        try {
+            capture.close();
+        } catch (IOException e) {
+            this.logger.error("Failed to close traffic capture", e);
+        }
+    }
+
+    /**
+     * Update the RPC that is displayed currently.
+     * Only the latest update is kept, so an update that hasn't been sent yet is replaced by a newer one
      *
      * @param discordRichPresence The new RPC to display, or NULL to clear
      */
     public void updatePresence(@Nullable DiscordRichPresence discordRichPresence) {
-        if (discordRichPresence == null)
-            discordRichPresence = DiscordRichPresence.builder().build();
+        DiscordRichPresence presence = discordRichPresence != null ? discordRichPresence : DiscordRichPresence.builder().build();
+
+        this.unbindLivePresence();
+        this.setPresence(nonce -> new ByteBuffer[] { ByteBuffer.wrap(this.jsonCodec.writeActivity(presence, this.pid, nonce)) });
+        this.signalIoActivity();
+    }
 
-        JsonObject data = discordRichPresence.toJson(this.pid, this.nonce++);
-        this.presenceQueue.offer(data.toString().getBytes(StandardCharsets.UTF_8));
+    /**
+     * Display a {@link PresenceTemplate}, with its current placeholder values.
+     * Only the placeholders are written, the rest of the presence is copied from the compiled template
+     *
+     * @param template The template to display
+     */
+    public void updatePresence(@NotNull PresenceTemplate template) {
+        this.unbindLivePresence();
+        this.setPresence(nonce -> new ByteBuffer[] { ByteBuffer.wrap(template.render(this.pid, nonce)) });
         this.signalIoActivity();
     }
 
     /**
-     * Respond to a {@link DiscordJoinRequest}
+     * Display an activity that was serialized by the caller, for example to use activity fields that
+     * {@link DiscordRichPresence} doesn't support yet. The activity is wrapped in a SET_ACTIVITY command without copying it,
+     * and is handled like any other presence update: it replaces a presence that hasn't been sent yet, and is sent once connected
+     *
+     * @param activity The UTF-8 activity JSON object, from its position to its limit. It is sent again after a reconnect,
+     *                 so it must not be modified until another presence replaced it
+     * @throws IllegalArgumentException Thrown when the activity is not a JSON object
+     */
+    public void updatePresenceRaw(@NotNull ByteBuffer activity) {
+        objectStart(activity);
+        this.unbindLivePresence();
+        this.setPresence(nonce -> PresenceEncoder.wrapActivity(activity, this.pid, nonce));
+        this.signalIoActivity();
+    }
+
+    /**
+     * Keep the last presence that was sent in a small memory-mapped file. If the file holds a presence from an earlier run,
+     * and nothing was displayed yet, that presence is restored straight away. Call this before {@link DiscordRpc#init(String, DiscordEventHandler, boolean)},
+     * and the restored presence is sent right after the handshake, before the game has loaded its own state
+     *
+     * @param file The snapshot file. It is created if it doesn't exist
+     * @throws IOException Thrown when the file could not be created or mapped
+     */
+    public void usePresenceSnapshot(@NotNull Path file) throws IOException {
+        this.closePresenceSnapshot();
+
+        PresenceSnapshot snapshot = PresenceSnapshot.open(file, PresenceSnapshot.DEFAULT_CAPACITY);
+        ByteBuffer activity = snapshot.load();
+
+        synchronized (this.presenceLock) {
+            if (activity != null && this.currentPresence == null && this.livePresence == null) {
+                this.tracer.trace(TraceCategory.PROTOCOL, TraceLevel.DEBUG, () -> "Restored presence from " + file);
+                this.updatePresenceRaw(activity);
+            }
+        }
+
+        this.presenceSnapshot = snapshot;
+    }
+
+    /**
+     * Internal method
+     * Stop saving the presence to the snapshot file, and close it
+     */
+    private void closePresenceSnapshot() {
+        PresenceSnapshot snapshot = this.presenceSnapshot;
+        this.presenceSnapshot = null;
+
+        if (snapshot == null)
+            return;
+
+        try {
+            snapshot.close();
+        } catch (IOException e) {
+            this.logger.error("Failed to close presence snapshot", e);
+        }
+    }
+
+    /**
+     * Send a command that was serialized by the caller, for commands the SDK doesn't support yet.
+     * The SDK adds the nonce, and frames the command without copying it. Commands are queued, and sent once connected
+     *
+     * @param payload The UTF-8 command JSON object, without a nonce, from its position to its limit. Must not be modified until it was sent
+     * @return The nonce the command is sent with, to match the response from Discord
+     * @throws IllegalArgumentException Thrown when the payload is not a JSON object
+     */
+    public long sendRaw(@NotNull ByteBuffer payload) {
+        int start = objectStart(payload);
+        long nonce = this.nonce.getAndIncrement();
+
+        // Replace the opening brace with one that carries the nonce
+        ByteBuffer body = payload.duplicate();
+        body.position(start + 1);
+
+        boolean empty = isEmptyObject(body);
+        byte[] prefix = ("{\"nonce\":\"" + nonce + "\"" + (empty ? "" : ",")).getBytes(StandardCharsets.US_ASCII);
+
+        this.queueCommand(new OutboundMessage(nonce, new ByteBuffer[] { ByteBuffer.wrap(prefix), body }));
+        return nonce;
+    }
+
+    /**
+     * Internal method
+     * Find the opening brace of a raw JSON object
+     *
+     * @param payload The raw payload. Its position is not changed
+     * @return The index of the opening brace
+     */
+    private static int objectStart(ByteBuffer payload) {
+        for (int i = payload.position(); i < payload.limit(); i++) {
+            byte b = payload.get(i);
+
+            if (b == '{')
+                return i;
+
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r')
+                break;
+        }
+
+        throw new IllegalArgumentException("Raw payload must be a JSON object");
+    }
+
+    /**
+     * Internal method
+     * Check if the remainder of a raw JSON object, after its opening brace, is empty
+     */
+    private static boolean isEmptyObject(ByteBuffer body) {
+        for (int i = body.position(); i < body.limit(); i++) {
+            byte b = body.get(i);
+
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r')
+                return b == '}';
+        }
+
+        return false;
+    }
+
+    /**
+     * Get the presence owned by this SDK instance, and make it the displayed presence.
+     * Changes are sent automatically, and only the sections that changed are serialized again:
+     * <pre>{@code
+     * rpc.presence().setState("Wave 3 of 10").setPartySize(2, 4);
+     * }</pre>
+     *
+     * @return The live presence
+     */
+    public synchronized MutablePresence presence() {
+        if (this.ownPresence == null)
+            this.ownPresence = new MutablePresence();
+
+        if (this.livePresence != this.ownPresence)
+            this.updatePresence(this.ownPresence);
+
+        return this.ownPresence;
+    }
+
+    /**
+     * Display a reusable {@link MutablePresence}. Only needs to be called once, after which the SDK
+     * picks up every change to the presence by itself. It is only serialized when something changed
+     *
+     * @param presence The presence to display
+     */
+    public void updatePresence(@NotNull MutablePresence presence) {
+        if (this.livePresence != presence) {
+            this.unbindLivePresence();
+            presence.setChangeListener(this::signalIoActivity);
+            presence.markChanged();
+
+            synchronized (this.presenceLock) {
+                this.currentPresence = null;
+                this.livePresence = presence;
+            }
+        }
+
+        if (presence.isChanged())
+            this.signalIoActivity();
+    }
+
+    /**
+     * Display the presence merged by a {@link PresenceComposer}. Only needs to be called once, after which the SDK
+     * merges the layers of the composer at most once per {@link PresenceComposer#getIntervalMs() interval}, and sends the
+     * result when it changed
+     *
+     * @param composer The composer to display
+     */
+    public void updatePresence(@NotNull PresenceComposer composer) {
+        if (this.presenceComposer == composer)
+            return;
+
+        this.updatePresence(composer.getPresence());
+        composer.setChangeListener(this::signalIoActivity);
+        this.presenceComposer = composer;
+        this.signalIoActivity();
+    }
+
+    /**
+     * Internal method
+     * Stop following the current {@link MutablePresence} or {@link PresenceComposer}, if any
+     */
+    private void unbindLivePresence() {
+        MutablePresence presence = this.livePresence;
+        this.livePresence = null;
+
+        if (presence != null)
+            presence.setChangeListener(null);
+
+        PresenceComposer composer = this.presenceComposer;
+        this.presenceComposer = null;
+
+        if (composer != null)
+            composer.setChangeListener(null);
+    }
+
+    /**
+     * Internal method
+     * Make a presence the one that should be displayed, and queue it to be sent, replacing any presence that hasn't been sent yet
+     *
+     * @param presence Serializes the SET_ACTIVITY command with a nonce. Called again whenever the presence has to be sent again
+     */
+    private void setPresence(LongFunction<ByteBuffer[]> presence) {
+        synchronized (this.presenceLock) {
+            this.currentPresence = presence;
+
+            long nonce = this.nonce.getAndIncrement();
+            this.queuePresence(nonce, presence.apply(nonce));
+        }
+    }
+
+    /**
+     * Internal method
+     * Queue the displayed presence again, once connected, unless a newer update is already waiting
+     */
+    private void replayPresence() {
+        synchronized (this.presenceLock) {
+            MutablePresence live = this.livePresence;
+
+            // The live presence is picked up by the IO thread, once it's marked as changed
+            if (live != null) {
+                live.markChanged();
+                return;
+            }
+
+            if (this.currentPresence == null || this.outboundScheduler.peekPresence() != null)
+                return;
+
+            long nonce = this.nonce.getAndIncrement();
+            this.queuePresence(nonce, this.currentPresence.apply(nonce));
+        }
+    }
+
+    /**
+     * Internal method
+     * Queue a serialized presence to be sent, replacing any presence that hasn't been sent yet
+     *
+     * @param nonce The nonce the presence was serialized with
+     * @param payload The buffers holding the serialized SET_ACTIVITY command, in order
+     */
+    private void queuePresence(long nonce, ByteBuffer... payload) {
+        this.presenceTracker.enqueued(nonce);
+
+        OutboundMessage previous = this.outboundScheduler.offerPresence(new OutboundMessage(nonce, payload));
+
+        if (previous != null)
+            this.presenceTracker.coalesced(previous.getNonce());
+    }
+
+    /**
+     * Respond to a {@link DiscordJoinRequest}. While Discord is not connected, the response is kept for
+     * {@link DiscordRpc#getJoinResponseTimeoutMs()}, and only the latest response to a user is sent
+     *
      * @param user The {@link User} that initiated the request
      * @param reply The {@link DiscordReply} to send
      */
     public void respond(User user, DiscordReply reply) {
-        if (this.rpcConnection == null || !this.rpcConnection.isOpen())
+        if (this.rpcConnection == null)
             return;
 
-        JsonObject jsonObject = new JsonObject();
-        jsonObject.add("cmd", new JsonPrimitive(reply == DiscordReply.YES ? "SEND_ACTIVITY_JOIN_INVITE" : "CLOSE_ACTIVITY_JOIN_REQUEST"));
+        String command = reply == DiscordReply.YES ? "SEND_ACTIVITY_JOIN_INVITE" : "CLOSE_ACTIVITY_JOIN_REQUEST";
+        long nonce = this.nonce.getAndIncrement();
+        byte[] bytes = this.jsonCodec.writeCommand(command, null, Collections.singletonMap("user_id", user.getUserId()), nonce);
+        long expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.joinResponseTimeoutMs);
 
-        JsonObject args = new JsonObject();
-        args.addProperty("user_id", user.getUserId());
-        jsonObject.add("args", args);
-        jsonObject.add("nonce", new JsonPrimitive(String.valueOf(this.nonce++)));
+        this.queueCommand(new OutboundMessage(nonce, OpCode.FRAME, new ByteBuffer[] { ByteBuffer.wrap(bytes) }, "respond:" + user.getUserId(), expiresAt));
+    }
 
-        byte[] bytes = jsonObject.toString().getBytes();
+    /**
+     * @return The number of bytes that commands can hold while Discord is not connected
+     */
+    public long getOutboxBudget() {
+        return this.outboundScheduler.getByteBudget();
+    }
 
-        if (this.sendQueue.offer(bytes))
+    /**
+     * Limit the memory used by commands that wait for Discord to connect. Once the budget is used up, the queued commands
+     * are compacted, and new commands that still don't fit are dropped. Dropped commands are counted in the
+     * {@code outbound.interactive.dropped}, {@code outbound.interactive.expired} and {@code outbound.interactive.compacted} metrics
+     *
+     * @param bytes The budget in bytes. Defaults to {@link OutboundScheduler#DEFAULT_BYTE_BUDGET}
+     */
+    public void setOutboxBudget(long bytes) {
+        this.outboundScheduler.setByteBudget(bytes);
+    }
+
+    /**
+     * Internal method
+     * Queue a command to be sent ahead of presence updates
+     *
+     * @param message The serialized command
+     */
+    private void queueCommand(OutboundMessage message) {
+        if (this.outboundScheduler.offer(OutboundPriority.INTERACTIVE, message))
             this.signalIoActivity();
+        else
+            this.tracer.trace(TraceCategory.PROTOCOL, TraceLevel.DEBUG, () -> "Outbound queue is full, dropped command " + message.getNonce());
+    }
+
+    /**
+     * Internal method
+     * @return The outbound queues, which {@link RPCConnection} also uses for control frames
+     */
+    @ApiStatus.Internal
+    public OutboundScheduler getOutboundScheduler() {
+        return this.outboundScheduler;
+    }
+
+    /**
+     * Subscribe to an RPC event. The event data is decoded into {@code type} by the {@link JsonCodec}, and passed to the handler
+     * from {@link DiscordRpc#runCallbacks()}. Subscriptions are sent to Discord again after every reconnect.
+     * <p>
+     * The built-in codec can decode the SDK models, and {@link String}, which receives the raw JSON.
+     * Other codecs, like the Gson codec, can decode your own classes
+     *
+     * @param eventName The name of the event, for example {@code ACTIVITY_JOIN}
+     * @param type The type to decode the event data into
+     * @param handler The handler for the event
+     * @return The subscription, to pass to {@link DiscordRpc#unsubscribe(EventSubscription)}
+     * @throws IllegalArgumentException Thrown when the codec can't decode the type
+     */
+    public <T> EventSubscription<T> subscribe(@NotNull String eventName, @NotNull Class<T> type, @NotNull Consumer<? super T> handler) {
+        if (eventName.isEmpty())
+            throw new IllegalArgumentException("Event name can't be empty");
+
+        if (!this.jsonCodec.canRead(type))
+            throw new IllegalArgumentException("The " + this.jsonCodec.getName() + " JSON codec can't decode " + type.getName());
+
+        EventSubscription<T> subscription = new EventSubscription<>(eventName, type, handler, false);
+        this.addSubscription(subscription);
+        return subscription;
+    }
+
+    /**
+     * Remove a subscription. Once nothing is subscribed to the event, the SDK unsubscribes from it
+     *
+     * @param subscription The subscription returned by {@link DiscordRpc#subscribe(String, Class, Consumer)}
+     */
+    public void unsubscribe(@NotNull EventSubscription<?> subscription) {
+        synchronized (this.subscriptionLock) {
+            this.replaceSubscriptions(this.eventTable.without(subscription), subscription.getEventName());
+        }
+    }
+
+    /**
+     * Remove every subscription to an event. Events used by the {@link DiscordEventHandler} stay subscribed
+     *
+     * @param eventName The name of the event
+     */
+    public void unsubscribe(@NotNull String eventName) {
+        synchronized (this.subscriptionLock) {
+            this.replaceSubscriptions(this.eventTable.withoutEvent(eventName, false), eventName);
+        }
     }
 
     /**
@@ -269,33 +1005,118 @@ public class DiscordRpc {
         if (this.rpcConnection == null)
             return;
 
-        if (this.eventHandler != null) {
+        // Read once, so a handler that shutdown detaches halfway through isn't called as null
+        DiscordEventHandler handler = this.eventHandler;
+
+        if (handler != null) {
             boolean wasDisconnected = this.wasJustDisconnected.getAndSet(false);
+            boolean wasConnected = this.wasJustConnected.getAndSet(false);
             boolean isConnected = this.rpcConnection.isOpen();
+            boolean isDamped = this.flapWindowMs > 0;
 
-            if (isConnected && wasDisconnected)
-                this.eventHandler.disconnected(this.lastDisconnectErrorCode, this.lastDisconnectErrorMessage);
+            if (isDamped)
+                this.runLifecycleCallbacks(handler, wasDisconnected, wasConnected, isConnected);
 
-            if (this.wasJustConnected.getAndSet(false))
-                this.eventHandler.ready(connectedUser.get());
+            if (!isDamped && isConnected && wasDisconnected)
+                this.timeCallback("disconnected", () -> handler.disconnected(this.lastDisconnectErrorCode, this.lastDisconnectErrorMessage));
+
+            if (!isDamped && wasConnected)
+                this.timeCallback("ready", () -> handler.ready(connectedUser.get()));
 
             if (this.gotErrorMessage.getAndSet(false))
-                this.eventHandler.errored(this.lastErrorCode, this.lastErrorMessage);
+                this.timeCallback("errored", () -> handler.errored(this.lastErrorCode, this.lastErrorMessage));
 
             if (this.wasJoinGame.getAndSet(false))
-                this.eventHandler.joinGame(this.joinGameSecret);
+                this.timeCallback("joinGame", () -> handler.joinGame(this.joinGameSecret));
 
             if (this.wasSpectateGame.getAndSet(false))
-                this.eventHandler.spectateGame(this.spectateGameSecret);
+                this.timeCallback("spectateGame", () -> handler.spectateGame(this.spectateGameSecret));
 
             DiscordJoinRequest request;
-            while ((request = this.joinAskQueue.poll()) != null)
-                if (this.eventHandler != null)
-                    this.eventHandler.joinRequest(request);
+            while ((request = this.joinAskQueue.poll()) != null) {
+                DiscordJoinRequest joinRequest = request;
+                this.timeCallback("joinRequest", () -> handler.joinRequest(joinRequest));
+            }
 
-            if (!isConnected && wasDisconnected)
-                this.eventHandler.disconnected(this.lastDisconnectErrorCode, this.lastDisconnectErrorMessage);
+            if (!isDamped && !isConnected && wasDisconnected)
+                this.timeCallback("disconnected", () -> handler.disconnected(this.lastDisconnectErrorCode, this.lastDisconnectErrorMessage));
         }
+
+        // Handlers from subscribe(), which don't need an event handler
+        Runnable callback;
+        while ((callback = this.eventCallbacks.poll()) != null)
+            callback.run();
+    }
+
+    /**
+     * Internal method
+     * Report the net change of the connection to the event handler. A lost connection is only reported once it stayed
+     * down for {@link DiscordRpc#getFlapWindowMs()}, so a quick reconnect to the same user isn't reported at all
+     *
+     * @param handler The event handler to report to
+     * @param wasDisconnected True if a connection was lost since the last call
+     * @param wasConnected True if a connection was established since the last call
+     * @param isConnected True if the connection is open now
+     */
+    private void runLifecycleCallbacks(DiscordEventHandler handler, boolean wasDisconnected, boolean wasConnected, boolean isConnected) {
+        long now = System.currentTimeMillis();
+
+        if (wasDisconnected && this.reportedConnected) {
+            if (this.pendingDisconnectSince == 0)
+                this.pendingDisconnectSince = now;
+        } else if (wasDisconnected) {
+            // The handler doesn't think it's connected, so there is nothing to take back. Only tell it why connecting failed, once per reason
+            String failure = this.lastDisconnectErrorCode + " " + this.lastDisconnectErrorMessage;
+
+            if (!failure.equals(this.reportedFailure)) {
+                this.reportedFailure = failure;
+                this.timeCallback("disconnected", () -> handler.disconnected(this.lastDisconnectErrorCode, this.lastDisconnectErrorMessage));
+            }
+        }
+
+        if (wasConnected && isConnected) {
+            User user = this.connectedUser.get();
+            long downtime = this.pendingDisconnectSince == 0 ? 0 : now - this.pendingDisconnectSince;
+            boolean isSameUser = this.reportedConnected && this.reportedUser != null && user != null && Objects.equals(this.reportedUser.getUserId(), user.getUserId());
+
+            this.pendingDisconnectSince = 0;
+            this.reportedFailure = null;
+
+            if (isSameUser) {
+                this.tracer.trace(TraceCategory.EVENTS, TraceLevel.DEBUG, () -> "Reconnected after " + downtime + "ms, not reporting the disconnect");
+                return;
+            }
+
+            this.reportedConnected = true;
+            this.reportedUser = user;
+            this.timeCallback("ready", () -> handler.ready(user));
+            return;
+        }
+
+        if (this.pendingDisconnectSince != 0 && !isConnected && now - this.pendingDisconnectSince >= this.flapWindowMs) {
+            this.pendingDisconnectSince = 0;
+            this.reportedConnected = false;
+            this.reportedUser = null;
+            this.reportedFailure = this.lastDisconnectErrorCode + " " + this.lastDisconnectErrorMessage;
+            this.timeCallback("disconnected", () -> handler.disconnected(this.lastDisconnectErrorCode, this.lastDisconnectErrorMessage));
+        }
+    }
+
+    /**
+     * Internal method
+     * Run a user callback, and record how long it took
+     *
+     * @param name The name of the callback, for flight recordings
+     * @param callback The callback to run
+     */
+    private void timeCallback(String name, Runnable callback) {
+        long start = this.metrics.startTimer();
+        Object event = JfrEvents.beginCallback();
+        callback.run();
+        JfrEvents.endCallback(event, name);
+
+        if (start != 0)
+            this.metrics.getCallbackDuration().recordSince(start);
     }
 
     /**
@@ -322,20 +1143,110 @@ public class DiscordRpc {
 
     /**
      * Internal method
-     * Used to subscribe to RPC events like Join, Spectate etc
+     * Used to subscribe to, or unsubscribe from RPC events like Join, Spectate etc
      *
+     * @param command SUBSCRIBE or UNSUBSCRIBE
      * @param name The name of the EVENT to subscribe to
      */
-    private void registerForEvent(String name) {
-        JsonObject jsonObject = new JsonObject();
-        jsonObject.add("cmd", new JsonPrimitive("SUBSCRIBE"));
-        jsonObject.add("evt", new JsonPrimitive(name));
-        jsonObject.add("nonce", new JsonPrimitive(String.valueOf(this.nonce++)));
+    private void sendEventCommand(String command, String name) {
+        long nonce = this.nonce.getAndIncrement();
+        byte[] bytes = this.jsonCodec.writeCommand(command, name, null, nonce);
 
-        byte[] bytes = jsonObject.toString().getBytes();
+        // Only the latest SUBSCRIBE or UNSUBSCRIBE for an event is kept. Losing one would break events, so they skip the byte budget
+        this.outboundScheduler.offerRequired(new OutboundMessage(nonce, OpCode.FRAME, new ByteBuffer[] { ByteBuffer.wrap(bytes) }, "event:" + name, 0));
+        this.signalIoActivity();
+    }
 
-        if (this.sendQueue.offer(bytes))
-            this.signalIoActivity();
+    /**
+     * Internal method
+     * Subscribe to the events that {@link DiscordEventHandler} and the {@link RpcEventPublisher} handle, if that didn't happen yet.
+     * These handlers run on the IO thread, and only record the event. The event handler is called from {@link DiscordRpc#runCallbacks()}
+     */
+    private void subscribeHandlerEvents() {
+        synchronized (this.subscriptionLock) {
+            if (this.handlerEventsSubscribed)
+                return;
+
+            this.handlerEventsSubscribed = true;
+        }
+
+        this.addSubscription(new EventSubscription<>("ACTIVITY_JOIN", SecretEvent.class, event -> {
+            if (event == null || event.getSecret() == null)
+                return;
+
+            if (this.eventHandler != null) {
+                this.joinGameSecret = event.getSecret();
+                this.wasJoinGame.set(true);
+            }
+
+            if (this.eventPublisher.hasSubscribers())
+                this.eventPublisher.publish(RpcEvent.joinGame(event.getSecret()));
+        }, true));
+
+        this.addSubscription(new EventSubscription<>("ACTIVITY_SPECTATE", SecretEvent.class, event -> {
+            if (event == null || event.getSecret() == null)
+                return;
+
+            if (this.eventHandler != null) {
+                this.spectateGameSecret = event.getSecret();
+                this.wasSpectateGame.set(true);
+            }
+
+            if (this.eventPublisher.hasSubscribers())
+                this.eventPublisher.publish(RpcEvent.spectateGame(event.getSecret()));
+        }, true));
+
+        this.addSubscription(new EventSubscription<>("ACTIVITY_JOIN_REQUEST", DiscordJoinRequest.class, request -> {
+            if (request == null || request.getUser() == null)
+                return;
+
+            // Only queued for an event handler, so the queue doesn't fill up when nothing drains it
+            if (this.eventHandler != null && !this.joinAskQueue.offer(request))
+                this.metrics.getDroppedEvents().increment();
+
+            if (this.eventPublisher.hasSubscribers())
+                this.eventPublisher.publish(RpcEvent.joinRequest(request));
+        }, true));
+    }
+
+    /**
+     * Internal method
+     * Add a subscription, and subscribe to the event if this is the first subscription for it
+     *
+     * @param subscription The subscription to add
+     */
+    private void addSubscription(EventSubscription<?> subscription) {
+        synchronized (this.subscriptionLock) {
+            boolean first = !this.eventTable.hasEvent(subscription.getEventName());
+            this.eventTable = this.eventTable.with(subscription);
+
+            // Otherwise, it's sent when the connection opens
+            if (first && this.isConnected())
+                this.sendEventCommand("SUBSCRIBE", subscription.getEventName());
+        }
+    }
+
+    /**
+     * Internal method
+     * Switch to a new dispatch table, and unsubscribe from the event if nothing is subscribed to it anymore
+     *
+     * @param table The new dispatch table
+     * @param eventName The event that subscriptions were removed from
+     */
+    private void replaceSubscriptions(EventDispatchTable table, String eventName) {
+        boolean had = this.eventTable.hasEvent(eventName);
+        this.eventTable = table;
+
+        if (had && !table.hasEvent(eventName) && this.isConnected())
+            this.sendEventCommand("UNSUBSCRIBE", eventName);
+    }
+
+    /**
+     * Internal method
+     * @return True if the RPC connection is open
+     */
+    private boolean isConnected() {
+        return this.rpcConnection != null && this.rpcConnection.isOpen();
     }
 
     /**
@@ -360,34 +1271,123 @@ public class DiscordRpc {
         this.reconnectAttempts++;
     }
 
+    /**
+     * Internal method
+     * Count a lost connection as a flap, if it was lost soon after it was established, and back off for
+     * {@link DiscordRpc#getFlapCoolOffMs()} once it keeps flapping
+     */
+    private void dampFlap() {
+        long now = System.currentTimeMillis();
+        long uptime = this.connectedAt == 0 ? 0 : now - this.connectedAt;
+        this.connectedAt = 0;
+
+        if (this.flapWindowMs <= 0 || uptime >= this.flapWindowMs) {
+            this.consecutiveFlaps = 0;
+            return;
+        }
+
+        this.flapCount++;
+        this.consecutiveFlaps++;
+        this.metrics.getFlaps().increment();
+
+        if (this.consecutiveFlaps >= this.flapThreshold) {
+            this.nextConnect = Math.max(this.nextConnect, now + this.flapCoolOffMs);
+            this.metrics.getCoolOffs().increment();
+            this.logger.warn("Connection to Discord is flapping ({} quick disconnects in a row), waiting {} before reconnecting", this.consecutiveFlaps, Backoff.formatDuration(this.flapCoolOffMs));
+        }
+    }
+
     /**
      * The internal thread that takes care of updating the connection and callbacks
      */
     private void discordRpcIo() throws NoDiscordClientException, PipeAccessDenied {
-        while (this.keepRunning.get()) {
+        try {
+            while (this.keepRunning.get()) {
 
-            try {
-                this.updateConnection();
-            } catch (NoDiscordClientException ignored) {}
+                try {
+                    this.updateConnection();
+                } catch (NoDiscordClientException ignored) {}
+
+                runCallbacks();
+                this.awaitIoActivity();
+            }
+        } finally {
+            // The connection belongs to this thread, so it is closed here, also when shutdown gave up waiting for it
+            RPCConnection connection = this.rpcConnection;
+
+            if (connection != null)
+                RPCConnection.destroy(connection);
+        }
+    }
 
-            runCallbacks();
+    /**
+     * Internal method
+     * Wait for new work on the IO thread. When the pipe was full, wait for it to have room again instead,
+     * so the rest is sent as soon as possible, rather than on the next tick
+     */
+    private void awaitIoActivity() {
+        long wait = this.ioWaitNanos();
+        RPCConnection connection = this.rpcConnection;
+
+        if (connection != null && connection.hasUnsentData()) {
             this.waitForIoMutex.lock();
 
             try {
-                this.waitForIOActivity.await(500, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException ignored) {
+                if (!this.keepRunning.get())
+                    return;
+
+                // From here on, signalIoActivity() wakes up the connection, instead of the condition
+                this.awaitingWritable = true;
+            } finally {
+                this.waitForIoMutex.unlock();
+            }
+
+            boolean waited = connection.awaitWritable(wait);
+
+            this.waitForIoMutex.lock();
 
+            try {
+                this.awaitingWritable = false;
             } finally {
                 this.waitForIoMutex.unlock();
             }
+
+            if (waited)
+                return;
+
+            wait = Math.min(wait, TimeUnit.MILLISECONDS.toNanos(WRITE_RETRY_MS));
+        }
+
+        this.waitForIoMutex.lock();
+
+        try {
+            // Checked under the lock, so a shutdown that signalled before we got here isn't missed
+            if (this.keepRunning.get())
+                this.waitForIOActivity.await(wait, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ignored) {
+
+        } finally {
+            this.waitForIoMutex.unlock();
         }
     }
 
+    /**
+     * Internal method
+     * How long the IO thread can wait for activity. Wakes up in time for the next merge of the presence composer
+     */
+    private long ioWaitNanos() {
+        long wait = TimeUnit.MILLISECONDS.toNanos(500);
+        PresenceComposer composer = this.presenceComposer;
+
+        return composer == null ? wait : Math.min(wait, composer.nanosUntilFlush(System.nanoTime()));
+    }
+
     /**
      * Internal method
      * Used to check the current RPC queues for data that needs to be processed
      */
     private void signalIoActivity() {
+        boolean wakeConnection;
         this.waitForIoMutex.lock();
 
         try {
@@ -395,8 +1395,15 @@ public class DiscordRpc {
         } catch (Exception ignored) {
 
         } finally {
+            wakeConnection = this.awaitingWritable;
             this.waitForIoMutex.unlock();
         }
+
+        // A wakeup that arrives before the IO thread starts waiting makes that wait return right away, so it is never lost
+        RPCConnection connection = this.rpcConnection;
+
+        if (wakeConnection && connection != null)
+            connection.wakeup();
     }
 
     /**
@@ -406,89 +1413,149 @@ public class DiscordRpc {
         if (this.rpcConnection == null)
             return;
 
+        // Merge the composer's layers, even while disconnected, so the merged presence is ready once connected
+        PresenceComposer composer = this.presenceComposer;
+
+        if (composer != null)
+            composer.flush(System.nanoTime());
+
         if (!this.rpcConnection.isOpen()) {
-            if (this.isFirstConnect.get() || System.currentTimeMillis() >= this.nextConnect) {
+            // A handshake in progress is finished on every pass, only new attempts wait for the backoff
+            boolean wasClosed = this.rpcConnection.getState() == RPCState.DISCONNECTED;
+
+            if (!wasClosed || this.isFirstConnect.get() || System.currentTimeMillis() >= this.nextConnect) {
                 this.rpcConnection.open();
 
-                if (!this.isFirstConnect.get())
+                // Only a failed attempt is rescheduled here. Connections that close after the pipe was opened are rescheduled by the disconnected callback
+                if (wasClosed && !this.isFirstConnect.get() && this.rpcConnection.getState() == RPCState.DISCONNECTED)
                     this.updateReconnectTime();
             }
         } else {
-            while (true) {
-                JsonObject message = new JsonObject();
-
-                if (!this.rpcConnection.read(message))
-                    break;
-
-                String evtName = message.has("evt") && !message.get("evt").isJsonNull() ? message.get("evt").getAsString() : null;
-                String nonce = message.has("nonce") && !message.get("nonce").isJsonNull() ? message.get("nonce").getAsString() : null;
-
-                if (nonce != null) {
-                    if (evtName != null && evtName.equals("ERROR")) {
-                        JsonObject data = message.get("data").getAsJsonObject();
-                        int error = data.get("code").getAsInt();
-                        this.lastErrorCode = data.has("code") ? error >= ErrorCode.values().length ? ErrorCode.UNKNOWN : ErrorCode.values()[error] : ErrorCode.SUCCESS;
-                        this.lastErrorMessage = data.has("message") ? data.get("message").getAsString() : "";
-                        this.gotErrorMessage.set(true);
-                    }
-                } else {
-                    if (evtName == null)
-                        continue;
-
-                    switch (evtName) {
-                        case "ACTIVITY_JOIN": {
-                            JsonObject data = message.get("data").getAsJsonObject();
-                            String secret = data.has("secret") ? data.get("secret").getAsString() : null;
-
-                            if (secret != null) {
-                                this.joinGameSecret = secret;
-                                this.wasJoinGame.set(true);
-                            }
-                            break;
-                        }
-                        case "ACTIVITY_SPECTATE": {
-                            JsonObject data = message.get("data").getAsJsonObject();
-                            String secret = data.has("secret") ? data.get("secret").getAsString() : null;
-
-                            if (secret != null) {
-                                this.spectateGameSecret = secret;
-                                this.wasSpectateGame.set(true);
-                            }
-                            break;
-                        }
-                        case "ACTIVITY_JOIN_REQUEST": {
-                            JsonObject data = message.get("data").getAsJsonObject();
-                            JsonObject user = data.get("user").getAsJsonObject();
-
-                            if (!user.isJsonNull()) {
-                                DiscordJoinRequest discordJoinRequest = new DiscordJoinRequest(new Gson().fromJson(user, User.class));
-                                this.joinAskQueue.offer(discordJoinRequest);
-                            }
-
-                            break;
-                        }
-                    }
+            InboundMessage message;
+
+            while ((message = this.rpcConnection.read()) != null) {
+                try {
+                    this.handleMessage(message);
+                } catch (JsonCodecException e) {
+                    // A malformed event only loses that event, the stream itself is still fine
+                    this.metrics.getCorruptFrames().increment();
+                    String evtName = message.getEvt();
+                    this.tracer.trace(TraceCategory.EVENTS, TraceLevel.DEBUG, () -> "Ignoring malformed " + evtName + " event: " + e);
                 }
             }
 
-            if (!this.presenceQueue.isEmpty()) {
-                byte[] bytes;
+            // Pick up changes to the live presence. The copy keeps the caller free to mutate it while we serialize
+            MutablePresence live = this.livePresence;
+
+            if (live != null && live.isChanged()) {
+                int changed = live.copyTo(this.presenceShadow);
+                long nonce = this.nonce.getAndIncrement();
+                this.queuePresence(nonce, ByteBuffer.wrap(this.presenceEncoder.encode(this.presenceShadow, changed, this.pid, nonce)));
+            }
+
+            // Resume anything the pipe didn't accept during an earlier tick. That data can't be reordered anymore
+            if (this.rpcConnection.hasUnsentData() && !this.rpcConnection.flush())
+                return;
+
+            // Control frames, like PONG replies, go out before anything else
+            if (!this.rpcConnection.writeControl())
+                return;
+
+            // Commands and the presence are framed and sent with a single gathering write, commands first.
+            // While the pipe is still busy, the presence waits (and keeps coalescing), so it doesn't delay the next command
+            List<ByteBuffer[]> batch = this.outboundBatch;
+            OutboundMessage command;
+
+            while ((command = this.outboundScheduler.poll(OutboundPriority.INTERACTIVE)) != null)
+                batch.add(command.getPayload());
+
+            OutboundMessage presence = this.rpcConnection.hasUnsentData() ? null : this.outboundScheduler.peekPresence();
+
+            if (presence != null)
+                batch.add(presence.getPayload());
+
+            if (!batch.isEmpty()) {
+                Object event = JfrEvents.beginQueueDrain();
+                boolean written = this.rpcConnection.write(batch);
 
-                while ((bytes = this.presenceQueue.peek()) != null) {
-                    if (!this.rpcConnection.write(bytes))
-                        break;
-                    else
-                        this.presenceQueue.poll();
+                if (written && presence != null) {
+                    this.presenceTracker.written(presence.getNonce());
+
+                    // A newer update may have been queued during the write. If so, it's sent on the next pass
+                    this.outboundScheduler.presenceWritten(presence);
+                    this.savePresenceSnapshot(presence);
                 }
+
+                JfrEvents.endQueueDrain(event, "outbound", written ? batch.size() : 0);
+                batch.clear();
             }
+        }
+    }
 
-            if (!this.sendQueue.isEmpty()) {
-                byte[] bytes;
+    /**
+     * Internal method
+     * Save a presence that was sent to the snapshot file, if there is one
+     *
+     * @param presence The SET_ACTIVITY command that was sent
+     */
+    private void savePresenceSnapshot(OutboundMessage presence) {
+        PresenceSnapshot snapshot = this.presenceSnapshot;
 
-                while ((bytes = this.sendQueue.poll()) != null)
-                    this.rpcConnection.write(bytes);
+        if (snapshot == null)
+            return;
+
+        try {
+            snapshot.save(presence.getPayload());
+        } catch (JsonCodecException e) {
+            this.tracer.trace(TraceCategory.PROTOCOL, TraceLevel.DEBUG, () -> "Failed to save presence snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Internal method
+     * Handle a message from Discord. The data of the message is only parsed for the events we handle
+     *
+     * @param message The message to handle
+     */
+    private void handleMessage(InboundMessage message) {
+        String evtName = message.getEvt();
+        String nonce = message.getNonce();
+        this.tracer.trace(TraceCategory.EVENTS, TraceLevel.TRACE, evtName, name -> "Received event " + name);
+
+        if (nonce != null) {
+            boolean isError = "ERROR".equals(evtName);
+            this.presenceTracker.answered(nonce, isError);
+
+            if (isError) {
+                ErrorEvent data = message.readData(this.jsonCodec, ErrorEvent.class);
+                int error = data != null ? data.getCode() : 0;
+                this.lastErrorCode = error >= ErrorCode.values().length ? ErrorCode.UNKNOWN : ErrorCode.values()[error];
+                this.lastErrorMessage = data != null && data.getMessage() != null ? data.getMessage() : "";
+                this.gotErrorMessage.set(true);
+
+                if (this.eventPublisher.hasSubscribers())
+                    this.eventPublisher.publish(RpcEvent.errored(this.lastErrorCode, this.lastErrorMessage));
             }
+
+            return;
+        }
+
+        EventDispatchTable.Route route = this.eventTable.get(evtName);
+
+        // Nothing handles this event, so its data is never decoded
+        if (route == null) {
+            this.metrics.getUnhandledEvents().increment();
+            this.tracer.trace(TraceCategory.EVENTS, TraceLevel.TRACE, evtName, name -> "Dropped event " + name + " without a subscription");
+            return;
         }
+
+        Object data = route.dispatch(message, this.jsonCodec, handler -> {
+            if (!this.eventCallbacks.offer(() -> this.timeCallback(evtName, handler)))
+                this.metrics.getDroppedEvents().increment();
+        });
+
+        if (route.hasSubscribers() && this.eventPublisher.hasSubscribers())
+            this.eventPublisher.publish(RpcEvent.event(evtName, data));
     }
 
     /**
@@ -512,16 +1579,16 @@ public class DiscordRpc {
     }
 
     /**
-     * Helper method to print debug information when {@link DiscordRpc#isDebugMode()} is set to true
+     * Helper method to print debug information when {@link DiscordRpc#isDebugMode()} is set to true.
+     * The message is only formatted when it will be logged
      *
      * @param message The message to be sent
      * @param objects Optional data that will replace the placeholders in Message
+     * @deprecated Use {@link DiscordRpc#getTracer()} instead
      */
+    @Deprecated
     public void printDebug(String message, Object... objects) {
-        if (!isDebugMode)
-            return;
-
-        getLogger().info("[DEBUG] {}", String.format(message, objects));
+        this.tracer.trace(TraceCategory.PROTOCOL, TraceLevel.DEBUG, () -> String.format(message, objects));
     }
 
 }
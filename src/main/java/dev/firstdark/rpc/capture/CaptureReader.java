@@ -0,0 +1,80 @@
+package dev.firstdark.rpc.capture;
+
+import dev.firstdark.rpc.enums.CaptureDirection;
+import dev.firstdark.rpc.enums.OpCode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author HypherionSA
+ * Reads the frames stored in a {@link TrafficCapture} file, oldest first
+ */
+public class CaptureReader {
+
+    private CaptureReader() {}
+
+    /**
+     * Read every frame still held in a capture file
+     *
+     * @param file The capture file
+     * @return The captured frames, in the order they were recorded
+     * @throws IOException Thrown when the file could not be read, or is not a capture file
+     */
+    public static List<CapturedFrame> read(Path file) throws IOException {
+        ByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.capacity() < TrafficCapture.HEADER_SIZE || buffer.getLong(0) != TrafficCapture.MAGIC)
+            throw new IOException("Not a Discord RPC capture file: " + file);
+
+        if (buffer.getInt(8) != TrafficCapture.VERSION)
+            throw new IOException("Unsupported capture version " + buffer.getInt(8));
+
+        int capacity = buffer.getInt(12);
+        long position = buffer.getLong(TrafficCapture.OLDEST_OFFSET);
+        long end = buffer.getLong(TrafficCapture.WRITE_OFFSET);
+
+        List<CapturedFrame> frames = new ArrayList<>();
+        byte[] header = new byte[TrafficCapture.RECORD_HEADER_SIZE];
+
+        while (position < end) {
+            copy(buffer, capacity, position, header);
+            ByteBuffer record = ByteBuffer.wrap(header);
+
+            int size = record.getInt();
+            int direction = record.get();
+            int opCode = record.get();
+            record.getShort();
+            long timestamp = record.getLong();
+
+            if (size < TrafficCapture.RECORD_HEADER_SIZE || size > capacity || direction < 0 || direction >= CaptureDirection.values().length
+                    || opCode < 0 || opCode >= OpCode.values().length)
+                throw new IOException("Corrupt capture record at position " + position);
+
+            byte[] payload = new byte[size - TrafficCapture.RECORD_HEADER_SIZE];
+            copy(buffer, capacity, position + TrafficCapture.RECORD_HEADER_SIZE, payload);
+
+            frames.add(new CapturedFrame(CaptureDirection.values()[direction], OpCode.values()[opCode], timestamp, payload));
+            position += size;
+        }
+
+        return frames;
+    }
+
+    /**
+     * Copy bytes out of the ring, following the wrap around at the end
+     */
+    private static void copy(ByteBuffer buffer, int capacity, long position, byte[] target) {
+        for (int i = 0; i < target.length; i++)
+            target[i] = buffer.get(TrafficCapture.HEADER_SIZE + (int) ((position + i) % capacity));
+    }
+}
@@ -0,0 +1,158 @@
+package dev.firstdark.rpc.capture;
+
+import dev.firstdark.rpc.DiscordRpc;
+import dev.firstdark.rpc.connection.unix.LoopbackBackend;
+import dev.firstdark.rpc.enums.CaptureDirection;
+import dev.firstdark.rpc.enums.ErrorCode;
+import dev.firstdark.rpc.enums.OpCode;
+import dev.firstdark.rpc.handlers.RPCEventHandler;
+import dev.firstdark.rpc.models.DiscordJoinRequest;
+import dev.firstdark.rpc.models.User;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author HypherionSA
+ * Feeds the inbound frames of a capture back to the SDK through a {@link LoopbackBackend}, with the original timing.
+ * Start a {@link DiscordRpc} with the replayer to reproduce a recorded session locally
+ * <pre>
+ *     CaptureReplayer replayer = new CaptureReplayer(CaptureReader.read(file));
+ *     rpc.init(applicationId, handler, replayer);
+ *     replayer.replay(10.0);
+ * </pre>
+ */
+public class CaptureReplayer {
+
+    // Sent first when the ring has already overwritten the original READY event
+    private static final String SYNTHETIC_READY = "{\"cmd\":\"DISPATCH\",\"evt\":\"READY\",\"nonce\":null,\"data\":{\"v\":1,\"user\":{\"id\":\"0\",\"username\":\"replay\"}}}";
+
+    private final List<CapturedFrame> frames;
+
+    /**
+     * The transport the SDK should be connected to
+     */
+    @Getter
+    private final LoopbackBackend backend = new LoopbackBackend();
+
+    /**
+     * @param frames The captured frames, as returned by {@link CaptureReader#read(java.nio.file.Path)}
+     */
+    public CaptureReplayer(List<CapturedFrame> frames) {
+        this.frames = frames;
+    }
+
+    /**
+     * Replay all inbound frames. Blocks until the last frame has been handed to the SDK.
+     * Waits for the SDK to open the connection before the first frame is sent.
+     * If the capture does not start with the READY event, a synthetic one is sent first
+     *
+     * @param speed How much faster than real time to replay. 1 keeps the original timing, 0 or less replays as fast as possible
+     * @throws InterruptedException Thrown when the replay is interrupted
+     */
+    public void replay(double speed) throws InterruptedException {
+        while (this.backend.getConnections() == 0)
+            Thread.sleep(1);
+
+        long firstTimestamp = -1;
+        long start = System.nanoTime();
+
+        for (CapturedFrame frame : this.frames) {
+            if (frame.getDirection() != CaptureDirection.INBOUND)
+                continue;
+
+            if (firstTimestamp < 0) {
+                firstTimestamp = frame.getTimestamp();
+
+                if (!frame.getPayloadString().contains("\"READY\""))
+                    this.backend.feedFrame(OpCode.FRAME, SYNTHETIC_READY);
+            }
+
+            if (speed > 0) {
+                long due = start + (long) ((frame.getTimestamp() - firstTimestamp) / speed);
+                long wait = due - System.nanoTime();
+
+                if (wait > 0)
+                    TimeUnit.NANOSECONDS.sleep(wait);
+            }
+
+            this.backend.feed(encode(frame));
+        }
+    }
+
+    /**
+     * Re-encode a captured frame, with its header
+     */
+    private static byte[] encode(CapturedFrame frame) {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + frame.getPayload().length);
+        buffer.putInt(Integer.reverseBytes(frame.getOpCode().ordinal()));
+        buffer.putInt(Integer.reverseBytes(frame.getPayload().length));
+        buffer.put(frame.getPayload());
+        return buffer.array();
+    }
+
+    /**
+     * Replay a capture file against a fresh SDK instance, printing every callback
+     * <p>
+     * Usage: CaptureReplayer &lt;file&gt; [speed]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: CaptureReplayer <file> [speed]");
+            return;
+        }
+
+        double speed = args.length > 1 ? Double.parseDouble(args[1]) : 1.0;
+        List<CapturedFrame> frames = CaptureReader.read(Paths.get(args[0]));
+        CaptureReplayer replayer = new CaptureReplayer(frames);
+        long start = System.nanoTime();
+
+        DiscordRpc rpc = new DiscordRpc();
+        rpc.init("0", new RPCEventHandler() {
+            private void print(String event) {
+                System.out.printf("[%8.3f s] %s%n", (System.nanoTime() - start) / 1_000_000_000.0, event);
+            }
+
+            @Override
+            public void ready(User user) {
+                print("ready " + user.getUsername());
+            }
+
+            @Override
+            public void disconnected(ErrorCode errorCode, @Nullable String message) {
+                print("disconnected " + errorCode + " " + message);
+            }
+
+            @Override
+            public void errored(ErrorCode errorCode, @Nullable String message) {
+                print("errored " + errorCode + " " + message);
+            }
+
+            @Override
+            public void joinGame(String joinSecret) {
+                print("joinGame " + joinSecret);
+            }
+
+            @Override
+            public void spectateGame(String spectateSecret) {
+                print("spectateGame " + spectateSecret);
+            }
+
+            @Override
+            public void joinRequest(DiscordJoinRequest joinRequest) {
+                print("joinRequest " + joinRequest.getUser().getUsername());
+            }
+        }, replayer);
+
+        System.out.printf("Replaying %d frames at %sx%n", frames.size(), speed > 0 ? speed : "max");
+        replayer.replay(speed);
+
+        // Give the IO thread time to dispatch the last frames
+        Thread.sleep(1000);
+        rpc.shutdown();
+    }
+}
@@ -0,0 +1,44 @@
+package dev.firstdark.rpc.capture;
+
+import dev.firstdark.rpc.enums.CaptureDirection;
+import dev.firstdark.rpc.enums.OpCode;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author HypherionSA
+ * A single IPC frame read back from a {@link TrafficCapture} file
+ */
+@AllArgsConstructor
+@Getter
+public class CapturedFrame {
+
+    /**
+     * Whether the frame was sent by Discord, or by the SDK
+     */
+    private final CaptureDirection direction;
+
+    /**
+     * The {@link OpCode} of the frame
+     */
+    private final OpCode opCode;
+
+    /**
+     * Monotonic timestamp ({@link System#nanoTime()}) of when the frame was captured
+     */
+    private final long timestamp;
+
+    /**
+     * The raw frame payload, without the 8 byte header
+     */
+    private final byte[] payload;
+
+    /**
+     * @return The payload decoded as a UTF-8 string
+     */
+    public String getPayloadString() {
+        return new String(this.payload, StandardCharsets.UTF_8);
+    }
+}
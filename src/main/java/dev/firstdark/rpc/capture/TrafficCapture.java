@@ -0,0 +1,197 @@
+package dev.firstdark.rpc.capture;
+
+import dev.firstdark.rpc.enums.CaptureDirection;
+import dev.firstdark.rpc.enums.OpCode;
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * @author HypherionSA
+ * Records raw IPC frames to a memory-mapped, append-only ring file.
+ * Writes go straight into the page cache, so capturing costs a copy of the payload and no syscalls.
+ * Once the ring is full, the oldest frames are overwritten. Use {@link CaptureReader} to read a capture back
+ * <p>
+ * File layout, all values are big endian:
+ * <pre>
+ *   0  long   magic "DRPCCAP1"
+ *   8  int    format version
+ *  12  int    ring capacity in bytes
+ *  16  long   logical position of the oldest record
+ *  24  long   logical write position
+ *  64  ...    ring data
+ * </pre>
+ * Each record is {@code int length, byte direction, byte opcode, short reserved, long timestamp, payload},
+ * and may wrap around the end of the ring
+ */
+public class TrafficCapture implements Closeable {
+
+    static final long MAGIC = 0x4452504343415031L;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_HEADER_SIZE = 16;
+
+    static final int OLDEST_OFFSET = 16;
+    static final int WRITE_OFFSET = 24;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+
+    private long oldest;
+    private long writePosition;
+    private boolean closed;
+
+    /**
+     * The number of frames that were too large to fit in the ring, and were skipped
+     */
+    @Getter
+    private long skippedFrames;
+
+    private TrafficCapture(FileChannel channel, MappedByteBuffer buffer, int capacity) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Create a new capture file, replacing any existing file
+     *
+     * @param file The file to write to
+     * @param capacity The size of the ring in bytes. The oldest frames are dropped once this is full
+     * @return The open capture
+     * @throws IOException Thrown when the file could not be created or mapped
+     */
+    public static TrafficCapture create(Path file, int capacity) throws IOException {
+        if (capacity < RECORD_HEADER_SIZE)
+            throw new IllegalArgumentException("Capture capacity must be at least " + RECORD_HEADER_SIZE + " bytes");
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) HEADER_SIZE + capacity);
+            buffer.putLong(0, MAGIC);
+            buffer.putInt(8, VERSION);
+            buffer.putInt(12, capacity);
+            buffer.putLong(OLDEST_OFFSET, 0);
+            buffer.putLong(WRITE_OFFSET, 0);
+            return new TrafficCapture(channel, buffer, capacity);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Append a frame to the capture
+     *
+     * @param direction Whether the frame was received or sent
+     * @param opCode The {@link OpCode} of the frame
+     * @param payload The array holding the payload
+     * @param offset The offset of the payload in the array
+     * @param length The length of the payload
+     */
+    public void record(CaptureDirection direction, OpCode opCode, byte[] payload, int offset, int length) {
+        this.record(direction, opCode, ByteBuffer.wrap(payload, offset, length));
+    }
+
+    /**
+     * Append a frame to the capture, from the buffers it was written from.
+     * The positions of the buffers are not changed
+     *
+     * @param direction Whether the frame was received or sent
+     * @param opCode The {@link OpCode} of the frame
+     * @param payload The buffers holding the payload, in order
+     */
+    public synchronized void record(CaptureDirection direction, OpCode opCode, ByteBuffer... payload) {
+        if (this.closed)
+            return;
+
+        int length = 0;
+
+        for (ByteBuffer buffer : payload)
+            length += buffer.remaining();
+
+        int size = RECORD_HEADER_SIZE + length;
+
+        if (size > this.capacity) {
+            this.skippedFrames++;
+            return;
+        }
+
+        // Make room by dropping the oldest records
+        while (this.writePosition + size - this.oldest > this.capacity)
+            this.oldest += this.readInt(this.oldest);
+
+        this.recordHeader.clear();
+        this.recordHeader.putInt(size)
+                .put((byte) direction.ordinal())
+                .put((byte) opCode.ordinal())
+                .putShort((short) 0)
+                .putLong(System.nanoTime());
+
+        this.recordHeader.flip();
+        long position = this.put(this.writePosition, this.recordHeader);
+
+        for (ByteBuffer buffer : payload)
+            position = this.put(position, buffer.duplicate());
+
+        this.writePosition = position;
+        this.buffer.putLong(OLDEST_OFFSET, this.oldest);
+        this.buffer.putLong(WRITE_OFFSET, this.writePosition);
+    }
+
+    /**
+     * Flush the capture to disk and stop recording
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.closed)
+            return;
+
+        this.closed = true;
+        this.buffer.force();
+        this.channel.close();
+    }
+
+    private int readInt(long position) {
+        int value = 0;
+
+        for (int i = 0; i < 4; i++)
+            value = (value << 8) | (this.buffer.get(this.index(position + i)) & 0xFF);
+
+        return value;
+    }
+
+    private long put(long position, ByteBuffer bytes) {
+        int length = bytes.remaining();
+        int start = this.index(position);
+        int first = Math.min(length, HEADER_SIZE + this.capacity - start);
+
+        // Copy in at most two chunks: up to the end of the ring, then from the start
+        int limit = bytes.limit();
+        bytes.limit(bytes.position() + first);
+        this.buffer.position(start);
+        this.buffer.put(bytes);
+        bytes.limit(limit);
+
+        if (first < length) {
+            this.buffer.position(HEADER_SIZE);
+            this.buffer.put(bytes);
+        }
+
+        return position + length;
+    }
+
+    private int index(long position) {
+        return HEADER_SIZE + (int) (position % this.capacity);
+    }
+}
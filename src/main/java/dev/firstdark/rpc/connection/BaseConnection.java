@@ -10,6 +10,8 @@ import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
+import java.nio.ByteBuffer;
+
 /**
  * @author HypherionSA
  * Base RPC connection class. Specific implementations is handled by the OS specific classes
@@ -70,26 +72,45 @@ public abstract class BaseConnection {
 
     /**
      * Close the current IPC connection.
-     * When a connection is closed, it will need to be reopened
+     * When a connection is closed, it will need to be reopened.
+     * Safe to call from any thread: a thread blocked reading from or writing to the pipe fails, and notices the connection is closed
      */
     abstract void close();
 
     /**
-     * Convert data to bytes for sending over the IPC pipe
+     * Send data made up of several buffers over the IPC pipe, advancing the buffers past what was sent
+     *
+     * @param buffers The buffers to send, in order
+     * @return The number of bytes sent, which is less than requested if the pipe is full, or -1 on failure
+     */
+    abstract long write(ByteBuffer[] buffers);
+
+    /**
+     * Read whatever data the IPC socket/pipe has received, without waiting for more
      *
-     * @param bytes The ByteArray of data to send
-     * @return True on success
+     * @param bytes The buffer to read into
+     * @param offset The offset in the buffer to start writing at
+     * @param length The maximum number of bytes to read
+     * @return The number of bytes read, 0 if no data was available, or -1 if the pipe was closed or failed
      */
-    abstract boolean write(byte[] bytes);
+    abstract int read(byte[] bytes, int offset, int length);
 
     /**
-     * Read a packet received by the IPC socket/pipe
+     * Wait until the IPC pipe has room for more data, or has data to read, after a write that was cut short.
+     * By default, the connection can't tell, and this returns false right away
      *
-     * @param bytes The bytes received
-     * @param length The length of the data to be read
-     * @return True on success
+     * @param timeoutNanos The longest time to wait
+     * @return True if the connection waited, false if it can't wait for room to write
      */
-    abstract boolean read(byte[] bytes, int length);
+    boolean awaitWritable(long timeoutNanos) {
+        return false;
+    }
+
+    /**
+     * Wake up a thread waiting in {@link #awaitWritable(long)}
+     */
+    void wakeup() {
+    }
 
     /**
      * Register an application as a Discord application
@@ -0,0 +1,333 @@
+package dev.firstdark.rpc.connection;
+
+import dev.firstdark.rpc.enums.OutboundPriority;
+import dev.firstdark.rpc.metrics.Counter;
+import dev.firstdark.rpc.metrics.LatencyHistogram;
+import dev.firstdark.rpc.metrics.RpcMetrics;
+import dev.firstdark.rpc.models.OutboundMessage;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author HypherionSA
+ * Outbound traffic, split into one queue per {@link OutboundPriority}. Any thread can queue messages without locking,
+ * and the IO thread writes them out, most urgent class first, so a join response or a PONG never waits behind a presence update.
+ * <p>
+ * The control and interactive queues are bounded, and reject messages when they are full.
+ * The presence class only holds the latest update. For every class, the time from queueing a message to writing it is
+ * recorded in the {@code outbound.<class>.latency} histogram.
+ * <p>
+ * While Discord is not connected, the interactive queue acts as an outbox. It is limited to a byte budget, and compacted
+ * before it is sent, and whenever it runs out of budget: expired messages are dropped, and of the messages that share a
+ * {@link OutboundMessage#getCompactionKey() compaction key}, only the latest is kept
+ */
+@ApiStatus.Internal
+public final class OutboundScheduler {
+
+    /**
+     * The number of control frames that can wait for the IO thread
+     */
+    public static final int CONTROL_CAPACITY = 16;
+
+    /**
+     * The number of commands that can wait for the IO thread
+     */
+    public static final int INTERACTIVE_CAPACITY = 1024;
+
+    /**
+     * The default number of payload bytes that commands can hold while they wait
+     */
+    public static final long DEFAULT_BYTE_BUDGET = 256 * 1024;
+
+    private final Lane control;
+    private final Lane interactive;
+    private final AtomicReference<OutboundMessage> presence = new AtomicReference<>();
+    private final LatencyHistogram presenceLatency;
+
+    public OutboundScheduler(@NotNull RpcMetrics metrics) {
+        this.control = new Lane(metrics, OutboundPriority.CONTROL, CONTROL_CAPACITY, Long.MAX_VALUE);
+        this.interactive = new Lane(metrics, OutboundPriority.INTERACTIVE, INTERACTIVE_CAPACITY, DEFAULT_BYTE_BUDGET);
+        this.presenceLatency = metrics.histogram(metricName(OutboundPriority.PRESENCE, "latency"));
+    }
+
+    /**
+     * Queue a control frame or command
+     *
+     * @param priority {@link OutboundPriority#CONTROL} or {@link OutboundPriority#INTERACTIVE}
+     * @param message The message to queue
+     * @return False if the queue is full, and the message was dropped
+     */
+    public boolean offer(@NotNull OutboundPriority priority, @NotNull OutboundMessage message) {
+        return this.lane(priority).offer(message, false);
+    }
+
+    /**
+     * Queue a command that must not be dropped, like a subscription. It counts towards the byte budget, but is queued even
+     * when the budget is used up. Only use this for commands that are bounded by other means
+     *
+     * @param message The command to queue
+     */
+    public void offerRequired(@NotNull OutboundMessage message) {
+        this.interactive.offer(message, true);
+    }
+
+    /**
+     * Take the next control frame or command to write, and record how long it waited. Expired messages are skipped
+     *
+     * @param priority {@link OutboundPriority#CONTROL} or {@link OutboundPriority#INTERACTIVE}
+     * @return The oldest message of the class, or null if there is none
+     */
+    @Nullable
+    public OutboundMessage poll(@NotNull OutboundPriority priority) {
+        return this.lane(priority).poll();
+    }
+
+    /**
+     * Queue a presence update, replacing the update that wasn't written yet
+     *
+     * @param message The serialized SET_ACTIVITY command
+     * @return The update that was replaced, or null
+     */
+    @Nullable
+    public OutboundMessage offerPresence(@NotNull OutboundMessage message) {
+        return this.presence.getAndSet(message);
+    }
+
+    /**
+     * @return The presence update waiting to be written, or null. It stays queued until {@link #presenceWritten(OutboundMessage)}
+     */
+    @Nullable
+    public OutboundMessage peekPresence() {
+        return this.presence.get();
+    }
+
+    /**
+     * Mark a presence update as written, and record how long it waited.
+     * A newer update that was queued during the write stays queued
+     *
+     * @param message The update returned by {@link #peekPresence()}
+     */
+    public void presenceWritten(@NotNull OutboundMessage message) {
+        this.presence.compareAndSet(message, null);
+        this.presenceLatency.recordSince(message.getQueuedAt());
+    }
+
+    /**
+     * Remove the presence update waiting to be written
+     *
+     * @return The update, or null if there was none
+     */
+    @Nullable
+    public OutboundMessage takePresence() {
+        return this.presence.getAndSet(null);
+    }
+
+    /**
+     * @param priority The class to count
+     * @return The number of messages of the class waiting to be written
+     */
+    public int size(@NotNull OutboundPriority priority) {
+        if (priority == OutboundPriority.PRESENCE)
+            return this.presence.get() == null ? 0 : 1;
+
+        return this.lane(priority).size.get();
+    }
+
+    /**
+     * @param priority {@link OutboundPriority#CONTROL} or {@link OutboundPriority#INTERACTIVE}
+     * @return The number of payload bytes of the class waiting to be written
+     */
+    public long bytes(@NotNull OutboundPriority priority) {
+        return this.lane(priority).bytes.get();
+    }
+
+    /**
+     * Drop the expired commands, and the commands replaced by a later one with the same compaction key
+     *
+     * @return The number of commands that were dropped
+     */
+    public int compact() {
+        return this.interactive.compact();
+    }
+
+    /**
+     * @return The number of payload bytes that commands can hold while they wait
+     */
+    public long getByteBudget() {
+        return this.interactive.budget;
+    }
+
+    /**
+     * Limit the payload bytes that commands can hold while they wait. Commands that don't fit, even after compacting, are dropped
+     *
+     * @param bytes The byte budget
+     */
+    public void setByteBudget(long bytes) {
+        if (bytes < 1)
+            throw new IllegalArgumentException("Byte budget must be positive, got " + bytes);
+
+        this.interactive.budget = bytes;
+    }
+
+    /**
+     * Drop every queued control frame or command of a class
+     *
+     * @param priority {@link OutboundPriority#CONTROL} or {@link OutboundPriority#INTERACTIVE}
+     */
+    public void clear(@NotNull OutboundPriority priority) {
+        this.lane(priority).clear();
+    }
+
+    private Lane lane(OutboundPriority priority) {
+        switch (priority) {
+            case CONTROL:
+                return this.control;
+            case INTERACTIVE:
+                return this.interactive;
+            default:
+                throw new IllegalArgumentException("Presence updates are queued with offerPresence");
+        }
+    }
+
+    private static String metricName(OutboundPriority priority, String metric) {
+        return "outbound." + priority.name().toLowerCase(Locale.ROOT) + "." + metric;
+    }
+
+    /**
+     * A bounded, lock-free queue for one class. The size and bytes are reserved before adding, so the bounds hold under contention.
+     * Messages are only removed through {@link Queue#remove(Object)} or {@link Queue#poll()}, so every message is accounted for once
+     */
+    private static final class Lane {
+
+        private final Queue<OutboundMessage> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+        private final int capacity;
+        private volatile long budget;
+        private final Counter dropped;
+        private final Counter expired;
+        private final Counter compacted;
+        private final LatencyHistogram latency;
+
+        Lane(RpcMetrics metrics, OutboundPriority priority, int capacity, long budget) {
+            this.capacity = capacity;
+            this.budget = budget;
+            this.dropped = metrics.counter(metricName(priority, "dropped"));
+            this.expired = metrics.counter(metricName(priority, "expired"));
+            this.compacted = metrics.counter(metricName(priority, "compacted"));
+            this.latency = metrics.histogram(metricName(priority, "latency"));
+        }
+
+        boolean offer(OutboundMessage message, boolean required) {
+            int bytes = message.size();
+
+            if (required) {
+                this.size.incrementAndGet();
+                this.bytes.addAndGet(bytes);
+                this.queue.offer(message);
+                return true;
+            }
+
+            // Make room by compacting first, and only drop the message if that wasn't enough
+            if (!this.reserve(bytes)) {
+                this.compact();
+
+                if (!this.reserve(bytes)) {
+                    this.dropped.increment();
+                    return false;
+                }
+            }
+
+            this.queue.offer(message);
+            return true;
+        }
+
+        private boolean reserve(int bytes) {
+            if (this.size.incrementAndGet() > this.capacity) {
+                this.size.decrementAndGet();
+                return false;
+            }
+
+            if (this.bytes.addAndGet(bytes) > this.budget) {
+                this.bytes.addAndGet(-bytes);
+                this.size.decrementAndGet();
+                return false;
+            }
+
+            return true;
+        }
+
+        OutboundMessage poll() {
+            OutboundMessage message;
+            long now = System.nanoTime();
+
+            while ((message = this.queue.poll()) != null) {
+                this.release(message);
+
+                if (!message.isExpired(now)) {
+                    this.latency.recordSince(message.getQueuedAt());
+                    return message;
+                }
+
+                this.expired.increment();
+            }
+
+            return null;
+        }
+
+        int compact() {
+            long now = System.nanoTime();
+            Map<String, OutboundMessage> latest = null;
+
+            for (OutboundMessage message : this.queue) {
+                if (message.getCompactionKey() != null) {
+                    if (latest == null)
+                        latest = new HashMap<>();
+
+                    latest.put(message.getCompactionKey(), message);
+                }
+            }
+
+            int removed = 0;
+
+            for (OutboundMessage message : this.queue) {
+                boolean isExpired = message.isExpired(now);
+                boolean isReplaced = message.getCompactionKey() != null && latest.get(message.getCompactionKey()) != message;
+
+                if ((isExpired || isReplaced) && this.queue.remove(message)) {
+                    this.release(message);
+                    removed++;
+
+                    if (isExpired)
+                        this.expired.increment();
+                    else
+                        this.compacted.increment();
+                }
+            }
+
+            return removed;
+        }
+
+        void clear() {
+            OutboundMessage message;
+
+            while ((message = this.queue.poll()) != null)
+                this.release(message);
+        }
+
+        private void release(OutboundMessage message) {
+            this.size.decrementAndGet();
+            this.bytes.addAndGet(-message.size());
+        }
+    }
+}
@@ -1,23 +1,43 @@
 package dev.firstdark.rpc.connection;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import dev.firstdark.rpc.DiscordRpc;
+import dev.firstdark.rpc.capture.TrafficCapture;
+import dev.firstdark.rpc.enums.CaptureDirection;
 import dev.firstdark.rpc.enums.ErrorCode;
 import dev.firstdark.rpc.enums.OpCode;
+import dev.firstdark.rpc.enums.OutboundPriority;
 import dev.firstdark.rpc.enums.RPCState;
+import dev.firstdark.rpc.exceptions.JsonCodecException;
 import dev.firstdark.rpc.exceptions.NoDiscordClientException;
 import dev.firstdark.rpc.exceptions.PipeAccessDenied;
 import dev.firstdark.rpc.exceptions.UnsupportedOsType;
+import dev.firstdark.rpc.connection.unix.IUnixBackend;
 import dev.firstdark.rpc.handlers.Callbacks;
-import dev.firstdark.rpc.models.MessageFrame;
+import dev.firstdark.rpc.jfr.JfrEvents;
+import dev.firstdark.rpc.models.ErrorEvent;
+import dev.firstdark.rpc.models.InboundMessage;
+import dev.firstdark.rpc.models.OutboundMessage;
+import dev.firstdark.rpc.models.ReadyEvent;
 import dev.firstdark.rpc.models.User;
+import dev.firstdark.rpc.metrics.RpcMetrics;
+import dev.firstdark.rpc.enums.TraceCategory;
+import dev.firstdark.rpc.enums.TraceLevel;
 import lombok.Getter;
 import lombok.Setter;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -29,8 +49,6 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 public class RPCConnection {
 
-    private static final Gson GSON = new GsonBuilder().serializeNulls().create();
-
     /**
      * The RPC OS backend currently in use
      */
@@ -52,9 +70,23 @@ public class RPCConnection {
     private final String appId;
     private ErrorCode lastErrorCode;
     private String lastErrorMessage;
+
+    /**
+     * The state of the connection. {@link RPCState#SENT_HANDSHAKE} while waiting for Discord to send READY
+     */
+    @Getter
     private RPCState state;
     private final Lock writeLock;
+
+    // Framed buffers that the pipe hasn't accepted yet. Guarded by the write lock
+    private final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+
+    // Inbound data that was read ahead, but not yet handled. Only used by the IO thread
+    private final ReadAheadBuffer readBuffer = new ReadAheadBuffer();
+    private final InboundMessage inbound = new InboundMessage();
     private final DiscordRpc rpcClient;
+    @Nullable
+    private Object handshakeEvent;
 
     /**
      * Internal method, to set up the RPC api and default values.
@@ -62,10 +94,10 @@ public class RPCConnection {
      *
      * @param applicationId The Discord Application ID
      * @param rpc The initialized {@link DiscordRpc} client
-     * @throws UnsupportedOsType Thrown when the current OS is not supported
+     * @param baseConnection The OS backend to use for the connection
      */
-    private RPCConnection(String applicationId, DiscordRpc rpc) throws UnsupportedOsType {
-        this.baseConnection = BaseConnection.createConnection(rpc);
+    private RPCConnection(String applicationId, DiscordRpc rpc, BaseConnection baseConnection) {
+        this.baseConnection = baseConnection;
         this.state = RPCState.DISCONNECTED;
         this.rpcClient = rpc;
 
@@ -88,7 +120,22 @@ public class RPCConnection {
      * @throws UnsupportedOsType Thrown when the current OS is not supported
      */
     public static RPCConnection create(String applicationId, DiscordRpc rpc) throws UnsupportedOsType {
-        return new RPCConnection(applicationId, rpc);
+        return new RPCConnection(applicationId, rpc, BaseConnection.createConnection(rpc));
+    }
+
+    /**
+     * Create a new instance of the RPC Connection Controller, connected to a specific UNIX socket.
+     * Mainly used by benchmarks and tests to run the SDK against a local or in-memory IPC server
+     *
+     * @param applicationId The Discord Application ID
+     * @param rpc The initialized {@link DiscordRpc} client
+     * @param backend The {@link IUnixBackend} to use, or null to use the default backend
+     * @param pipePath The socket path to connect to
+     * @return A new initialized instance of the RPC Connection controller
+     */
+    @ApiStatus.Internal
+    public static RPCConnection createUnix(String applicationId, DiscordRpc rpc, @Nullable IUnixBackend backend, @NotNull String pipePath) {
+        return new RPCConnection(applicationId, rpc, new UnixConnection(rpc, backend, pipePath));
     }
 
     /**
@@ -101,25 +148,22 @@ public class RPCConnection {
     }
 
     /**
-     * Check if the RPC connection is connected and ready to be used
+     * Close only the pipe of an RPC connection. Unlike {@link #destroy(RPCConnection)}, this is safe to call from any thread,
+     * while the IO thread is using the connection. The IO thread fails its next read or write, and closes the connection itself
      *
-     * @return True if connected
+     * @param connection The connection to close the pipe of
      */
-    public boolean isOpen() {
-        return this.state == RPCState.CONNECTED && baseConnection.isOpen();
+    public static void closePipe(RPCConnection connection) {
+        BaseConnection.destroyConnection(connection.baseConnection);
     }
 
     /**
-     * Construct the JSON data for the RPC handshake packet
+     * Check if the RPC connection is connected and ready to be used
      *
-     * @return The JSON string with needed data
+     * @return True if connected
      */
-    private String writeHandshake() {
-        JsonObject data = new JsonObject();
-        data.add("v", new JsonPrimitive(1));
-        data.add("client_id", new JsonPrimitive(this.appId));
-
-        return data.toString();
+    public boolean isOpen() {
+        return this.state == RPCState.CONNECTED && baseConnection.isOpen();
     }
 
     /**
@@ -128,63 +172,101 @@ public class RPCConnection {
      * @throws NoDiscordClientException No valid discord install was found
      */
     public void open() throws NoDiscordClientException, PipeAccessDenied {
-        if (this.state == RPCState.CONNECTED)
+        if (this.state == RPCState.CONNECTED) {
+            if (this.baseConnection.isOpen())
+                return;
+
+            // The pipe was closed without a read noticing it. Close properly, so the next attempt starts a new connection
+            this.lastErrorCode = ErrorCode.PIPE_CLOSED;
+            this.lastErrorMessage = "Pipe Closed";
+            this.close();
             return;
+        }
 
         if (this.state == RPCState.DISCONNECTED && !this.baseConnection.open())
             return;
 
         // We received the handshake packet from discord, so we need to process it
         if (this.state == RPCState.SENT_HANDSHAKE) {
-            JsonObject data = new JsonObject();
+            // Finish sending the handshake, if the pipe didn't accept all of it
+            if (!this.flush())
+                return;
 
-            if (this.read(data)) {
-                String cmd = data.has("cmd") && !data.get("cmd").isJsonNull() ? data.get("cmd").getAsString() : null;
-                String evt = data.has("evt") && !data.get("evt").isJsonNull() ? data.get("evt").getAsString() : null;
+            InboundMessage message = this.read();
 
+            if (message != null) {
                 // Check if the RPC is ready and dispatch the ready event
-                if (cmd != null && evt != null && cmd.equals("DISPATCH") && evt.equals("READY")) {
+                if ("DISPATCH".equals(message.getCmd()) && "READY".equals(message.getEvt())) {
                     this.state = RPCState.CONNECTED;
+                    JfrEvents.endHandshake(this.handshakeEvent, this.appId, true);
+                    this.rpcClient.getTracer().trace(TraceCategory.PROTOCOL, TraceLevel.DEBUG, () -> "Handshake complete");
+                    this.handshakeEvent = null;
 
                     // Construct the user class from the returned data
-                    JsonObject userData = data.get("data").getAsJsonObject().get("user").getAsJsonObject();
-                    User user = GSON.fromJson(userData, User.class);
+                    ReadyEvent ready;
+
+                    try {
+                        ready = message.readData(this.rpcClient.getJsonCodec(), ReadyEvent.class);
+                    } catch (JsonCodecException e) {
+                        this.rpcClient.getTracer().trace(TraceCategory.PROTOCOL, TraceLevel.DEBUG, () -> "Failed to read READY: " + e.getMessage());
+                        ready = null;
+                    }
+
+                    User user = ready == null ? null : ready.getUser();
 
                     if (connectedCallback != null)
                         this.connectedCallback.accept(user);
                 }
             }
 
+            // Answer any PING that arrived during the handshake
+            this.writeControl();
             return;
         }
 
-        // Connection is not yet open, so we send our handshake packet
-        MessageFrame messageFrame = new MessageFrame(OpCode.HANDSHAKE, this.writeHandshake());
-        boolean success;
-
-        this.writeLock.lock();
+        // Connection is not yet open, so we send our handshake packet. Control frames go out before anything else
+        ByteBuffer handshake = ByteBuffer.wrap(this.rpcClient.getJsonCodec().writeHandshake(1, this.appId));
+        this.handshakeEvent = JfrEvents.beginHandshake();
 
-        try {
-            success = this.baseConnection.write(messageFrame.write().array());
-        } finally {
-            this.writeLock.unlock();
+        if (!this.rpcClient.getOutboundScheduler().offer(OutboundPriority.CONTROL, new OutboundMessage(-1, OpCode.HANDSHAKE, new ByteBuffer[] { handshake }))) {
+            this.close();
+            return;
         }
 
-        if (success)
+        if (this.writeControl())
             this.state = RPCState.SENT_HANDSHAKE;
-        else
-            this.close();
     }
 
     /**
      * Shut down the active RPC connection
      */
     private void close() {
+        if (this.handshakeEvent != null) {
+            JfrEvents.endHandshake(this.handshakeEvent, this.appId, false);
+            this.handshakeEvent = null;
+        }
+
+        if (this.state != RPCState.DISCONNECTED)
+            this.rpcClient.getTracer().trace(TraceCategory.PROTOCOL, TraceLevel.DEBUG, () -> "Connection closed: " + this.lastErrorCode + " " + this.lastErrorMessage);
+
         if (this.disconnectedCallback != null && (this.state == RPCState.CONNECTED || this.state == RPCState.SENT_HANDSHAKE))
             this.disconnectedCallback.accept(this.lastErrorCode, this.lastErrorMessage);
 
         BaseConnection.destroyConnection(this.baseConnection);
         this.state = RPCState.DISCONNECTED;
+        this.readBuffer.clear();
+
+        // PONGs for this connection mean nothing to the next one
+        this.rpcClient.getOutboundScheduler().clear(OutboundPriority.CONTROL);
+
+        // A new connection is a new stream, so a partially written frame must not be resumed on it
+        this.writeLock.lock();
+
+        try {
+            this.outbound.clear();
+        } finally {
+            this.writeLock.unlock();
+        }
     }
 
     /**
@@ -194,13 +276,33 @@ public class RPCConnection {
      * @return True if sent
      */
     public boolean write(byte[] bytes) {
-        MessageFrame messageFrame = new MessageFrame(OpCode.FRAME, new String(bytes, StandardCharsets.UTF_8));
+        return this.write(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Send a data packet, made up of one or more buffers, to the IPC pipe.
+     * The buffers are framed without copying them, and are not modified, so they can be sent again
+     *
+     * @param payload The buffers holding the payload, in order
+     * @return True if sent
+     */
+    public boolean write(ByteBuffer... payload) {
+        return this.write(Collections.singletonList(payload));
+    }
 
+    /**
+     * Send several data packets to the IPC pipe, framed and flushed with a single gathering write.
+     * If the pipe doesn't accept everything, the rest is sent first on the next write or {@link #flush()}
+     *
+     * @param payloads The packets to send, in order. Each is made up of the buffers holding its payload, which are not modified
+     * @return True if sent
+     */
+    public boolean write(List<ByteBuffer[]> payloads) {
         boolean success;
         this.writeLock.lock();
 
         try {
-            success = this.baseConnection.write(messageFrame.write().array());
+            success = this.writeFrames(OpCode.FRAME, payloads);
         } finally {
             this.writeLock.unlock();
         }
@@ -213,81 +315,315 @@ public class RPCConnection {
         return true;
     }
 
+    /**
+     * Write the queued control frames, like the handshake and PONG replies, ahead of everything else that is queued
+     *
+     * @return False if the pipe failed
+     */
+    public boolean writeControl() {
+        OutboundScheduler scheduler = this.rpcClient.getOutboundScheduler();
+
+        if (scheduler.size(OutboundPriority.CONTROL) == 0)
+            return true;
+
+        boolean success = true;
+        this.writeLock.lock();
+
+        try {
+            OutboundMessage message;
+
+            while (success && (message = scheduler.poll(OutboundPriority.CONTROL)) != null)
+                success = this.writeFrames(message.getOpCode(), Collections.singletonList(message.getPayload()));
+        } finally {
+            this.writeLock.unlock();
+        }
+
+        if (!success) {
+            this.close();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if the IPC pipe still has to accept data from an earlier write. New data can only be sent after it
+     *
+     * @return True if there is unsent data
+     */
+    public boolean hasUnsentData() {
+        this.writeLock.lock();
+
+        try {
+            return !this.outbound.isEmpty();
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    /**
+     * Wait until the IPC pipe has room for the unsent data, or has data to read, so a full pipe is written again
+     * as soon as possible. Returns early when {@link #wakeup()} is called
+     *
+     * @param timeoutNanos The longest time to wait
+     * @return True if the connection waited, false if it can't wait for room to write
+     */
+    public boolean awaitWritable(long timeoutNanos) {
+        return this.baseConnection.awaitWritable(timeoutNanos);
+    }
+
+    /**
+     * Wake up a thread waiting in {@link #awaitWritable(long)}
+     */
+    public void wakeup() {
+        this.baseConnection.wakeup();
+    }
+
+    /**
+     * Resume sending data that the IPC pipe didn't accept during an earlier write
+     *
+     * @return False if the pipe failed
+     */
+    public boolean flush() {
+        boolean success;
+        this.writeLock.lock();
+
+        try {
+            success = this.flushOutbound();
+        } finally {
+            this.writeLock.unlock();
+        }
+
+        if (!success) {
+            this.close();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Internal method
+     * Frame payloads, capturing them if traffic capture is enabled, and flush them to the IPC pipe behind any unsent data.
+     * The caller must hold the write lock
+     *
+     * @param opCode The {@link OpCode} of the frames
+     * @param payloads The buffers holding the payload of every frame. Their positions are not changed
+     * @return False if the pipe failed
+     */
+    private boolean writeFrames(OpCode opCode, List<ByteBuffer[]> payloads) {
+        // One array holds the headers of every frame in the batch
+        byte[] headers = new byte[8 * payloads.size()];
+        ByteBuffer headerWriter = ByteBuffer.wrap(headers).order(ByteOrder.LITTLE_ENDIAN);
+
+        RpcMetrics metrics = this.rpcClient.getMetrics();
+        TrafficCapture capture = this.rpcClient.getTrafficCapture();
+        int bytes = 0;
+
+        for (int i = 0; i < payloads.size(); i++) {
+            ByteBuffer[] payload = payloads.get(i);
+            int length = 0;
+
+            for (ByteBuffer buffer : payload)
+                length += buffer.remaining();
+
+            headerWriter.putInt(opCode.ordinal()).putInt(length);
+            this.outbound.add(ByteBuffer.wrap(headers, i * 8, 8));
+
+            for (ByteBuffer buffer : payload)
+                this.outbound.add(buffer.duplicate());
+
+            bytes += 8 + length;
+            metrics.getFramesOut().increment();
+            this.rpcClient.getTracer().trace(TraceCategory.TRANSPORT, TraceLevel.TRACE, payload, buffers -> "Wrote " + opCode + " frame " + decode(buffers));
+
+            if (capture != null)
+                capture.record(CaptureDirection.OUTBOUND, opCode, payload);
+        }
+
+        Object event = JfrEvents.beginFrameWrite();
+        boolean success = this.flushOutbound();
+        JfrEvents.endFrameWrite(event, opCode, bytes, success);
+        return success;
+    }
+
+    /**
+     * Internal method
+     * Write as much of the unsent data as the IPC pipe accepts. The caller must hold the write lock
+     *
+     * @return False if the pipe failed
+     */
+    private boolean flushOutbound() {
+        if (this.outbound.isEmpty())
+            return true;
+
+        long written = this.baseConnection.write(this.outbound.toArray(new ByteBuffer[0]));
+
+        if (written < 0) {
+            this.rpcClient.getMetrics().getWriteFailures().increment();
+            this.outbound.clear();
+            return false;
+        }
+
+        this.rpcClient.getMetrics().getBytesOut().add(written);
+
+        while (!this.outbound.isEmpty() && !this.outbound.peek().hasRemaining())
+            this.outbound.poll();
+
+        if (!this.outbound.isEmpty())
+            this.rpcClient.getTracer().trace(TraceCategory.TRANSPORT, TraceLevel.DEBUG, this.outbound, unsent -> "Pipe is full, " + unsent.size() + " buffers left to send");
+
+        return true;
+    }
+
+    /**
+     * Decode a payload for logging
+     *
+     * @param payload The buffers holding the payload. Their positions are not changed
+     * @return The payload as a String
+     */
+    private static String decode(ByteBuffer[] payload) {
+        int length = 0;
+
+        for (ByteBuffer buffer : payload)
+            length += buffer.remaining();
+
+        // Join the buffers first, a character may be split between them
+        ByteBuffer joined = ByteBuffer.allocate(length);
+
+        for (ByteBuffer buffer : payload)
+            joined.put(buffer.duplicate());
+
+        joined.flip();
+        return StandardCharsets.UTF_8.decode(joined).toString();
+    }
+
     /**
      * Convert a data packet to a JSON object, for later use
      *
      * @param jsonObject The JSON object that will be filled with data
      * @return True if successful
+     * @deprecated Builds the complete JSON tree of every message. Use {@link #read()} instead
      */
+    @Deprecated
     public boolean read(JsonObject jsonObject) {
-        if (this.state != RPCState.CONNECTED && this.state != RPCState.SENT_HANDSHAKE)
+        InboundMessage message = this.read();
+
+        if (message == null)
             return false;
 
-        MessageFrame messageFrame = new MessageFrame();
+        // An empty frame is an empty message
+        if (message.toString().isEmpty())
+            return true;
+
+        try {
+            JsonParser.parseString(message.toString()).getAsJsonObject().entrySet().forEach(entry -> jsonObject.add(entry.getKey(), entry.getValue()));
+            return true;
+        } catch (JsonParseException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Read the next message from Discord. Pings, and the frames around the message, are handled along the way.
+     * Only the {@code cmd}, {@code evt} and {@code nonce} of the message are decoded, the data is parsed on demand
+     *
+     * @return The message, or null if no complete message is available. Only valid until the next call
+     */
+    @Nullable
+    public InboundMessage read() {
+        if (this.state != RPCState.CONNECTED && this.state != RPCState.SENT_HANDSHAKE)
+            return null;
+
+        ReadAheadBuffer buffer = this.readBuffer;
 
         while (true) {
-            // Process the OpCode header
-            boolean didRead = this.baseConnection.read(messageFrame.getHeaderBuffer(), messageFrame.getHeaderBuffer().length);
-            if (!didRead || !messageFrame.parseHeader()) {
-                if (!this.baseConnection.isOpen()) {
+            // The stream can't be trusted after a bad header, so start over with a new connection
+            if (buffer.hasHeader() && !buffer.isHeaderValid()) {
+                this.rpcClient.getMetrics().getCorruptFrames().increment();
+                this.lastErrorCode = ErrorCode.READ_CORRUPT;
+                this.lastErrorMessage = "Bad IPC Frame Header";
+                this.close();
+                return null;
+            }
+
+            // Pull everything the pipe has when we don't have a complete frame yet
+            if (!buffer.hasFrame()) {
+                int read = buffer.fill(this.baseConnection);
+
+                if (read < 0) {
                     this.lastErrorCode = ErrorCode.PIPE_CLOSED;
                     this.lastErrorMessage = "Pipe Closed";
                     this.close();
+                    return null;
                 }
 
-                return false;
-            }
-
-            // Read the JSON data from the packet
-            if (messageFrame.getLength() > 0) {
-                didRead = this.baseConnection.read(messageFrame.getMessageBuffer(), messageFrame.getLength());
+                if (read == 0)
+                    return null;
 
-                if (!didRead || !messageFrame.parseMessage()) {
-                    this.lastErrorCode = ErrorCode.READ_CORRUPT;
-                    this.lastErrorMessage = "Partial data in frame";
-                    this.close();
+                continue;
+            }
 
-                    return false;
-                }
+            Object event = JfrEvents.beginFrameRead();
+            OpCode opCode = OpCode.values()[buffer.opCode()];
+            int length = buffer.payloadLength();
+            int offset = buffer.payloadOffset();
+            byte[] bytes = buffer.array();
+
+            JfrEvents.endFrameRead(event, opCode, 8 + length);
+            this.rpcClient.getTracer().trace(TraceCategory.TRANSPORT, TraceLevel.TRACE, opCode, code -> "Read " + code + " frame, " + (8 + length) + " bytes");
+            this.rpcClient.getMetrics().getFramesIn().increment();
+            this.rpcClient.getMetrics().getBytesIn().add(8 + length);
+
+            TrafficCapture capture = this.rpcClient.getTrafficCapture();
+            if (capture != null)
+                capture.record(CaptureDirection.INBOUND, opCode, bytes, offset, length);
+
+            // The message points into the read buffer, which stays untouched until the next read
+            InboundMessage message = this.inbound;
+            buffer.consume();
+
+            if (!message.decode(bytes, offset, length)) {
+                this.rpcClient.getMetrics().getCorruptFrames().increment();
+                this.lastErrorCode = ErrorCode.READ_CORRUPT;
+                this.lastErrorMessage = "Bad IPC Frame Payload";
+                this.close();
+                return null;
             }
 
-            JsonObject object = GSON.fromJson(messageFrame.getMessage(), JsonObject.class);
-            rpcClient.printDebug("Got Message %s", object.toString());
+            this.rpcClient.getTracer().trace(TraceCategory.PROTOCOL, TraceLevel.TRACE, message, raw -> "Got Message " + raw);
 
             // Check what OpCode was sent to us
-            switch (messageFrame.getOpCode()) {
+            switch (opCode) {
                 // Connection terminated, so we need to close our client
                 case CLOSE:
-                    object.entrySet().forEach(entry -> jsonObject.add(entry.getKey(), entry.getValue()));
+                    ErrorEvent reason;
 
-                    int error = object.has("code") && !object.get("code").isJsonNull() ? object.get("code").getAsInt() : 0;
+                    try {
+                        reason = message.read(this.rpcClient.getJsonCodec(), ErrorEvent.class);
+                    } catch (JsonCodecException e) {
+                        reason = null;
+                    }
+
+                    int error = reason != null ? reason.getCode() : 0;
                     if (error == 1000)
                         error = 4;
 
                     this.lastErrorCode = error >= ErrorCode.values().length ? ErrorCode.UNKNOWN : ErrorCode.values()[error];
-                    this.lastErrorMessage = object.has("message") && !object.get("message").isJsonNull() ? object.get("message").getAsString() : "";
+                    this.lastErrorMessage = reason != null && reason.getMessage() != null ? reason.getMessage() : "";
                     this.close();
-                    return false;
+                    return null;
 
                 // Generic update update
                 case FRAME:
-                    object.entrySet().forEach(entry -> jsonObject.add(entry.getKey(), entry.getValue()));
-                    return true;
+                    return message;
 
+                // Answered from the control queue, before anything else the IO thread writes
                 case PING:
-                    messageFrame.setOpCode(OpCode.PONG);
-
-                    boolean success;
-                    this.writeLock.lock();
-
-                    try {
-                        success = this.baseConnection.write(messageFrame.write().array());
-                    } finally {
-                        this.writeLock.unlock();
-                    }
+                    ByteBuffer pong = ByteBuffer.wrap(Arrays.copyOfRange(bytes, offset, offset + length));
 
-                    if (success)
-                        this.close();
+                    if (!this.rpcClient.getOutboundScheduler().offer(OutboundPriority.CONTROL, new OutboundMessage(-1, OpCode.PONG, new ByteBuffer[] { pong })))
+                        this.rpcClient.getTracer().trace(TraceCategory.PROTOCOL, TraceLevel.DEBUG, () -> "Control queue is full, dropped PONG");
 
                     break;
 
@@ -299,7 +635,7 @@ public class RPCConnection {
                     this.lastErrorCode = ErrorCode.READ_CORRUPT;
                     this.lastErrorMessage = "Bad IPC Frame";
                     this.close();
-                    return false;
+                    return null;
             }
         }
     }
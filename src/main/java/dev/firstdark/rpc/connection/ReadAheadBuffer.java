@@ -0,0 +1,119 @@
+package dev.firstdark.rpc.connection;
+
+import dev.firstdark.rpc.enums.OpCode;
+
+/**
+ * @author HypherionSA
+ * Read-ahead buffer for inbound IPC frames.
+ * Every read pulls as much data as the pipe has, and every complete frame is then parsed straight from the buffer.
+ * Space is reclaimed by moving the unread bytes (at most one partial frame) to the front, so frames are always contiguous
+ */
+class ReadAheadBuffer {
+
+    static final int HEADER_SIZE = 8;
+    static final int MAX_PAYLOAD = 65535 - HEADER_SIZE;
+
+    // Room for a full frame, plus a full frame of read-ahead
+    private final byte[] data = new byte[2 * (HEADER_SIZE + MAX_PAYLOAD)];
+    private int start;
+    private int end;
+
+    /**
+     * Read whatever data the pipe has into the buffer
+     *
+     * @param connection The connection to read from
+     * @return The number of bytes read, 0 if no data was available, or -1 if the pipe was closed or failed
+     */
+    int fill(BaseConnection connection) {
+        if (this.start == this.end) {
+            this.start = 0;
+            this.end = 0;
+        } else if (this.data.length - this.end < HEADER_SIZE + MAX_PAYLOAD) {
+            System.arraycopy(this.data, this.start, this.data, 0, this.end - this.start);
+            this.end -= this.start;
+            this.start = 0;
+        }
+
+        int read = connection.read(this.data, this.end, this.data.length - this.end);
+
+        if (read > 0)
+            this.end += read;
+
+        return read;
+    }
+
+    /**
+     * @return True if the buffer holds the header of the next frame
+     */
+    boolean hasHeader() {
+        return this.end - this.start >= HEADER_SIZE;
+    }
+
+    /**
+     * Check the header of the next frame. The stream can't be trusted after a bad header
+     *
+     * @return True if the header can be valid
+     */
+    boolean isHeaderValid() {
+        int code = this.opCode();
+        int length = this.payloadLength();
+        return code >= 0 && code < OpCode.values().length && length >= 0 && length <= MAX_PAYLOAD;
+    }
+
+    /**
+     * @return True if the buffer holds the next frame completely. The header must be valid
+     */
+    boolean hasFrame() {
+        return this.hasHeader() && this.end - this.start >= HEADER_SIZE + this.payloadLength();
+    }
+
+    /**
+     * @return The raw opcode of the next frame
+     */
+    int opCode() {
+        return this.readInt(this.start);
+    }
+
+    /**
+     * @return The payload length of the next frame
+     */
+    int payloadLength() {
+        return this.readInt(this.start + 4);
+    }
+
+    /**
+     * @return The array holding the frame data. Only valid until the next call to {@link #fill(BaseConnection)}
+     */
+    byte[] array() {
+        return this.data;
+    }
+
+    /**
+     * @return The index of the payload of the next frame in {@link #array()}
+     */
+    int payloadOffset() {
+        return this.start + HEADER_SIZE;
+    }
+
+    /**
+     * Move past the next frame, once it has been handled
+     */
+    void consume() {
+        this.start += HEADER_SIZE + this.payloadLength();
+    }
+
+    /**
+     * Discard all buffered data, for example when the connection is closed
+     */
+    void clear() {
+        this.start = 0;
+        this.end = 0;
+    }
+
+    private int readInt(int index) {
+        return (this.data[index] & 0xFF)
+                | (this.data[index + 1] & 0xFF) << 8
+                | (this.data[index + 2] & 0xFF) << 16
+                | (this.data[index + 3] & 0xFF) << 24;
+    }
+}
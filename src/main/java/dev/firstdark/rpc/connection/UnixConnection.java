@@ -8,6 +8,11 @@ import dev.firstdark.rpc.connection.unix.IUnixBackend;
 import dev.firstdark.rpc.connection.unix.JUnixBackend;
 //#endif
 import dev.firstdark.rpc.exceptions.NoDiscordClientException;
+import dev.firstdark.rpc.jfr.JfrEvents;
+import dev.firstdark.rpc.enums.TraceCategory;
+import dev.firstdark.rpc.enums.TraceLevel;
+import org.jetbrains.annotations.Nullable;
+
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -24,13 +29,34 @@ class UnixConnection extends BaseConnection {
     // Linux/Mac uses sockets to communicate with Discord
     private IUnixBackend unixBackend;
 
+    // Fixed pipe to connect to. When null, the default Discord locations are scanned
+    private final String pipePath;
+
     /**
      * Create a new instance of a UNIX IPC pipe
      *
      * @param rpc The initialized {@link DiscordRpc} client
      */
     UnixConnection(DiscordRpc rpc) {
+        this(rpc, null, null);
+    }
+
+    /**
+     * Create a new instance of a UNIX IPC pipe, using a custom backend and/or pipe
+     *
+     * @param rpc The initialized {@link DiscordRpc} client
+     * @param backend The {@link IUnixBackend} to use, or null for the default backend
+     * @param pipePath The pipe to connect to, or null to scan for a Discord client
+     */
+    UnixConnection(DiscordRpc rpc, @Nullable IUnixBackend backend, @Nullable String pipePath) {
         super(rpc);
+        this.pipePath = pipePath;
+
+        if (backend != null) {
+            this.unixBackend = backend;
+            return;
+        }
+
         //#if modernjava
         //$$ this.unixBackend = new NIOUnixBackend();
         //#else
@@ -61,6 +87,17 @@ class UnixConnection extends BaseConnection {
         if (this.isOpen())
             throw new IllegalStateException("Connection is already opened");
 
+        if (this.pipePath != null) {
+            try {
+                this.unixBackend.openPipe(this.pipePath);
+                getRpc().getTracer().trace(TraceCategory.TRANSPORT, TraceLevel.DEBUG, () -> "Connected to IPC pipe " + this.pipePath);
+                return true;
+            } catch (Exception e) {
+                getRpc().getTracer().trace(TraceCategory.TRANSPORT, TraceLevel.DEBUG, () -> "Failed to connect to pipe " + this.pipePath + ": " + e);
+                throw new NoDiscordClientException();
+            }
+        }
+
         if (this.tryOpenConnection(pipeName))
             return true;
 
@@ -79,20 +116,28 @@ class UnixConnection extends BaseConnection {
      * @return True if opened
      */
     private boolean tryOpenConnection(String pipeName) {
+        Object event = JfrEvents.beginPipeDiscovery();
+        int attempts = 0;
+
         for (int i = 0; i < 10; i++) {
+            String path = String.format(pipeName, i);
+
             try {
-                File test = new File(String.format(pipeName, i));
+                File test = new File(path);
                 if (!test.exists())
                     continue;
 
-                this.unixBackend.openPipe(String.format(pipeName, i));
-                getRpc().printDebug("Connected to IPC pipe %s", String.format(pipeName, i));
+                attempts++;
+                this.unixBackend.openPipe(path);
+                getRpc().getTracer().trace(TraceCategory.TRANSPORT, TraceLevel.DEBUG, () -> "Connected to IPC pipe " + path);
+                JfrEvents.endPipeDiscovery(event, pipeName, path, attempts);
                 return true;
             } catch (Exception e) {
-                getRpc().printDebug("Failed to connect to pipe %s", String.format(pipeName, i), e);
+                getRpc().getTracer().trace(TraceCategory.TRANSPORT, TraceLevel.DEBUG, () -> "Failed to connect to pipe " + path + ": " + e);
             }
         }
 
+        JfrEvents.endPipeDiscovery(event, pipeName, null, attempts);
         return false;
     }
 
@@ -100,79 +145,105 @@ class UnixConnection extends BaseConnection {
      * Close the open pipe connection, not allowing any new communications
      */
     @Override
-    void close() {
+    synchronized void close() {
         if (!this.isOpen())
             return;
 
         try {
             this.unixBackend.closePipe();
         } catch (IOException e) {
-            getRpc().printDebug("Failed to close connection", e);
+            getRpc().getTracer().trace(TraceCategory.TRANSPORT, TraceLevel.DEBUG, () -> "Failed to close connection: " + e);
         }
     }
 
     /**
-     * Send a packet to the IPC pipe
+     * Send data made up of several buffers to the IPC pipe, with gathering writes
      *
-     * @param bytes The ByteArray of data to send
-     * @return True if successful
+     * @param buffers The buffers to send, in order
+     * @return The number of bytes sent, which is less than requested if the socket is full, or -1 on failure
      */
     @Override
-    boolean write(byte[] bytes) {
+    long write(ByteBuffer[] buffers) {
         if (!this.isOpen())
-            return false;
+            return -1;
+
+        long remaining = 0;
+        long total = 0;
+
+        for (ByteBuffer buffer : buffers)
+            remaining += buffer.remaining();
 
         try {
-            this.unixBackend.write(bytes);
-            return true;
+            // Sockets may accept less than the full frame, so keep going until it's all sent, or the socket is full
+            while (remaining > 0) {
+                long written = this.unixBackend.write(buffers);
+
+                if (written < 0)
+                    throw new IOException("Pipe closed while writing");
+
+                if (written == 0)
+                    break;
+
+                total += written;
+                remaining -= written;
+            }
+
+            return total;
         } catch (Exception e) {
-            getRpc().printDebug("Failed to write packet %s", e);
-            return false;
+            getRpc().getTracer().trace(TraceCategory.TRANSPORT, TraceLevel.DEBUG, () -> "Failed to write packet: " + e);
+            return -1;
         }
     }
 
     /**
-     * Read a packet from the IPC pipe
+     * Read whatever data the IPC pipe has received, with a single read
      *
-     * @param bytes The bytes received
-     * @param length The length of the data to be read
-     * @return True if successful
+     * @param bytes The buffer to read into
+     * @param offset The offset in the buffer to start writing at
+     * @param length The maximum number of bytes to read
+     * @return The number of bytes read, 0 if no data was available, or -1 if the pipe was closed or failed
      */
     @Override
-    boolean read(byte[] bytes, int length) {
-        if (bytes == null || bytes.length == 0)
-            return bytes != null;
-
+    int read(byte[] bytes, int offset, int length) {
         if (!isOpen())
-            return false;
+            return -1;
 
         try {
-            long available = this.unixBackend.getAvailable();
-
-            //#if modernjava
-            //$$ if (available == 0)
-            //$$       return false;
-            //#else
-            if (available < length)
-                return false;
-            //#endif
-
-            byte[] buf = new byte[length];
-            int read = this.unixBackend.read(buf);
-            if (read != length)
-                throw new IOException("Read less data than supplied. Expected: " + length + ". Got: " + read);
-
-            ByteBuffer buffer = ByteBuffer.wrap(buf);
-            buffer.rewind();
-            buffer.get(bytes, 0, length);
-            return true;
+            return this.unixBackend.readAvailable(bytes, offset, length);
         } catch (Exception e) {
             getRpc().getLogger().error("Failed to read packet %s", e);
             this.close();
+            return -1;
+        }
+    }
+
+    /**
+     * Wait until the socket has room for more data, or has data to read, if the backend supports it
+     *
+     * @param timeoutNanos The longest time to wait
+     * @return True if the backend waited, false if it can't wait for room to write
+     */
+    @Override
+    boolean awaitWritable(long timeoutNanos) {
+        if (!this.isOpen())
+            return false;
+
+        try {
+            return this.unixBackend.awaitWritable(timeoutNanos);
+        } catch (IOException e) {
+            getRpc().getTracer().trace(TraceCategory.TRANSPORT, TraceLevel.DEBUG, () -> "Failed to wait for the socket: " + e);
             return false;
         }
     }
 
+    /**
+     * Wake up a thread waiting in {@link #awaitWritable(long)}
+     */
+    @Override
+    void wakeup() {
+        this.unixBackend.wakeup();
+    }
+
     /**
      * Register an application as a Discord application
      *
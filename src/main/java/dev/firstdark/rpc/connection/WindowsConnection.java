@@ -3,11 +3,15 @@ package dev.firstdark.rpc.connection;
 import dev.firstdark.rpc.DiscordRpc;
 import dev.firstdark.rpc.exceptions.NoDiscordClientException;
 import dev.firstdark.rpc.exceptions.PipeAccessDenied;
+import dev.firstdark.rpc.jfr.JfrEvents;
+import dev.firstdark.rpc.enums.TraceCategory;
+import dev.firstdark.rpc.enums.TraceLevel;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
@@ -19,8 +23,9 @@ import java.nio.file.Path;
 class WindowsConnection extends BaseConnection {
 
     // Windows uses a random file, instead of sockets
-    private RandomAccessFile pipe;
-    private boolean opened;
+    // Volatile, because the pipe can be closed by a thread that didn't open it
+    private volatile RandomAccessFile pipe;
+    private volatile boolean opened;
 
     /**
      * Create a new instance of a Windows IPC pipe
@@ -56,6 +61,9 @@ class WindowsConnection extends BaseConnection {
         if (this.isOpen())
             throw new IllegalStateException("Connection is already opened");
 
+        Object event = JfrEvents.beginPipeDiscovery();
+        int attempts = 0;
+
         for (int i = 0; i < 10; i++) {
             String pipePath = String.format(pipeName, i);
 
@@ -63,22 +71,26 @@ class WindowsConnection extends BaseConnection {
                 if (!new File(pipePath).exists())
                     continue;
 
+                attempts++;
                 this.pipe = new RandomAccessFile(pipePath, "rw");
                 this.opened = true;
-                getRpc().printDebug("Connected to IPC Pipe %s", String.format(pipeName, i));
+                getRpc().getTracer().trace(TraceCategory.TRANSPORT, TraceLevel.DEBUG, () -> "Connected to IPC pipe " + pipePath);
+                JfrEvents.endPipeDiscovery(event, pipeName, pipePath, attempts);
                 return true;
             } catch (FileNotFoundException e) {
                 if (e.getMessage().toLowerCase().contains("access is denied")) {
+                    JfrEvents.endPipeDiscovery(event, pipeName, null, attempts);
                     throw new PipeAccessDenied("Cannot access pipe " + String.format(pipeName, i) + " due to permission errors. Ensure discord is NOT running in administrator mode!");
                 } else {
                     e.printStackTrace();
-                    getRpc().printDebug("Failed to connect to pipe %s", e);
+                    getRpc().getTracer().trace(TraceCategory.TRANSPORT, TraceLevel.DEBUG, () -> "Failed to connect to pipe " + pipePath + ": " + e);
                 }
             } catch (SecurityException sec) {
                 getRpc().getLogger().error("Failed to open RPC Connection, with error Access Denied. Is Discord running in Administrator mode?");
             }
         }
 
+        JfrEvents.endPipeDiscovery(event, pipeName, null, attempts);
         throw new NoDiscordClientException();
     }
 
@@ -86,69 +98,76 @@ class WindowsConnection extends BaseConnection {
      * Close the open pipe connection, not allowing any new communications
      */
     @Override
-    void close() {
+    synchronized void close() {
         if (!this.isOpen())
             return;
 
         try {
             this.pipe.close();
         } catch (Exception e) {
-            getRpc().printDebug("Failed to close pipe %s", e);
+            getRpc().getTracer().trace(TraceCategory.TRANSPORT, TraceLevel.DEBUG, () -> "Failed to close pipe: " + e);
         }
 
         this.opened = false;
     }
 
     /**
-     * Send a packet to the IPC pipe
+     * Send data made up of several buffers to the IPC pipe. The buffers are copied into a single array,
+     * so the pipe receives every frame with one write
      *
-     * @param bytes The ByteArray of data to send
-     * @return True if successful
+     * @param buffers The buffers to send, in order
+     * @return The number of bytes sent, or -1 on failure. Pipe writes always send everything
      */
     @Override
-    boolean write(byte[] bytes) {
+    long write(ByteBuffer[] buffers) {
         if (!this.isOpen())
-            return false;
+            return -1;
+
+        int length = 0;
+
+        for (ByteBuffer buffer : buffers)
+            length += buffer.remaining();
+
+        byte[] bytes = new byte[length];
+        int offset = 0;
+
+        for (ByteBuffer buffer : buffers) {
+            int count = buffer.remaining();
+            buffer.get(bytes, offset, count);
+            offset += count;
+        }
 
         try {
             this.pipe.write(bytes);
-            return true;
+            return length;
         } catch (Exception ignored) {
-            return false;
+            return -1;
         }
     }
 
     /**
-     * Read a packet from the IPC pipe
+     * Read whatever data the IPC pipe has received, without waiting for more
      *
-     * @param bytes The bytes received
-     * @param length The length of the data to be read
-     * @return True if successful
+     * @param bytes The buffer to read into
+     * @param offset The offset in the buffer to start writing at
+     * @param length The maximum number of bytes to read
+     * @return The number of bytes read, 0 if no data was available, or -1 if the pipe was closed or failed
      */
     @Override
-    boolean read(byte[] bytes, int length) {
-        if (bytes == null || bytes.length == 0)
-            return bytes != null;
-
+    int read(byte[] bytes, int offset, int length) {
         if (!this.isOpen())
-            return false;
+            return -1;
 
         try {
             long available = this.pipe.length() - this.pipe.getFilePointer();
-            if (available < length)
-                return false;
-
-            int read = this.pipe.read(bytes, 0, length);
-
-            if (read != length)
-                throw new IOException("Read less data than supplied. Expected: " + length + ". Got: " + read);
-
-            return true;
+            if (available <= 0)
+                return 0;
 
+            return this.pipe.read(bytes, offset, (int) Math.min(available, length));
         } catch (IOException e) {
-            getRpc().printDebug("Failed to read packet %s", e);
+            getRpc().getTracer().trace(TraceCategory.TRANSPORT, TraceLevel.DEBUG, () -> "Failed to read packet: " + e);
             this.close();
-            return false;
+            return -1;
         }
     }
 
@@ -1,6 +1,8 @@
 package dev.firstdark.rpc.connection.unix;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /***
  * @author HypherionSA
@@ -20,7 +22,8 @@ public interface IUnixBackend {
     void openPipe(String path) throws IOException;
 
     /**
-     * Close the backend connection, closing the pipe
+     * Close the backend connection, closing the pipe.
+     * Can be called from any thread, also while another thread is blocked reading from or writing to the pipe
      *
      * @throws IOException Thrown when an error occurs
      */
@@ -34,10 +37,71 @@ public interface IUnixBackend {
      */
     void write(byte[] bytes) throws IOException;
 
+    /**
+     * Write part of an array to the backend connection. Like a socket write, this may write less than requested.
+     * By default, the bytes are written with {@link #write(byte[])}, which writes everything
+     *
+     * @param bytes The bytes to be written
+     * @param offset The offset of the first byte to write
+     * @param length The number of bytes to write
+     * @return The number of bytes actually written
+     * @throws IOException Thrown when an exception occurs
+     */
+    default int write(byte[] bytes, int offset, int length) throws IOException {
+        if (offset == 0 && length == bytes.length)
+            this.write(bytes);
+        else
+            this.write(Arrays.copyOfRange(bytes, offset, offset + length));
+
+        return length;
+    }
+
+    /**
+     * Write several buffers to the backend connection, in order, like a gathering socket write.
+     * Like a socket write, this may write less than requested. The buffer positions are advanced past the bytes written.
+     * By default, every buffer is written with {@link #write(byte[], int, int)}
+     *
+     * @param buffers The buffers to be written
+     * @return The number of bytes actually written
+     * @throws IOException Thrown when an exception occurs
+     */
+    default long write(ByteBuffer[] buffers) throws IOException {
+        long total = 0;
+
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                int requested;
+                int written;
+
+                if (buffer.hasArray()) {
+                    requested = buffer.remaining();
+                    written = this.write(buffer.array(), buffer.arrayOffset() + buffer.position(), requested);
+                } else {
+                    // Direct and read-only buffers have no array to write from
+                    byte[] chunk = new byte[Math.min(buffer.remaining(), 8192)];
+                    buffer.duplicate().get(chunk);
+                    requested = chunk.length;
+                    written = this.write(chunk, 0, requested);
+                }
+
+                if (written < 0)
+                    return total == 0 ? -1 : total;
+
+                buffer.position(buffer.position() + written);
+                total += written;
+
+                if (written < requested)
+                    return total;
+            }
+        }
+
+        return total;
+    }
+
     /**
      * Get the amount of data available for reading from the backend
      *
-     * @return This will always return 0 when using NIO
+     * @return The number of bytes that can be read without blocking, or 1 if the backend can only tell that data is ready. -1 if the connection was closed
      * @throws IOException Thrown when an error occurs
      */
     int getAvailable() throws IOException;
@@ -51,6 +115,66 @@ public interface IUnixBackend {
      */
     int read(byte[] bytes) throws IOException;
 
+    /**
+     * Read data from the backend into part of an array. Like a socket read, this may return less than requested.
+     * By default, the data is read with {@link #read(byte[])}, through a temporary array when only part of the array is read into
+     *
+     * @param bytes The byte buffer to read to
+     * @param offset The offset in the buffer to start writing at
+     * @param length The maximum number of bytes to read
+     * @return The total number of bytes read, or -1 if the connection was closed
+     * @throws IOException Thrown when an error occurs
+     */
+    default int read(byte[] bytes, int offset, int length) throws IOException {
+        if (offset == 0 && length == bytes.length)
+            return this.read(bytes);
+
+        byte[] chunk = new byte[length];
+        int read = this.read(chunk);
+
+        if (read > 0)
+            System.arraycopy(chunk, 0, bytes, offset, read);
+
+        return read;
+    }
+
+    /**
+     * Read whatever data is available from the backend, without waiting for more.
+     * By default, this checks {@link #getAvailable()} once, and then reads with {@link #read(byte[], int, int)}
+     *
+     * @param bytes The byte buffer to read to
+     * @param offset The offset in the buffer to start writing at
+     * @param length The maximum number of bytes to read
+     * @return The total number of bytes read, 0 if no data was available, or -1 if the connection was closed
+     * @throws IOException Thrown when an error occurs
+     */
+    default int readAvailable(byte[] bytes, int offset, int length) throws IOException {
+        int available = this.getAvailable();
+
+        if (available <= 0)
+            return available;
+
+        return this.read(bytes, offset, length);
+    }
+
+    /**
+     * Wait until the backend can accept more data, or has data to read, after a write that was cut short.
+     * By default, backends can't tell, and this returns false right away
+     *
+     * @param timeoutNanos The longest time to wait
+     * @return True if the backend waited, false if it can't wait for room to write
+     * @throws IOException Thrown when an error occurs
+     */
+    default boolean awaitWritable(long timeoutNanos) throws IOException {
+        return false;
+    }
+
+    /**
+     * Wake up a thread waiting in {@link #awaitWritable(long)}. By default, this does nothing
+     */
+    default void wakeup() {
+    }
+
     /**
      * Check if the backend implementation is connected or not
      *
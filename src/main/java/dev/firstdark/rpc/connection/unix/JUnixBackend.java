@@ -3,12 +3,19 @@ package dev.firstdark.rpc.connection.unix;
 import org.newsclub.net.unix.AFUNIXSocket;
 import org.newsclub.net.unix.AFUNIXSocketAddress;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 public class JUnixBackend implements IUnixBackend {
 
-    private AFUNIXSocket socket;
+    // Volatile, because the socket can be closed by a thread that didn't open it
+    private volatile AFUNIXSocket socket;
+
+    // Gathers buffers, so a batch of frames is sent with a single flush
+    private OutputStream output;
 
     /**
      * Open a connection with the backend
@@ -22,6 +29,7 @@ public class JUnixBackend implements IUnixBackend {
         try {
             socket.connect(AFUNIXSocketAddress.of(new File(path)));
             this.socket = socket;
+            this.output = new BufferedOutputStream(socket.getOutputStream(), 16384);
         } catch (IOException e) {
             socket.close();
             throw e;
@@ -47,10 +55,58 @@ public class JUnixBackend implements IUnixBackend {
      */
     @Override
     public void write(byte[] bytes) throws IOException {
+        this.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Write data to the backend connection
+     *
+     * @param bytes The bytes to be written
+     * @param offset The offset of the first byte to write
+     * @param length The number of bytes to write
+     * @return The number of bytes written. Streams always write everything
+     * @throws IOException Thrown when an exception occurs
+     */
+    @Override
+    public int write(byte[] bytes, int offset, int length) throws IOException {
+        if (socket == null || !socket.isConnected())
+            throw new IOException("Socket is not connected");
+
+        socket.getOutputStream().write(bytes, offset, length);
+        return length;
+    }
+
+    /**
+     * Write several buffers to the backend connection, with a single flush
+     *
+     * @param buffers The buffers to be written
+     * @return The number of bytes written. Streams always write everything
+     * @throws IOException Thrown when an exception occurs
+     */
+    @Override
+    public long write(ByteBuffer[] buffers) throws IOException {
         if (socket == null || !socket.isConnected())
-            return;
+            throw new IOException("Socket is not connected");
+
+        long total = 0;
+
+        for (ByteBuffer buffer : buffers) {
+            int length = buffer.remaining();
+
+            if (buffer.hasArray()) {
+                this.output.write(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            } else {
+                byte[] copy = new byte[length];
+                buffer.duplicate().get(copy);
+                this.output.write(copy, 0, length);
+            }
 
-        socket.getOutputStream().write(bytes);
+            buffer.position(buffer.position() + length);
+            total += length;
+        }
+
+        this.output.flush();
+        return total;
     }
 
     /**
@@ -76,10 +132,24 @@ public class JUnixBackend implements IUnixBackend {
      */
     @Override
     public int read(byte[] bytes) throws IOException {
+        return this.read(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Read data from the backend
+     *
+     * @param bytes The byte buffer to read to
+     * @param offset The offset in the buffer to start writing at
+     * @param length The maximum number of bytes to read
+     * @return The total number of bytes read
+     * @throws IOException Thrown when an error occurs
+     */
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
         if (socket == null || !socket.isConnected())
             return -1;
 
-        return socket.getInputStream().read(bytes);
+        return socket.getInputStream().read(bytes, offset, length);
     }
 
     /**
@@ -0,0 +1,186 @@
+package dev.firstdark.rpc.connection.unix;
+
+import dev.firstdark.rpc.enums.OpCode;
+import dev.firstdark.rpc.models.MessageFrame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * @author HypherionSA
+ * In-memory {@link IUnixBackend} that never touches a real socket.
+ * The "Discord" side of the connection is driven through {@link #feed(byte[])} and {@link #drainOutbound()},
+ * which makes it useful for benchmarks, tests and replaying captured traffic
+ */
+public class LoopbackBackend implements IUnixBackend {
+
+    private final ArrayDeque<ByteBuffer> inbound = new ArrayDeque<>();
+    private final ByteArrayOutputStream outbound = new ByteArrayOutputStream();
+    private int available;
+    private boolean connected;
+    private int connections;
+
+    /**
+     * Open a connection with the backend. The path is ignored.
+     * Every connection starts with empty buffers, like a fresh socket
+     *
+     * @param path The Pipe (or socket) path to open
+     */
+    @Override
+    public synchronized void openPipe(String path) {
+        this.connected = true;
+        this.connections++;
+        this.inbound.clear();
+        this.outbound.reset();
+        this.available = 0;
+    }
+
+    /**
+     * Close the backend connection, discarding any unread data
+     */
+    @Override
+    public synchronized void closePipe() {
+        this.connected = false;
+        this.inbound.clear();
+        this.available = 0;
+    }
+
+    /**
+     * Write data to the backend connection. The data can be retrieved with {@link #drainOutbound()}
+     *
+     * @param bytes The bytes to be written
+     * @throws IOException Thrown when the backend is not connected
+     */
+    @Override
+    public void write(byte[] bytes) throws IOException {
+        this.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Write data to the backend connection. The data can be retrieved with {@link #drainOutbound()}
+     *
+     * @param bytes The bytes to be written
+     * @param offset The offset of the first byte to write
+     * @param length The number of bytes to write
+     * @return The number of bytes written. Always everything
+     * @throws IOException Thrown when the backend is not connected
+     */
+    @Override
+    public synchronized int write(byte[] bytes, int offset, int length) throws IOException {
+        if (!this.connected)
+            throw new IOException("Loopback is closed");
+
+        this.outbound.write(bytes, offset, length);
+        return length;
+    }
+
+    /**
+     * Get the amount of data available for reading from the backend
+     *
+     * @return The number of bytes fed, but not yet read
+     */
+    @Override
+    public synchronized int getAvailable() {
+        return this.connected ? this.available : -1;
+    }
+
+    /**
+     * Read data from the backend
+     *
+     * @param bytes The byte buffer to read to
+     * @return The total number of bytes read
+     */
+    @Override
+    public int read(byte[] bytes) {
+        return this.read(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Read data from the backend
+     *
+     * @param bytes The byte buffer to read to
+     * @param offset The offset in the buffer to start writing at
+     * @param length The maximum number of bytes to read
+     * @return The total number of bytes read
+     */
+    @Override
+    public synchronized int read(byte[] bytes, int offset, int length) {
+        if (!this.connected)
+            return -1;
+
+        int read = 0;
+
+        while (read < length && !this.inbound.isEmpty()) {
+            ByteBuffer head = this.inbound.peek();
+            int count = Math.min(head.remaining(), length - read);
+            head.get(bytes, offset + read, count);
+            read += count;
+
+            if (!head.hasRemaining())
+                this.inbound.poll();
+        }
+
+        this.available -= read;
+        return read;
+    }
+
+    /**
+     * Check if the backend implementation is connected or not
+     *
+     * @return True if connected
+     */
+    @Override
+    public synchronized boolean isConnected() {
+        return this.connected;
+    }
+
+    /**
+     * Queue raw bytes to be read by the SDK, as if Discord sent them
+     *
+     * @param bytes The bytes to make available for reading. The array is not copied
+     */
+    public synchronized void feed(byte[] bytes) {
+        if (bytes.length == 0)
+            return;
+
+        this.inbound.offer(ByteBuffer.wrap(bytes));
+        this.available += bytes.length;
+    }
+
+    /**
+     * Queue a complete IPC frame to be read by the SDK
+     *
+     * @param opCode The {@link OpCode} of the frame
+     * @param json The JSON payload of the frame
+     */
+    public void feedFrame(OpCode opCode, String json) {
+        this.feed(new MessageFrame(opCode, json).write().array());
+    }
+
+    /**
+     * Retrieve, and clear, everything the SDK has written so far
+     *
+     * @return The written bytes
+     */
+    public synchronized byte[] drainOutbound() {
+        byte[] bytes = this.outbound.toByteArray();
+        this.outbound.reset();
+        return bytes;
+    }
+
+    /**
+     * @return The number of times the SDK has opened this backend
+     */
+    public synchronized int getConnections() {
+        return this.connections;
+    }
+
+    /**
+     * Simulate Discord closing the socket
+     */
+    public synchronized void disconnect() {
+        this.closePipe();
+    }
+}
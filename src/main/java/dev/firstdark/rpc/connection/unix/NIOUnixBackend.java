@@ -5,13 +5,26 @@ import java.io.IOException;
 //$$ import java.net.UnixDomainSocketAddress;
 //#endif
 import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
 
 public class NIOUnixBackend implements IUnixBackend {
 
-    private SocketChannel channel;
+    // The channel is non-blocking, so reads return right away, and a full socket makes writes return early.
+    // Volatile, because the channel can be closed by a thread that didn't open it
+    private volatile SocketChannel channel;
+
+    // Registered once per connection, to check for data and wait for room to write without opening a selector every time
+    private volatile Selector selector;
+    private SelectionKey key;
+
+    // View of the last array read into. The SDK always reads into the same array, so this avoids wrapping it every time
+    private byte[] readArray;
+    private ByteBuffer readView;
 
     /**
      * Open a connection with the backend
@@ -22,7 +35,24 @@ public class NIOUnixBackend implements IUnixBackend {
     @Override
     public void openPipe(String path) throws IOException {
         //#if modernjava
-        //$$ this.channel = SocketChannel.open(UnixDomainSocketAddress.of(path));
+        //$$ SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(path));
+        //$$ Selector selector = null;
+        //$$
+        //$$ try {
+        //$$     channel.configureBlocking(false);
+        //$$     selector = Selector.open();
+        //$$     this.key = channel.register(selector, SelectionKey.OP_READ);
+        //$$ } catch (IOException e) {
+        //$$     channel.close();
+        //$$
+        //$$     if (selector != null)
+        //$$         selector.close();
+        //$$
+        //$$     throw e;
+        //$$ }
+        //$$
+        //$$ this.channel = channel;
+        //$$ this.selector = selector;
         //#else
         this.channel = null;
         //#endif
@@ -38,27 +68,71 @@ public class NIOUnixBackend implements IUnixBackend {
         if (this.channel == null)
             return;
 
-        this.channel.close();
+        try {
+            this.channel.close();
+        } finally {
+            Selector selector = this.selector;
+
+            if (selector != null)
+                selector.close();
+        }
     }
 
     /**
-     * Write data to the backend connection
+     * Write data to the backend connection, waiting for room in the socket until everything is written
      *
      * @param bytes The bytes to be written
      * @throws IOException Thrown when an exception occurs
      */
     @Override
     public void write(byte[] bytes) throws IOException {
+        int offset = 0;
+
+        while (offset < bytes.length) {
+            int written = this.write(bytes, offset, bytes.length - offset);
+            offset += written;
+
+            if (written == 0)
+                this.select(SelectionKey.OP_WRITE, TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * Write data to the backend connection
+     *
+     * @param bytes The bytes to be written
+     * @param offset The offset of the first byte to write
+     * @param length The number of bytes to write
+     * @return The number of bytes written, which may be less than requested
+     * @throws IOException Thrown when an exception occurs
+     */
+    @Override
+    public int write(byte[] bytes, int offset, int length) throws IOException {
         if (this.channel == null || !this.channel.isConnected())
-            return;
+            throw new IOException("Channel is not connected");
+
+        return this.channel.write(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    /**
+     * Write several buffers to the backend connection, with a single gathering write
+     *
+     * @param buffers The buffers to be written
+     * @return The number of bytes written, which may be less than requested
+     * @throws IOException Thrown when an exception occurs
+     */
+    @Override
+    public long write(ByteBuffer[] buffers) throws IOException {
+        if (this.channel == null || !this.channel.isConnected())
+            throw new IOException("Channel is not connected");
 
-        this.channel.write(ByteBuffer.wrap(bytes));
+        return this.channel.write(buffers);
     }
 
     /**
      * Get the amount of data available for reading from the backend
      *
-     * @return This will always return 0 when using NIO
+     * @return 1 if there is data to read, 0 if not. NIO can't tell how much data is available
      * @throws IOException Thrown when an error occurs
      */
     @Override
@@ -66,20 +140,12 @@ public class NIOUnixBackend implements IUnixBackend {
         if (this.channel == null || !this.channel.isConnected())
             return -1;
 
-        Selector selector = Selector.open();
         try {
-            channel.configureBlocking(false);
-            channel.register(selector, SelectionKey.OP_READ);
-            return selector.selectNow();
-        } finally {
-            selector.close();
-            try {
-                if (channel.isOpen()) {
-                    channel.configureBlocking(true);
-                }
-            } catch (IOException ignored) {
-                // Channel can be prematurely closed if an exception is thrown in the first try block
-            }
+            int ready = this.selector.selectNow();
+            this.selector.selectedKeys().clear();
+            return ready > 0 ? 1 : 0;
+        } catch (ClosedSelectorException e) {
+            return -1;
         }
     }
 
@@ -87,15 +153,100 @@ public class NIOUnixBackend implements IUnixBackend {
      * Read data from the backend
      *
      * @param bytes The byte buffer to read to
-     * @return The total number of bytes read
+     * @return The total number of bytes read, which may be less than requested
      * @throws IOException Thrown when an error occurs
      */
     @Override
     public int read(byte[] bytes) throws IOException {
+        return this.read(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Read data from the backend
+     *
+     * @param bytes The byte buffer to read to
+     * @param offset The offset in the buffer to start writing at
+     * @param length The maximum number of bytes to read
+     * @return The total number of bytes read, which may be less than requested
+     * @throws IOException Thrown when an error occurs
+     */
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
         if (this.channel == null || !this.channel.isConnected())
             return -1;
 
-        return this.channel.read(ByteBuffer.wrap(bytes));
+        return this.channel.read(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    /**
+     * Read whatever data is available from the backend, with a single non-blocking read
+     *
+     * @param bytes The byte buffer to read to
+     * @param offset The offset in the buffer to start writing at
+     * @param length The maximum number of bytes to read
+     * @return The total number of bytes read, 0 if no data was available, or -1 if the connection was closed
+     * @throws IOException Thrown when an error occurs
+     */
+    @Override
+    public int readAvailable(byte[] bytes, int offset, int length) throws IOException {
+        if (this.channel == null || !this.channel.isConnected())
+            return -1;
+
+        if (this.readArray != bytes) {
+            this.readArray = bytes;
+            this.readView = ByteBuffer.wrap(bytes);
+        }
+
+        this.readView.clear();
+        this.readView.limit(offset + length);
+        this.readView.position(offset);
+        return this.channel.read(this.readView);
+    }
+
+    /**
+     * Wait until the socket has room for more data, or has data to read, after a write that was cut short
+     *
+     * @param timeoutNanos The longest time to wait
+     * @return True, once the socket is ready or the timeout passed
+     * @throws IOException Thrown when the channel was closed while waiting
+     */
+    @Override
+    public boolean awaitWritable(long timeoutNanos) throws IOException {
+        if (this.channel == null || !this.channel.isConnected())
+            return false;
+
+        this.select(SelectionKey.OP_READ | SelectionKey.OP_WRITE, timeoutNanos);
+        return true;
+    }
+
+    /**
+     * Wake up a thread waiting in {@link #awaitWritable(long)}
+     */
+    @Override
+    public void wakeup() {
+        Selector selector = this.selector;
+
+        if (selector != null)
+            selector.wakeup();
+    }
+
+    /**
+     * Internal method
+     * Wait until the channel is ready for some operations, then go back to only watching for data to read
+     *
+     * @param ops The operations to wait for
+     * @param timeoutNanos The longest time to wait
+     * @throws IOException Thrown when the channel was closed while waiting
+     */
+    private void select(int ops, long timeoutNanos) throws IOException {
+        try {
+            this.key.interestOps(ops);
+            this.selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(timeoutNanos)));
+            this.selector.selectedKeys().clear();
+            this.key.interestOps(SelectionKey.OP_READ);
+        } catch (ClosedSelectorException | CancelledKeyException e) {
+            throw new IOException("Channel closed while waiting", e);
+        }
     }
 
     /**
@@ -0,0 +1,10 @@
+package dev.firstdark.rpc.enums;
+
+/**
+ * @author HypherionSA
+ * The direction of a captured IPC frame
+ */
+public enum CaptureDirection {
+    INBOUND,
+    OUTBOUND
+}
@@ -0,0 +1,21 @@
+package dev.firstdark.rpc.enums;
+
+/**
+ * @author HypherionSA
+ * The classes of outbound traffic, from most to least urgent. The IO thread writes every queued frame of a class before
+ * moving on to the next one
+ */
+public enum OutboundPriority {
+    /**
+     * Frames that keep the connection alive, like the handshake and PONG replies
+     */
+    CONTROL,
+    /**
+     * Commands something is waiting on, like join request responses, event subscriptions and raw commands
+     */
+    INTERACTIVE,
+    /**
+     * Presence updates. Only the latest one is kept, and it waits while the pipe is still busy with earlier data
+     */
+    PRESENCE
+}
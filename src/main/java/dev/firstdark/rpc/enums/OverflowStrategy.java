@@ -0,0 +1,20 @@
+package dev.firstdark.rpc.enums;
+
+/**
+ * @author HypherionSA
+ * What a bounded event buffer does with a new event, when the consumer is not keeping up and the buffer is full
+ */
+public enum OverflowStrategy {
+    /**
+     * Remove the oldest buffered event to make room for the new one
+     */
+    DROP_OLDEST,
+    /**
+     * Keep the buffered events, and drop the new one
+     */
+    DROP_NEWEST,
+    /**
+     * Only keep the most recent event. The capacity of the buffer is ignored
+     */
+    LATEST_ONLY
+}
@@ -0,0 +1,24 @@
+package dev.firstdark.rpc.enums;
+
+/**
+ * @author HypherionSA
+ * What happened to a presence update, once it stopped being tracked
+ */
+public enum PresenceOutcome {
+    /**
+     * Discord accepted the update
+     */
+    ACKNOWLEDGED,
+    /**
+     * Discord rejected the update with an ERROR response
+     */
+    ERRORED,
+    /**
+     * A newer update replaced this one before it was written
+     */
+    COALESCED,
+    /**
+     * The update was lost, because the connection closed or the SDK shut down before it was acknowledged
+     */
+    DROPPED
+}
@@ -0,0 +1,36 @@
+package dev.firstdark.rpc.enums;
+
+/**
+ * @author HypherionSA
+ * The kind of an {@link dev.firstdark.rpc.models.RpcEvent}. All but {@link #EVENT} match a method of {@link dev.firstdark.rpc.handlers.DiscordEventHandler}
+ */
+public enum RpcEventType {
+    /**
+     * The connection is ready. The data is the connected {@link dev.firstdark.rpc.models.User}
+     */
+    READY,
+    /**
+     * The connection was closed
+     */
+    DISCONNECTED,
+    /**
+     * Discord responded to a command with an error
+     */
+    ERRORED,
+    /**
+     * The user joined a game through Discord. The data is the join secret
+     */
+    JOIN_GAME,
+    /**
+     * The user started spectating a game through Discord. The data is the spectate secret
+     */
+    SPECTATE_GAME,
+    /**
+     * Someone asked to join the game. The data is the {@link dev.firstdark.rpc.models.DiscordJoinRequest}
+     */
+    JOIN_REQUEST,
+    /**
+     * An event subscribed to with {@link dev.firstdark.rpc.DiscordRpc#subscribe(String, Class, java.util.function.Consumer)}
+     */
+    EVENT
+}
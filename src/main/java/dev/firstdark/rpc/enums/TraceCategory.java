@@ -0,0 +1,20 @@
+package dev.firstdark.rpc.enums;
+
+/**
+ * @author HypherionSA
+ * The areas of the SDK that can be traced independently
+ */
+public enum TraceCategory {
+    /**
+     * Pipe discovery, raw frame reads and writes
+     */
+    TRANSPORT,
+    /**
+     * Handshakes, decoded messages and connection state
+     */
+    PROTOCOL,
+    /**
+     * Discord events, and the callbacks they trigger
+     */
+    EVENTS
+}
@@ -0,0 +1,20 @@
+package dev.firstdark.rpc.enums;
+
+/**
+ * @author HypherionSA
+ * How much detail to trace for a {@link TraceCategory}
+ */
+public enum TraceLevel {
+    /**
+     * Nothing is traced
+     */
+    OFF,
+    /**
+     * Infrequent events, like connects, disconnects and failures
+     */
+    DEBUG,
+    /**
+     * Everything, including every frame and event. Subject to sampling
+     */
+    TRACE
+}
@@ -0,0 +1,11 @@
+package dev.firstdark.rpc.exceptions;
+
+public class JsonCodecException extends RuntimeException {
+    public JsonCodecException(String message) {
+        super(message);
+    }
+
+    public JsonCodecException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
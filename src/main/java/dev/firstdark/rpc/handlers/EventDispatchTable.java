@@ -0,0 +1,181 @@
+package dev.firstdark.rpc.handlers;
+
+import dev.firstdark.rpc.json.JsonCodec;
+import dev.firstdark.rpc.models.InboundMessage;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * @author HypherionSA
+ * Immutable lookup table from event names to their {@link EventSubscription}s.
+ * The routes are built when the subscriptions change, so dispatching an event is a single map lookup,
+ * and the data of an event is decoded once for every type that is subscribed to it.
+ * Events without a route are dropped without decoding their data.
+ * <p>
+ * Changes return a new table, so the IO thread can read the table without locking
+ */
+@ApiStatus.Internal
+public final class EventDispatchTable {
+
+    public static final EventDispatchTable EMPTY = new EventDispatchTable(Collections.emptyList());
+
+    private final List<EventSubscription<?>> subscriptions;
+    private final Map<String, Route> routes;
+
+    private EventDispatchTable(List<EventSubscription<?>> subscriptions) {
+        this.subscriptions = subscriptions;
+
+        Map<String, List<EventSubscription<?>>> byEvent = new LinkedHashMap<>();
+
+        for (EventSubscription<?> subscription : subscriptions)
+            byEvent.computeIfAbsent(subscription.getEventName(), name -> new ArrayList<>()).add(subscription);
+
+        Map<String, Route> routes = new LinkedHashMap<>();
+        byEvent.forEach((name, handlers) -> routes.put(name, new Route(name, handlers)));
+        this.routes = routes;
+    }
+
+    /**
+     * @param subscription The subscription to add
+     * @return A new table, with the subscription added
+     */
+    public EventDispatchTable with(@NotNull EventSubscription<?> subscription) {
+        List<EventSubscription<?>> copy = new ArrayList<>(this.subscriptions);
+        copy.add(subscription);
+        return new EventDispatchTable(copy);
+    }
+
+    /**
+     * @param subscription The subscription to remove
+     * @return A new table without the subscription, or this table if it didn't contain it
+     */
+    public EventDispatchTable without(@NotNull EventSubscription<?> subscription) {
+        if (!this.subscriptions.contains(subscription))
+            return this;
+
+        List<EventSubscription<?>> copy = new ArrayList<>(this.subscriptions);
+        copy.remove(subscription);
+        return new EventDispatchTable(copy);
+    }
+
+    /**
+     * @param eventName The event to remove all subscriptions of
+     * @param includeInternal True to also remove the subscriptions the SDK itself uses
+     * @return A new table without the subscriptions
+     */
+    public EventDispatchTable withoutEvent(@NotNull String eventName, boolean includeInternal) {
+        List<EventSubscription<?>> copy = new ArrayList<>(this.subscriptions);
+        copy.removeIf(subscription -> subscription.getEventName().equals(eventName) && (includeInternal || !subscription.isDirect()));
+        return copy.size() == this.subscriptions.size() ? this : new EventDispatchTable(copy);
+    }
+
+    /**
+     * @param eventName The name of the event
+     * @return True if anything is subscribed to the event
+     */
+    public boolean hasEvent(@NotNull String eventName) {
+        return this.routes.containsKey(eventName);
+    }
+
+    /**
+     * @return The names of all the events that are subscribed to
+     */
+    public Set<String> getEvents() {
+        return Collections.unmodifiableSet(this.routes.keySet());
+    }
+
+    /**
+     * @param eventName The name of the event
+     * @return The route for the event, or null if nothing is subscribed to it
+     */
+    @Nullable
+    public Route get(@Nullable String eventName) {
+        return eventName == null ? null : this.routes.get(eventName);
+    }
+
+    /**
+     * All the subscriptions of one event, grouped by the type they decode the data into
+     */
+    public static final class Route {
+
+        private final String eventName;
+        private final Class<?>[] types;
+        private final EventSubscription<?>[][] handlers;
+        private final int firstSubscriberType;
+
+        private Route(String eventName, List<EventSubscription<?>> subscriptions) {
+            Map<Class<?>, List<EventSubscription<?>>> byType = new LinkedHashMap<>();
+
+            for (EventSubscription<?> subscription : subscriptions)
+                byType.computeIfAbsent(subscription.getType(), type -> new ArrayList<>()).add(subscription);
+
+            this.eventName = eventName;
+            this.types = byType.keySet().toArray(new Class<?>[0]);
+            this.handlers = new EventSubscription<?>[this.types.length][];
+
+            for (int i = 0; i < this.types.length; i++)
+                this.handlers[i] = byType.get(this.types[i]).toArray(new EventSubscription<?>[0]);
+
+            int first = -1;
+
+            for (int i = 0; i < this.types.length && first < 0; i++) {
+                for (EventSubscription<?> subscription : this.handlers[i]) {
+                    if (!subscription.isDirect()) {
+                        first = i;
+                        break;
+                    }
+                }
+            }
+
+            this.firstSubscriberType = first;
+        }
+
+        /**
+         * @return The name of the event
+         */
+        public String getEventName() {
+            return this.eventName;
+        }
+
+        /**
+         * @return True if the event has subscriptions other than the ones the SDK itself uses
+         */
+        public boolean hasSubscribers() {
+            return this.firstSubscriberType >= 0;
+        }
+
+        /**
+         * Decode the event data, and hand it to the subscriptions. Internal handlers run straight away,
+         * the others are passed to {@code deferred}, because the message is only valid until the next read
+         *
+         * @param message The event
+         * @param codec The codec to decode the data with
+         * @param deferred Receives the handlers that have to run later
+         * @return The data as decoded for the first subscription that isn't internal, or null if there is none
+         */
+        @Nullable
+        public Object dispatch(@NotNull InboundMessage message, @NotNull JsonCodec codec, @NotNull Consumer<Runnable> deferred) {
+            Object subscriberData = null;
+
+            for (int i = 0; i < this.types.length; i++) {
+                Object data = message.readData(codec, this.types[i]);
+
+                if (i == this.firstSubscriberType)
+                    subscriberData = data;
+
+                for (EventSubscription<?> subscription : this.handlers[i]) {
+                    if (subscription.isDirect())
+                        subscription.deliver(data);
+                    else
+                        deferred.accept(() -> subscription.deliver(data));
+                }
+            }
+
+            return subscriberData;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package dev.firstdark.rpc.handlers;
+
+import lombok.Getter;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.Consumer;
+
+/**
+ * @author HypherionSA
+ * A handler for an RPC event, returned by {@link dev.firstdark.rpc.DiscordRpc#subscribe(String, Class, Consumer)}.
+ * Pass it to {@link dev.firstdark.rpc.DiscordRpc#unsubscribe(EventSubscription)} to remove the handler again
+ *
+ * @param <T> The type the event data is decoded into
+ */
+public final class EventSubscription<T> {
+
+    /**
+     * The name of the event, for example {@code ACTIVITY_JOIN}
+     */
+    @Getter
+    private final String eventName;
+
+    /**
+     * The type the event data is decoded into
+     */
+    @Getter
+    private final Class<T> type;
+
+    private final Consumer<? super T> handler;
+    private final boolean direct;
+
+    /**
+     * Internal constructor
+     *
+     * @param eventName The name of the event
+     * @param type The type the event data is decoded into
+     * @param handler The handler for the decoded data
+     * @param direct True to run the handler on the IO thread as soon as the event is read,
+     *               instead of from {@link dev.firstdark.rpc.DiscordRpc#runCallbacks()}
+     */
+    @ApiStatus.Internal
+    public EventSubscription(@NotNull String eventName, @NotNull Class<T> type, @NotNull Consumer<? super T> handler, boolean direct) {
+        this.eventName = eventName;
+        this.type = type;
+        this.handler = handler;
+        this.direct = direct;
+    }
+
+    boolean isDirect() {
+        return this.direct;
+    }
+
+    void deliver(Object data) {
+        this.handler.accept(this.type.cast(data));
+    }
+}
@@ -0,0 +1,255 @@
+package dev.firstdark.rpc.handlers;
+
+import dev.firstdark.rpc.enums.OverflowStrategy;
+import dev.firstdark.rpc.metrics.Counter;
+import dev.firstdark.rpc.models.RpcEvent;
+import dev.firstdark.rpc.utils.EventBuffer;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+//#if modernjava
+//$$ import java.util.Objects;
+//$$ import java.util.concurrent.Flow;
+//#endif
+
+/**
+ * @author HypherionSA
+ * Publishes the inbound events of a {@link dev.firstdark.rpc.DiscordRpc} instance as {@link RpcEvent}s.
+ * In the modern (Java 16+) build, this is a {@link java.util.concurrent.Flow.Publisher}, so it can be plugged into any
+ * Reactive Streams pipeline.
+ * <p>
+ * Every subscriber gets its own bounded buffer, and is only sent as many events as it requested.
+ * When a subscriber doesn't keep up, its {@link OverflowStrategy} decides which events are dropped.
+ * Events are delivered on the thread that publishes them (the IO thread), or on the thread that calls {@code request},
+ * without an extra thread in between, so {@code onNext} should hand off any slow work
+ */
+//#if modernjava
+//$$ public final class RpcEventPublisher implements Flow.Publisher<RpcEvent> {
+//#else
+public final class RpcEventPublisher {
+//#endif
+
+    /**
+     * The number of events buffered for a subscriber, unless another capacity is given
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final List<Sink> sinks = new CopyOnWriteArrayList<>();
+    private final Supplier<Logger> logger;
+    private final Counter droppedEvents;
+    private final Runnable firstSubscriber;
+
+    /**
+     * Internal constructor
+     *
+     * @param logger The logger for subscribers that throw
+     * @param droppedEvents Counts the events dropped because a subscriber's buffer was full
+     * @param firstSubscriber Called when the first subscriber subscribes
+     */
+    @ApiStatus.Internal
+    public RpcEventPublisher(@NotNull Supplier<Logger> logger, @NotNull Counter droppedEvents, @NotNull Runnable firstSubscriber) {
+        this.logger = logger;
+        this.droppedEvents = droppedEvents;
+        this.firstSubscriber = firstSubscriber;
+    }
+
+    //#if modernjava
+    //$$ /**
+    //$$  * Subscribe with a buffer of {@link #DEFAULT_CAPACITY} events, dropping the oldest events when it is full
+    //$$  *
+    //$$  * @param subscriber The subscriber
+    //$$  */
+    //$$ @Override
+    //$$ public void subscribe(Flow.Subscriber<? super RpcEvent> subscriber) {
+    //$$     this.subscribe(subscriber, DEFAULT_CAPACITY, OverflowStrategy.DROP_OLDEST);
+    //$$ }
+    //$$
+    //$$ /**
+    //$$  * Subscribe with a specific buffer
+    //$$  *
+    //$$  * @param subscriber The subscriber
+    //$$  * @param capacity The number of events to buffer, until the subscriber requests them
+    //$$  * @param strategy What to do with new events when the buffer is full
+    //$$  */
+    //$$ public void subscribe(Flow.Subscriber<? super RpcEvent> subscriber, int capacity, @NotNull OverflowStrategy strategy) {
+    //$$     Objects.requireNonNull(subscriber, "subscriber");
+    //$$
+    //$$     Sink sink = new Sink(new EventBuffer<>(capacity, strategy), subscriber::onNext, subscriber::onComplete, subscriber::onError);
+    //$$     subscriber.onSubscribe(sink);
+    //$$     this.add(sink);
+    //$$ }
+    //#endif
+
+    /**
+     * @return True if anything is subscribed. Used to skip creating events nobody receives
+     */
+    public boolean hasSubscribers() {
+        return !this.sinks.isEmpty();
+    }
+
+    /**
+     * Internal method
+     * Buffer an event for every subscriber, and deliver it to the ones that requested more events
+     *
+     * @param event The event to publish
+     */
+    @ApiStatus.Internal
+    public void publish(@NotNull RpcEvent event) {
+        for (Sink sink : this.sinks)
+            sink.offer(event);
+    }
+
+    /**
+     * Internal method
+     * Complete every subscription, once the SDK shuts down. Buffered events are still delivered first
+     */
+    @ApiStatus.Internal
+    public void complete() {
+        for (Sink sink : this.sinks)
+            sink.complete();
+    }
+
+    private void add(Sink sink) {
+        // The subscriber may have cancelled from onSubscribe
+        if (sink.cancelled)
+            return;
+
+        boolean first;
+
+        synchronized (this.sinks) {
+            first = this.sinks.isEmpty();
+            this.sinks.add(sink);
+        }
+
+        if (first)
+            this.firstSubscriber.run();
+    }
+
+    /**
+     * The subscription of a single subscriber. The drain loop makes sure only one thread calls the subscriber at a time
+     */
+    //#if modernjava
+    //$$ private final class Sink implements Flow.Subscription {
+    //#else
+    private final class Sink {
+    //#endif
+
+        private final EventBuffer<RpcEvent> buffer;
+        private final Consumer<RpcEvent> onNext;
+        private final Runnable onComplete;
+        private final Consumer<Throwable> onError;
+
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile boolean done;
+        private volatile Throwable error;
+
+        Sink(EventBuffer<RpcEvent> buffer, Consumer<RpcEvent> onNext, Runnable onComplete, Consumer<Throwable> onError) {
+            this.buffer = buffer;
+            this.onNext = onNext;
+            this.onComplete = onComplete;
+            this.onError = onError;
+        }
+
+        public void request(long n) {
+            if (n <= 0) {
+                this.error = new IllegalArgumentException("Subscribers must request a positive number of events, got " + n);
+            } else {
+                long current;
+                do {
+                    current = this.requested.get();
+                } while (current != Long.MAX_VALUE && !this.requested.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+            }
+
+            this.drain();
+        }
+
+        public void cancel() {
+            this.cancelled = true;
+            RpcEventPublisher.this.sinks.remove(this);
+            this.buffer.clear();
+        }
+
+        void offer(RpcEvent event) {
+            if (!this.buffer.offer(event))
+                RpcEventPublisher.this.droppedEvents.increment();
+
+            this.drain();
+        }
+
+        void complete() {
+            this.done = true;
+            this.drain();
+        }
+
+        private void drain() {
+            if (this.wip.getAndIncrement() != 0)
+                return;
+
+            int missed = 1;
+
+            do {
+                long requested = this.requested.get();
+                long emitted = 0;
+
+                while (!this.cancelled) {
+                    if (this.error != null) {
+                        this.terminate(() -> this.onError.accept(this.error));
+                        return;
+                    }
+
+                    if (this.done && this.buffer.isEmpty()) {
+                        this.terminate(this.onComplete);
+                        return;
+                    }
+
+                    if (emitted == requested)
+                        break;
+
+                    RpcEvent event = this.buffer.poll();
+
+                    if (event == null)
+                        break;
+
+                    try {
+                        this.onNext.accept(event);
+                    } catch (RuntimeException e) {
+                        // Subscribers must not throw. The subscription is cancelled, so it can't break the IO thread again
+                        RpcEventPublisher.this.logger.get().error("Event subscriber threw an exception, cancelling its subscription", e);
+                        this.cancel();
+                        return;
+                    }
+
+                    emitted++;
+                }
+
+                if (this.cancelled)
+                    return;
+
+                if (emitted != 0 && requested != Long.MAX_VALUE)
+                    this.requested.addAndGet(-emitted);
+
+                missed = this.wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void terminate(Runnable signal) {
+            this.cancel();
+
+            try {
+                signal.run();
+            } catch (RuntimeException e) {
+                RpcEventPublisher.this.logger.get().error("Event subscriber threw an exception", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package dev.firstdark.rpc.jfr;
+
+//#if modernjava
+//$$ import jdk.jfr.*;
+//$$
+//$$ /**
+//$$  * @author HypherionSA
+//$$  * A single DiscordEventHandler callback invocation
+//$$  */
+//$$ @Name("dev.firstdark.rpc.Callback")
+//$$ @Label("Callback")
+//$$ @Category({"Discord RPC", "Callbacks"})
+//$$ @StackTrace(false)
+//$$ class CallbackEvent extends Event {
+//$$     @Label("Callback")
+//$$     String callback;
+//$$ }
+//#endif
@@ -0,0 +1,23 @@
+package dev.firstdark.rpc.jfr;
+
+//#if modernjava
+//$$ import jdk.jfr.*;
+//$$
+//$$ /**
+//$$  * @author HypherionSA
+//$$  * A single IPC frame read from Discord
+//$$  */
+//$$ @Name("dev.firstdark.rpc.FrameRead")
+//$$ @Label("Frame Read")
+//$$ @Category({"Discord RPC", "IPC"})
+//$$ @StackTrace(false)
+//$$ class FrameReadEvent extends Event {
+//$$     @Label("OpCode")
+//$$     String opCode;
+//$$
+//$$     @Label("Size")
+//$$     @Description("Frame size, including the header")
+//$$     @DataAmount
+//$$     int size;
+//$$ }
+//#endif
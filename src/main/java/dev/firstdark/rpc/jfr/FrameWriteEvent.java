@@ -0,0 +1,26 @@
+package dev.firstdark.rpc.jfr;
+
+//#if modernjava
+//$$ import jdk.jfr.*;
+//$$
+//$$ /**
+//$$  * @author HypherionSA
+//$$  * A single IPC frame written to Discord
+//$$  */
+//$$ @Name("dev.firstdark.rpc.FrameWrite")
+//$$ @Label("Frame Write")
+//$$ @Category({"Discord RPC", "IPC"})
+//$$ @StackTrace(false)
+//$$ class FrameWriteEvent extends Event {
+//$$     @Label("OpCode")
+//$$     String opCode;
+//$$
+//$$     @Label("Size")
+//$$     @Description("Frame size, including the header")
+//$$     @DataAmount
+//$$     int size;
+//$$
+//$$     @Label("Success")
+//$$     boolean success;
+//$$ }
+//#endif
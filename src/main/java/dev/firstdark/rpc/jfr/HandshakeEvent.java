@@ -0,0 +1,21 @@
+package dev.firstdark.rpc.jfr;
+
+//#if modernjava
+//$$ import jdk.jfr.*;
+//$$
+//$$ /**
+//$$  * @author HypherionSA
+//$$  * From sending the HANDSHAKE frame, until Discord answers with READY, or the connection fails
+//$$  */
+//$$ @Name("dev.firstdark.rpc.Handshake")
+//$$ @Label("Handshake")
+//$$ @Category({"Discord RPC", "IPC"})
+//$$ @StackTrace(false)
+//$$ class HandshakeEvent extends Event {
+//$$     @Label("Application ID")
+//$$     String applicationId;
+//$$
+//$$     @Label("Success")
+//$$     boolean success;
+//$$ }
+//#endif
@@ -0,0 +1,161 @@
+package dev.firstdark.rpc.jfr;
+
+import dev.firstdark.rpc.enums.OpCode;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+//#if modernjava
+//$$ import jdk.jfr.Event;
+//#endif
+
+/**
+ * @author HypherionSA
+ * Java Flight Recorder events for the SDK. The events only exist in the modern (Java 16+) build, and every method here is a no-op in the legacy build.
+ * <p>
+ * Every {@code begin} method returns an opaque token, which is null when the event is disabled.
+ * Pass it back to the matching {@code end} method, once the operation is done.
+ * With no recording active, the only cost is the event's enabled check
+ */
+@ApiStatus.Internal
+public final class JfrEvents {
+
+    private JfrEvents() {}
+
+    @Nullable
+    public static Object beginPipeDiscovery() {
+        //#if modernjava
+        //$$ return begin(new PipeDiscoveryEvent());
+        //#else
+        return null;
+        //#endif
+    }
+
+    public static void endPipeDiscovery(@Nullable Object token, String pattern, @Nullable String pipe, int attempts) {
+        //#if modernjava
+        //$$ if (token == null)
+        //$$     return;
+        //$$
+        //$$ PipeDiscoveryEvent event = (PipeDiscoveryEvent) token;
+        //$$ event.pattern = pattern;
+        //$$ event.pipe = pipe;
+        //$$ event.attempts = attempts;
+        //$$ event.success = pipe != null;
+        //$$ event.commit();
+        //#endif
+    }
+
+    @Nullable
+    public static Object beginHandshake() {
+        //#if modernjava
+        //$$ return begin(new HandshakeEvent());
+        //#else
+        return null;
+        //#endif
+    }
+
+    public static void endHandshake(@Nullable Object token, String applicationId, boolean success) {
+        //#if modernjava
+        //$$ if (token == null)
+        //$$     return;
+        //$$
+        //$$ HandshakeEvent event = (HandshakeEvent) token;
+        //$$ event.applicationId = applicationId;
+        //$$ event.success = success;
+        //$$ event.commit();
+        //#endif
+    }
+
+    @Nullable
+    public static Object beginFrameRead() {
+        //#if modernjava
+        //$$ return begin(new FrameReadEvent());
+        //#else
+        return null;
+        //#endif
+    }
+
+    public static void endFrameRead(@Nullable Object token, OpCode opCode, int size) {
+        //#if modernjava
+        //$$ if (token == null)
+        //$$     return;
+        //$$
+        //$$ FrameReadEvent event = (FrameReadEvent) token;
+        //$$ event.opCode = opCode.name();
+        //$$ event.size = size;
+        //$$ event.commit();
+        //#endif
+    }
+
+    @Nullable
+    public static Object beginFrameWrite() {
+        //#if modernjava
+        //$$ return begin(new FrameWriteEvent());
+        //#else
+        return null;
+        //#endif
+    }
+
+    public static void endFrameWrite(@Nullable Object token, OpCode opCode, int size, boolean success) {
+        //#if modernjava
+        //$$ if (token == null)
+        //$$     return;
+        //$$
+        //$$ FrameWriteEvent event = (FrameWriteEvent) token;
+        //$$ event.opCode = opCode.name();
+        //$$ event.size = size;
+        //$$ event.success = success;
+        //$$ event.commit();
+        //#endif
+    }
+
+    @Nullable
+    public static Object beginQueueDrain() {
+        //#if modernjava
+        //$$ return begin(new QueueDrainEvent());
+        //#else
+        return null;
+        //#endif
+    }
+
+    public static void endQueueDrain(@Nullable Object token, String queue, int messages) {
+        //#if modernjava
+        //$$ if (token == null)
+        //$$     return;
+        //$$
+        //$$ QueueDrainEvent event = (QueueDrainEvent) token;
+        //$$ event.queue = queue;
+        //$$ event.messages = messages;
+        //$$ event.commit();
+        //#endif
+    }
+
+    @Nullable
+    public static Object beginCallback() {
+        //#if modernjava
+        //$$ return begin(new CallbackEvent());
+        //#else
+        return null;
+        //#endif
+    }
+
+    public static void endCallback(@Nullable Object token, String callback) {
+        //#if modernjava
+        //$$ if (token == null)
+        //$$     return;
+        //$$
+        //$$ CallbackEvent event = (CallbackEvent) token;
+        //$$ event.callback = callback;
+        //$$ event.commit();
+        //#endif
+    }
+
+    //#if modernjava
+    //$$ private static Event begin(Event event) {
+    //$$     if (!event.isEnabled())
+    //$$         return null;
+    //$$
+    //$$     event.begin();
+    //$$     return event;
+    //$$ }
+    //#endif
+}
@@ -0,0 +1,30 @@
+package dev.firstdark.rpc.jfr;
+
+//#if modernjava
+//$$ import jdk.jfr.*;
+//$$
+//$$ /**
+//$$  * @author HypherionSA
+//$$  * Searching for, and opening, a Discord IPC pipe
+//$$  */
+//$$ @Name("dev.firstdark.rpc.PipeDiscovery")
+//$$ @Label("Pipe Discovery")
+//$$ @Category({"Discord RPC", "IPC"})
+//$$ @StackTrace(false)
+//$$ class PipeDiscoveryEvent extends Event {
+//$$     @Label("Pattern")
+//$$     @Description("The pipe path pattern that was searched")
+//$$     String pattern;
+//$$
+//$$     @Label("Pipe")
+//$$     @Description("The pipe that was opened, if any")
+//$$     String pipe;
+//$$
+//$$     @Label("Attempts")
+//$$     @Description("How many pipes were tried")
+//$$     int attempts;
+//$$
+//$$     @Label("Success")
+//$$     boolean success;
+//$$ }
+//#endif
@@ -0,0 +1,22 @@
+package dev.firstdark.rpc.jfr;
+
+//#if modernjava
+//$$ import jdk.jfr.*;
+//$$
+//$$ /**
+//$$  * @author HypherionSA
+//$$  * Writing out the queued outbound messages on the IO thread
+//$$  */
+//$$ @Name("dev.firstdark.rpc.QueueDrain")
+//$$ @Label("Queue Drain")
+//$$ @Category({"Discord RPC", "IPC"})
+//$$ @StackTrace(false)
+//$$ class QueueDrainEvent extends Event {
+//$$     @Label("Queue")
+//$$     String queue;
+//$$
+//$$     @Label("Messages")
+//$$     @Description("Number of messages written")
+//$$     int messages;
+//$$ }
+//#endif
@@ -0,0 +1,276 @@
+package dev.firstdark.rpc.json;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import dev.firstdark.rpc.models.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+/**
+ * @author HypherionSA
+ * Hand-written Gson {@link TypeAdapter}s for the SDK models. They read and write the fields directly, so Gson doesn't
+ * need reflection for them, and they keep working when the models are obfuscated
+ */
+public final class GsonAdapters {
+
+    private static final TypeAdapter<SecretEvent> SECRET_EVENT = new TypeAdapter<SecretEvent>() {
+        @Override
+        public void write(JsonWriter out, SecretEvent value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject().name("secret").value(value.getSecret()).endObject();
+        }
+
+        @Override
+        public SecretEvent read(JsonReader in) throws IOException {
+            if (skipNull(in))
+                return null;
+
+            String secret = null;
+            in.beginObject();
+
+            while (in.hasNext()) {
+                if ("secret".equals(in.nextName()))
+                    secret = nextString(in);
+                else
+                    in.skipValue();
+            }
+
+            in.endObject();
+            return new SecretEvent(secret);
+        }
+    };
+
+    private static final TypeAdapter<ErrorEvent> ERROR_EVENT = new TypeAdapter<ErrorEvent>() {
+        @Override
+        public void write(JsonWriter out, ErrorEvent value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject().name("code").value(value.getCode()).name("message").value(value.getMessage()).endObject();
+        }
+
+        @Override
+        public ErrorEvent read(JsonReader in) throws IOException {
+            if (skipNull(in))
+                return null;
+
+            int code = 0;
+            String message = null;
+            in.beginObject();
+
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "code":
+                        code = skipNull(in) ? 0 : in.nextInt();
+                        break;
+                    case "message":
+                        message = nextString(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+
+            in.endObject();
+            return new ErrorEvent(code, message);
+        }
+    };
+
+    private GsonAdapters() {}
+
+    /**
+     * Register the adapters for every SDK model
+     *
+     * @param builder The builder to register the adapters on
+     * @param users Optional cache for decoded users
+     * @return The builder
+     */
+    public static GsonBuilder registerAll(@NotNull GsonBuilder builder, @Nullable UserCache users) {
+        TypeAdapter<User> user = user(users);
+
+        return builder
+                .registerTypeAdapter(User.class, user)
+                .registerTypeAdapter(DiscordJoinRequest.class, joinRequest(user))
+                .registerTypeAdapter(ReadyEvent.class, ready(user))
+                .registerTypeAdapter(SecretEvent.class, SECRET_EVENT)
+                .registerTypeAdapter(ErrorEvent.class, ERROR_EVENT);
+    }
+
+    /**
+     * @param users Optional cache for decoded users
+     * @return An adapter for {@link User}
+     */
+    public static TypeAdapter<User> user(@Nullable UserCache users) {
+        return new TypeAdapter<User>() {
+            @Override
+            @SuppressWarnings("deprecation")
+            public void write(JsonWriter out, User value) throws IOException {
+                if (value == null) {
+                    out.nullValue();
+                    return;
+                }
+
+                out.beginObject()
+                        .name("id").value(value.getUserId())
+                        .name("username").value(value.getUsername())
+                        .name("discriminator").value(value.getDiscriminator())
+                        .name("global_name").value(value.getGlobalName())
+                        .name("avatar").value(value.getAvatar())
+                        .endObject();
+            }
+
+            @Override
+            public User read(JsonReader in) throws IOException {
+                if (skipNull(in))
+                    return null;
+
+                String id = null;
+                String username = null;
+                String discriminator = null;
+                String globalName = null;
+                String avatar = null;
+                in.beginObject();
+
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "id":
+                            id = nextString(in);
+                            break;
+                        case "username":
+                            username = nextString(in);
+                            break;
+                        case "discriminator":
+                            discriminator = nextString(in);
+                            break;
+                        case "global_name":
+                            globalName = nextString(in);
+                            break;
+                        case "avatar":
+                            avatar = nextString(in);
+                            break;
+                        default:
+                            in.skipValue();
+                    }
+                }
+
+                in.endObject();
+                User user = new User(id, username, discriminator, globalName, avatar);
+                return users == null ? user : users.intern(user);
+            }
+        };
+    }
+
+    /**
+     * @param user The adapter to use for the user
+     * @return An adapter for {@link DiscordJoinRequest}
+     */
+    public static TypeAdapter<DiscordJoinRequest> joinRequest(@NotNull TypeAdapter<User> user) {
+        return new TypeAdapter<DiscordJoinRequest>() {
+            @Override
+            public void write(JsonWriter out, DiscordJoinRequest value) throws IOException {
+                if (value == null) {
+                    out.nullValue();
+                    return;
+                }
+
+                out.beginObject().name("user");
+                user.write(out, value.getUser());
+                out.endObject();
+            }
+
+            @Override
+            public DiscordJoinRequest read(JsonReader in) throws IOException {
+                if (skipNull(in))
+                    return null;
+
+                User value = null;
+                in.beginObject();
+
+                while (in.hasNext()) {
+                    if ("user".equals(in.nextName()))
+                        value = user.read(in);
+                    else
+                        in.skipValue();
+                }
+
+                in.endObject();
+                return new DiscordJoinRequest(value);
+            }
+        };
+    }
+
+    /**
+     * @param user The adapter to use for the user
+     * @return An adapter for {@link ReadyEvent}
+     */
+    public static TypeAdapter<ReadyEvent> ready(@NotNull TypeAdapter<User> user) {
+        return new TypeAdapter<ReadyEvent>() {
+            @Override
+            public void write(JsonWriter out, ReadyEvent value) throws IOException {
+                if (value == null) {
+                    out.nullValue();
+                    return;
+                }
+
+                out.beginObject().name("v").value(value.getVersion()).name("user");
+                user.write(out, value.getUser());
+                out.endObject();
+            }
+
+            @Override
+            public ReadyEvent read(JsonReader in) throws IOException {
+                if (skipNull(in))
+                    return null;
+
+                int version = 0;
+                User value = null;
+                in.beginObject();
+
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "v":
+                            version = skipNull(in) ? 0 : in.nextInt();
+                            break;
+                        case "user":
+                            value = user.read(in);
+                            break;
+                        default:
+                            in.skipValue();
+                    }
+                }
+
+                in.endObject();
+                return new ReadyEvent(version, value);
+            }
+        };
+    }
+
+    /**
+     * Consume a null value
+     *
+     * @return True if the next value was null
+     */
+    private static boolean skipNull(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.NULL)
+            return false;
+
+        in.nextNull();
+        return true;
+    }
+
+    @Nullable
+    private static String nextString(JsonReader in) throws IOException {
+        return skipNull(in) ? null : in.nextString();
+    }
+}
@@ -0,0 +1,92 @@
+package dev.firstdark.rpc.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import dev.firstdark.rpc.exceptions.JsonCodecException;
+import dev.firstdark.rpc.models.DiscordRichPresence;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * @author HypherionSA
+ * {@link JsonCodec} backed by Gson. Builds JSON trees for everything it writes, and reads the SDK models
+ * with the {@link GsonAdapters}, so no reflection is needed. Other types are read with Gson's own adapters,
+ * so any class can be used with {@link dev.firstdark.rpc.DiscordRpc#subscribe(String, Class, java.util.function.Consumer)}
+ */
+public class GsonJsonCodec implements JsonCodec {
+
+    private final Gson gson;
+
+    public GsonJsonCodec() {
+        this(GsonAdapters.registerAll(new GsonBuilder().serializeNulls(), new UserCache(UserCache.DEFAULT_CAPACITY)).create());
+    }
+
+    /**
+     * @param gson The Gson instance used to read the SDK models. Register the {@link GsonAdapters} on it,
+     *             or Gson falls back to reflection
+     */
+    public GsonJsonCodec(@NotNull Gson gson) {
+        this.gson = gson;
+    }
+
+    @Override
+    public String getName() {
+        return "gson";
+    }
+
+    @Override
+    public byte[] writeHandshake(int version, @NotNull String clientId) {
+        JsonObject data = new JsonObject();
+        data.addProperty("v", version);
+        data.addProperty("client_id", clientId);
+
+        return this.toBytes(data);
+    }
+
+    @Override
+    public byte[] writeCommand(@NotNull String command, @Nullable String event, @Nullable Map<String, String> args, long nonce) {
+        JsonObject data = new JsonObject();
+        data.addProperty("cmd", command);
+
+        if (event != null)
+            data.addProperty("evt", event);
+
+        if (args != null) {
+            JsonObject arguments = new JsonObject();
+            args.forEach(arguments::addProperty);
+            data.add("args", arguments);
+        }
+
+        data.addProperty("nonce", String.valueOf(nonce));
+        return this.toBytes(data);
+    }
+
+    @Override
+    public byte[] writeActivity(@NotNull DiscordRichPresence presence, long pid, long nonce) {
+        return this.toBytes(presence.toJson(pid, nonce));
+    }
+
+    @Nullable
+    @Override
+    public <T> T read(byte[] bytes, int offset, int length, @NotNull Class<T> type) throws JsonCodecException {
+        String json = new String(bytes, offset, length, StandardCharsets.UTF_8);
+
+        if (type == String.class)
+            return type.cast(json);
+
+        try {
+            return this.gson.fromJson(json, type);
+        } catch (JsonParseException | IllegalStateException | NumberFormatException e) {
+            throw new JsonCodecException("Failed to read " + type.getSimpleName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private byte[] toBytes(JsonObject data) {
+        return data.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,403 @@
+package dev.firstdark.rpc.json;
+
+import dev.firstdark.rpc.exceptions.JsonCodecException;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author HypherionSA
+ * Minimal pull reader for UTF-8 encoded JSON. Reads straight from the bytes, without building a JSON tree,
+ * and compares field names without creating Strings. Values that aren't needed are skipped without being decoded.
+ * <p>
+ * Field names are compared as written, so a name that uses escapes never matches
+ */
+@ApiStatus.Internal
+public class JsonByteReader {
+
+    private final byte[] bytes;
+    private final int end;
+    private int pos;
+
+    private int nameStart;
+    private int nameEnd;
+    @Nullable
+    private String escapedName;
+    private boolean firstField;
+
+    public JsonByteReader(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.pos = offset;
+        this.end = offset + length;
+    }
+
+    /**
+     * Start reading an object
+     *
+     * @return False if the value is null, which is skipped
+     * @throws JsonCodecException Thrown when the value is not an object or null
+     */
+    public boolean beginObject() {
+        this.skipWhitespace();
+
+        if (this.nextNull())
+            return false;
+
+        this.expect('{');
+        this.firstField = true;
+        return true;
+    }
+
+    /**
+     * Move to the next field of the current object. The value of the field must be read or skipped before calling this again
+     *
+     * @return False once the end of the object is reached
+     */
+    public boolean nextField() {
+        this.skipWhitespace();
+
+        if (this.peek() == '}') {
+            this.pos++;
+            // Back in the parent object, which has at least one field: this one
+            this.firstField = false;
+            return false;
+        }
+
+        if (!this.firstField) {
+            this.expect(',');
+            this.skipWhitespace();
+        }
+
+        this.firstField = false;
+
+        if (this.peek() != '"')
+            throw this.error("Expected a field name");
+
+        this.nameStart = this.pos + 1;
+        this.pos = this.skipString(this.pos);
+        this.nameEnd = this.pos - 1;
+        this.escapedName = null;
+
+        // Names are compared as raw bytes. The rare name with an escape in it is decoded first
+        for (int i = this.nameStart; i < this.nameEnd; i++) {
+            if (this.bytes[i] == '\\') {
+                this.escapedName = this.readEscapedString(this.nameStart);
+                break;
+            }
+        }
+
+        this.skipWhitespace();
+        this.expect(':');
+        this.skipWhitespace();
+        return true;
+    }
+
+    /**
+     * @param name The field name to compare with. Must be ASCII
+     * @return True if the current field has this name
+     */
+    public boolean isField(String name) {
+        if (this.escapedName != null)
+            return this.escapedName.equals(name);
+
+        if (this.nameEnd - this.nameStart != name.length())
+            return false;
+
+        for (int i = 0; i < name.length(); i++) {
+            if (this.bytes[this.nameStart + i] != name.charAt(i))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Read a string. Numbers and booleans are returned as written
+     *
+     * @return The string, or null if the value is null
+     */
+    @Nullable
+    public String nextString() {
+        this.skipWhitespace();
+
+        if (this.nextNull())
+            return null;
+
+        if (this.peek() != '"') {
+            int start = this.pos;
+            this.skipLiteral();
+
+            if (this.bytes[start] == '{' || this.bytes[start] == '[')
+                throw this.error("Expected a string");
+
+            return new String(this.bytes, start, this.pos - start, StandardCharsets.US_ASCII);
+        }
+
+        int start = this.pos + 1;
+
+        for (int i = start; i < this.end; i++) {
+            byte b = this.bytes[i];
+
+            if (b == '"') {
+                this.pos = i + 1;
+                return new String(this.bytes, start, i - start, StandardCharsets.UTF_8);
+            }
+
+            if (b == '\\')
+                return this.readEscapedString(start);
+        }
+
+        throw this.error("Unterminated string");
+    }
+
+    /**
+     * Read a whole number. Strings holding a number are accepted too, like Gson does
+     *
+     * @return The number, or 0 if the value is null
+     */
+    public long nextLong() {
+        String value = this.nextString();
+
+        if (value == null)
+            return 0;
+
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            try {
+                return (long) Double.parseDouble(value);
+            } catch (NumberFormatException ignored) {
+                throw this.error("Expected a number, got " + value);
+            }
+        }
+    }
+
+    /**
+     * Skip a complete value, without decoding it
+     */
+    public void skipValue() {
+        this.skipWhitespace();
+        byte first = this.peek();
+
+        if (first == '"') {
+            this.pos = this.skipString(this.pos);
+            return;
+        }
+
+        if (first != '{' && first != '[') {
+            this.skipLiteral();
+            return;
+        }
+
+        int depth = 0;
+
+        while (this.pos < this.end) {
+            byte b = this.bytes[this.pos];
+
+            if (b == '"') {
+                this.pos = this.skipString(this.pos);
+                continue;
+            }
+
+            if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                if (--depth == 0) {
+                    this.pos++;
+                    return;
+                }
+            }
+
+            this.pos++;
+        }
+
+        throw this.error("Unterminated " + (first == '{' ? "object" : "array"));
+    }
+
+    /**
+     * @return The current position in the array
+     */
+    public int position() {
+        return this.pos;
+    }
+
+    /**
+     * Go back to a position returned by {@link #position()}, to read a value again
+     *
+     * @param position The position to continue reading from
+     */
+    public void seek(int position) {
+        this.pos = position;
+    }
+
+    /**
+     * Check that nothing but whitespace follows the value that was read
+     */
+    public void endDocument() {
+        this.skipWhitespace();
+
+        if (this.pos != this.end)
+            throw this.error("Unexpected data after the value");
+    }
+
+    private boolean nextNull() {
+        if (this.pos + 4 <= this.end && this.bytes[this.pos] == 'n' && this.bytes[this.pos + 1] == 'u'
+                && this.bytes[this.pos + 2] == 'l' && this.bytes[this.pos + 3] == 'l') {
+            this.pos += 4;
+            return true;
+        }
+
+        return false;
+    }
+
+    private String readEscapedString(int start) {
+        StringBuilder builder = new StringBuilder(32);
+        int runStart = start;
+        int i = start;
+
+        while (i < this.end) {
+            byte b = this.bytes[i];
+
+            if (b == '"') {
+                builder.append(new String(this.bytes, runStart, i - runStart, StandardCharsets.UTF_8));
+                this.pos = i + 1;
+                return builder.toString();
+            }
+
+            if (b != '\\') {
+                i++;
+                continue;
+            }
+
+            builder.append(new String(this.bytes, runStart, i - runStart, StandardCharsets.UTF_8));
+
+            if (i + 1 >= this.end)
+                break;
+
+            byte escape = this.bytes[i + 1];
+            i += 2;
+
+            switch (escape) {
+                case '"': builder.append('"'); break;
+                case '\\': builder.append('\\'); break;
+                case '/': builder.append('/'); break;
+                case 'b': builder.append('\b'); break;
+                case 'f': builder.append('\f'); break;
+                case 'n': builder.append('\n'); break;
+                case 'r': builder.append('\r'); break;
+                case 't': builder.append('\t'); break;
+                case 'u':
+                    if (i + 4 > this.end)
+                        throw this.error("Truncated unicode escape");
+
+                    builder.append((char) this.readHex(i));
+                    i += 4;
+                    break;
+                default:
+                    throw this.error("Invalid escape \\" + (char) escape);
+            }
+
+            runStart = i;
+        }
+
+        throw this.error("Unterminated string");
+    }
+
+    private int readHex(int index) {
+        int value = 0;
+
+        for (int i = index; i < index + 4; i++) {
+            int digit = Character.digit(this.bytes[i], 16);
+
+            if (digit < 0)
+                throw this.error("Invalid unicode escape");
+
+            value = (value << 4) | digit;
+        }
+
+        return value;
+    }
+
+    /**
+     * Skip a string, starting at its opening quote. Escapes are checked, but not decoded
+     *
+     * @return The index after the closing quote
+     */
+    private int skipString(int i) {
+        for (i = i + 1; i < this.end; i++) {
+            if (this.bytes[i] == '"')
+                return i + 1;
+
+            if (this.bytes[i] != '\\')
+                continue;
+
+            if (++i >= this.end)
+                break;
+
+            switch (this.bytes[i]) {
+                case '"': case '\\': case '/': case 'b': case 'f': case 'n': case 'r': case 't':
+                    break;
+                case 'u':
+                    if (i + 5 > this.end)
+                        throw this.error("Truncated unicode escape");
+
+                    this.readHex(i + 1);
+                    i += 4;
+                    break;
+                default:
+                    throw this.error("Invalid escape \\" + (char) this.bytes[i]);
+            }
+        }
+
+        throw this.error("Unterminated string");
+    }
+
+    /**
+     * Skip a number, true, false or null
+     */
+    private void skipLiteral() {
+        int start = this.pos;
+
+        while (this.pos < this.end) {
+            byte b = this.bytes[this.pos];
+
+            if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\t' || b == '\n' || b == '\r')
+                break;
+
+            this.pos++;
+        }
+
+        if (this.pos == start)
+            throw this.error("Expected a value");
+    }
+
+    private void skipWhitespace() {
+        while (this.pos < this.end) {
+            byte b = this.bytes[this.pos];
+
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r')
+                return;
+
+            this.pos++;
+        }
+    }
+
+    private byte peek() {
+        if (this.pos >= this.end)
+            throw this.error("Unexpected end of JSON");
+
+        return this.bytes[this.pos];
+    }
+
+    private void expect(char c) {
+        if (this.peek() != c)
+            throw this.error("Expected '" + c + "'");
+
+        this.pos++;
+    }
+
+    private JsonCodecException error(String message) {
+        return new JsonCodecException(message + " at offset " + this.pos);
+    }
+}
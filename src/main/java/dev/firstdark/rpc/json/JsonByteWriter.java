@@ -0,0 +1,180 @@
+package dev.firstdark.rpc.json;
+
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.Arrays;
+
+/**
+ * @author HypherionSA
+ * Minimal, reusable writer for UTF-8 encoded JSON. Writes strings and numbers straight to bytes,
+ * without creating intermediate Strings or JSON trees
+ */
+@ApiStatus.Internal
+public class JsonByteWriter {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final byte[] MIN_LONG = "-9223372036854775808".getBytes();
+
+    private byte[] buffer;
+    private int size;
+
+    public JsonByteWriter(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    public void reset() {
+        this.size = 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public byte[] buffer() {
+        return this.buffer;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(this.buffer, this.size);
+    }
+
+    public JsonByteWriter write(byte b) {
+        this.ensure(1);
+        this.buffer[this.size++] = b;
+        return this;
+    }
+
+    public JsonByteWriter write(byte[] bytes) {
+        return this.write(bytes, 0, bytes.length);
+    }
+
+    public JsonByteWriter write(byte[] bytes, int offset, int length) {
+        this.ensure(length);
+        System.arraycopy(bytes, offset, this.buffer, this.size, length);
+        this.size += length;
+        return this;
+    }
+
+    /**
+     * Write a string that is known to be plain ASCII, like a key or a constant, without quotes or escaping
+     */
+    public JsonByteWriter writeAscii(String ascii) {
+        this.ensure(ascii.length());
+
+        for (int i = 0; i < ascii.length(); i++)
+            this.buffer[this.size++] = (byte) ascii.charAt(i);
+
+        return this;
+    }
+
+    /**
+     * Write a quoted, escaped JSON string
+     */
+    public JsonByteWriter writeString(String value) {
+        return this.writeString(value, value.length());
+    }
+
+    /**
+     * Write a quoted, escaped JSON string, limited to a maximum number of characters
+     */
+    public JsonByteWriter writeString(String value, int maxChars) {
+        this.write((byte) '"');
+        this.writeEscaped(value, maxChars);
+        return this.write((byte) '"');
+    }
+
+    /**
+     * Write the escaped contents of a JSON string, without quotes
+     */
+    public JsonByteWriter writeEscaped(String value, int maxChars) {
+        int length = Math.min(value.length(), maxChars);
+
+        // Worst case is 6 bytes per char (\\u escapes)
+        this.ensure(length * 6);
+
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                this.buffer[this.size++] = '\\';
+                this.buffer[this.size++] = (byte) c;
+            } else if (c < 0x20) {
+                this.buffer[this.size++] = '\\';
+                this.buffer[this.size++] = 'u';
+                this.buffer[this.size++] = '0';
+                this.buffer[this.size++] = '0';
+                this.buffer[this.size++] = HEX[c >> 4];
+                this.buffer[this.size++] = HEX[c & 0xF];
+            } else if (c < 0x80) {
+                this.buffer[this.size++] = (byte) c;
+            } else if (c < 0x800) {
+                this.buffer[this.size++] = (byte) (0xC0 | (c >> 6));
+                this.buffer[this.size++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                this.buffer[this.size++] = (byte) (0xF0 | (codePoint >> 18));
+                this.buffer[this.size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                this.buffer[this.size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                this.buffer[this.size++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates can't be encoded, so replace them like String.getBytes does
+                this.buffer[this.size++] = '?';
+            } else {
+                this.buffer[this.size++] = (byte) (0xE0 | (c >> 12));
+                this.buffer[this.size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                this.buffer[this.size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Write a number as ASCII digits
+     */
+    public JsonByteWriter writeLong(long value) {
+        if (value == Long.MIN_VALUE)
+            return this.write(MIN_LONG);
+
+        this.ensure(20);
+
+        if (value < 0) {
+            this.buffer[this.size++] = '-';
+            value = -value;
+        }
+
+        int digits = digits(value);
+        int end = this.size + digits;
+
+        for (int i = end - 1; i >= this.size; i--) {
+            this.buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+
+        this.size = end;
+        return this;
+    }
+
+    public JsonByteWriter writeBoolean(boolean value) {
+        return this.writeAscii(value ? "true" : "false");
+    }
+
+    /**
+     * @return The number of decimal digits in a non-negative number
+     */
+    public static int digits(long value) {
+        int digits = 1;
+
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+
+        return digits;
+    }
+
+    private void ensure(int extra) {
+        if (this.size + extra > this.buffer.length)
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.size + extra));
+    }
+}
@@ -0,0 +1,84 @@
+package dev.firstdark.rpc.json;
+
+import dev.firstdark.rpc.exceptions.JsonCodecException;
+import dev.firstdark.rpc.models.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * @author HypherionSA
+ * Service interface for all the JSON the SDK writes and reads. It only covers the shapes used by the RPC protocol,
+ * so it can be backed by any JSON library (or none at all).
+ * <p>
+ * The SDK uses {@link JsonCodecs#getDefault()} by default, which picks the first codec registered through
+ * {@link java.util.ServiceLoader} ({@code META-INF/services/dev.firstdark.rpc.json.JsonCodec}),
+ * and falls back to the built-in {@link StreamingJsonCodec}. A codec can also be set with
+ * {@link dev.firstdark.rpc.DiscordRpc#setJsonCodec(JsonCodec)}.
+ * <p>
+ * Implementations must be thread safe
+ */
+public interface JsonCodec {
+
+    /**
+     * @return A short name for the codec, used in logs
+     */
+    String getName();
+
+    /**
+     * Write the handshake that opens an RPC connection
+     *
+     * @param version The RPC protocol version
+     * @param clientId The Discord application ID
+     * @return The UTF-8 encoded JSON payload
+     */
+    byte[] writeHandshake(int version, @NotNull String clientId);
+
+    /**
+     * Write a command, like SUBSCRIBE or SEND_ACTIVITY_JOIN_INVITE
+     *
+     * @param command The name of the command
+     * @param event The event the command applies to, or null to leave it out
+     * @param args The string arguments of the command, in order, or null to leave them out
+     * @param nonce The nonce of the command, written as a string
+     * @return The UTF-8 encoded JSON payload
+     */
+    byte[] writeCommand(@NotNull String command, @Nullable String event, @Nullable Map<String, String> args, long nonce);
+
+    /**
+     * Write a SET_ACTIVITY command. Must produce the same fields as {@link DiscordRichPresence#toJson(long, long)}
+     *
+     * @param presence The presence to send
+     * @param pid The process ID of the game
+     * @param nonce The nonce of the command, written as a number
+     * @return The UTF-8 encoded JSON payload
+     */
+    byte[] writeActivity(@NotNull DiscordRichPresence presence, long pid, long nonce);
+
+    /**
+     * Read a JSON value into one of the SDK models. Codecs must support {@link User}, {@link DiscordJoinRequest},
+     * {@link ReadyEvent}, {@link SecretEvent} and {@link ErrorEvent}, and {@link String}, which returns the raw JSON.
+     * Unknown fields are ignored
+     *
+     * @param bytes The array holding the UTF-8 encoded JSON
+     * @param offset The offset of the JSON in the array
+     * @param length The length of the JSON
+     * @param type The model to read
+     * @return The decoded value, or null if the JSON is {@code null}
+     * @throws JsonCodecException Thrown when the JSON is malformed, doesn't match the model, or the type isn't supported
+     */
+    @Nullable
+    <T> T read(byte[] bytes, int offset, int length, @NotNull Class<T> type) throws JsonCodecException;
+
+    /**
+     * Check if the codec can read a type, before subscribing to events with it
+     *
+     * @param type The type to check
+     * @return True if {@link #read(byte[], int, int, Class)} supports the type
+     */
+    default boolean canRead(@NotNull Class<?> type) {
+        return true;
+    }
+
+}
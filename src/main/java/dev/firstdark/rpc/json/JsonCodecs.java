@@ -0,0 +1,66 @@
+package dev.firstdark.rpc.json;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * @author HypherionSA
+ * Discovery of the {@link JsonCodec} the SDK uses by default
+ */
+public final class JsonCodecs {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JsonCodecs.class);
+
+    private static volatile JsonCodec defaultCodec;
+
+    private JsonCodecs() {}
+
+    /**
+     * The codec shared by every {@link dev.firstdark.rpc.DiscordRpc} that doesn't set its own.
+     * Loaded with {@link #load()} the first time it's needed
+     *
+     * @return The shared codec
+     */
+    public static JsonCodec getDefault() {
+        JsonCodec codec = defaultCodec;
+
+        if (codec == null) {
+            synchronized (JsonCodecs.class) {
+                codec = defaultCodec;
+
+                if (codec == null) {
+                    codec = load();
+                    defaultCodec = codec;
+                }
+            }
+        }
+
+        return codec;
+    }
+
+    /**
+     * Find the default codec. The first codec registered through {@link ServiceLoader} wins,
+     * otherwise the built-in {@link StreamingJsonCodec} is used
+     *
+     * @return The codec to use
+     */
+    public static JsonCodec load() {
+        try {
+            Iterator<JsonCodec> codecs = ServiceLoader.load(JsonCodec.class, JsonCodec.class.getClassLoader()).iterator();
+
+            if (codecs.hasNext()) {
+                JsonCodec codec = codecs.next();
+                LOGGER.debug("Using JSON codec {}", codec.getName());
+                return codec;
+            }
+        } catch (ServiceConfigurationError e) {
+            LOGGER.warn("Failed to load JSON codec, using the built-in codec", e);
+        }
+
+        return new StreamingJsonCodec();
+    }
+}
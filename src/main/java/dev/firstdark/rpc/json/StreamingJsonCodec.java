@@ -0,0 +1,258 @@
+package dev.firstdark.rpc.json;
+
+import dev.firstdark.rpc.exceptions.JsonCodecException;
+import dev.firstdark.rpc.models.*;
+import dev.firstdark.rpc.presence.MutablePresence;
+import dev.firstdark.rpc.presence.PresenceEncoder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author HypherionSA
+ * The built-in {@link JsonCodec}. Writes straight to UTF-8 bytes, and reads with a pull reader, so it has no dependencies,
+ * and doesn't use reflection. Obfuscating the SDK models doesn't affect it.
+ * <p>
+ * Activities are written by the same encoder as {@link MutablePresence}, which keeps the encoded bytes of every section.
+ * Sending a presence that only differs in a few fields from the previous one only encodes those fields.
+ * <p>
+ * Decoded users are kept in a {@link UserCache}. A user whose JSON didn't change is returned from the cache, without decoding it again
+ */
+public class StreamingJsonCodec implements JsonCodec {
+
+    private static final Set<Class<?>> READABLE = new HashSet<>(Arrays.asList(
+            User.class, DiscordJoinRequest.class, ReadyEvent.class, SecretEvent.class, ErrorEvent.class, String.class
+    ));
+
+    private final MutablePresence lastPresence = new MutablePresence();
+    private final MutablePresence presenceShadow = new MutablePresence();
+    private final PresenceEncoder presenceEncoder = new PresenceEncoder();
+    private final UserCache userCache;
+
+    public StreamingJsonCodec() {
+        this(UserCache.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param userCacheSize The maximum number of decoded users to keep
+     */
+    public StreamingJsonCodec(int userCacheSize) {
+        this.userCache = new UserCache(userCacheSize);
+
+        // Nothing was encoded yet, so the first activity needs every section
+        this.lastPresence.markChanged();
+    }
+
+    @Override
+    public String getName() {
+        return "builtin";
+    }
+
+    @Override
+    public byte[] writeHandshake(int version, @NotNull String clientId) {
+        JsonByteWriter out = new JsonByteWriter(64);
+        out.writeAscii("{\"v\":").writeLong(version).writeAscii(",\"client_id\":").writeString(clientId).write((byte) '}');
+        return out.toByteArray();
+    }
+
+    @Override
+    public byte[] writeCommand(@NotNull String command, @Nullable String event, @Nullable Map<String, String> args, long nonce) {
+        JsonByteWriter out = new JsonByteWriter(128);
+        out.writeAscii("{\"cmd\":").writeString(command);
+
+        if (event != null)
+            out.writeAscii(",\"evt\":").writeString(event);
+
+        if (args != null) {
+            out.writeAscii(",\"args\":{");
+            boolean first = true;
+
+            for (Map.Entry<String, String> arg : args.entrySet()) {
+                if (!first)
+                    out.write((byte) ',');
+
+                out.writeString(arg.getKey()).write((byte) ':');
+
+                if (arg.getValue() == null)
+                    out.writeAscii("null");
+                else
+                    out.writeString(arg.getValue());
+
+                first = false;
+            }
+
+            out.write((byte) '}');
+        }
+
+        out.writeAscii(",\"nonce\":\"").writeLong(nonce).writeAscii("\"}");
+        return out.toByteArray();
+    }
+
+    @Override
+    public synchronized byte[] writeActivity(@NotNull DiscordRichPresence presence, long pid, long nonce) {
+        int changed = this.lastPresence.set(presence).copyTo(this.presenceShadow);
+        return this.presenceEncoder.encode(this.presenceShadow, changed, pid, nonce);
+    }
+
+    @Nullable
+    @Override
+    public <T> T read(byte[] bytes, int offset, int length, @NotNull Class<T> type) throws JsonCodecException {
+        if (type == String.class)
+            return type.cast(new String(bytes, offset, length, StandardCharsets.UTF_8));
+
+        JsonByteReader reader = new JsonByteReader(bytes, offset, length);
+        Object value;
+
+        if (type == User.class) {
+            value = this.readUser(reader, bytes);
+        } else if (type == DiscordJoinRequest.class) {
+            value = this.readJoinRequest(reader, bytes);
+        } else if (type == ReadyEvent.class) {
+            value = this.readReady(reader, bytes);
+        } else if (type == SecretEvent.class) {
+            value = readSecret(reader);
+        } else if (type == ErrorEvent.class) {
+            value = readError(reader);
+        } else {
+            throw new JsonCodecException("The built-in JSON codec can't read " + type.getName());
+        }
+
+        reader.endDocument();
+        return type.cast(value);
+    }
+
+    @Override
+    public boolean canRead(@NotNull Class<?> type) {
+        return READABLE.contains(type);
+    }
+
+    @Nullable
+    private User readUser(JsonByteReader reader, byte[] bytes) {
+        int start = reader.position();
+
+        if (!reader.beginObject())
+            return null;
+
+        // Only read the ID first. If the cached user has the same JSON, nothing else needs to be decoded
+        String id = null;
+
+        while (reader.nextField()) {
+            if (reader.isField("id"))
+                id = reader.nextString();
+            else
+                reader.skipValue();
+        }
+
+        int end = reader.position();
+
+        if (id != null) {
+            User cached = this.userCache.get(id, bytes, start, end - start);
+
+            if (cached != null)
+                return cached;
+        }
+
+        reader.seek(start);
+        reader.beginObject();
+
+        String username = null;
+        String discriminator = null;
+        String globalName = null;
+        String avatar = null;
+
+        while (reader.nextField()) {
+            if (reader.isField("username"))
+                username = reader.nextString();
+            else if (reader.isField("discriminator"))
+                discriminator = reader.nextString();
+            else if (reader.isField("global_name"))
+                globalName = reader.nextString();
+            else if (reader.isField("avatar"))
+                avatar = reader.nextString();
+            else
+                reader.skipValue();
+        }
+
+        User user = new User(id, username, discriminator, globalName, avatar);
+        return id == null ? user : this.userCache.put(bytes, start, end - start, user);
+    }
+
+    @Nullable
+    private DiscordJoinRequest readJoinRequest(JsonByteReader reader, byte[] bytes) {
+        if (!reader.beginObject())
+            return null;
+
+        User user = null;
+
+        while (reader.nextField()) {
+            if (reader.isField("user"))
+                user = this.readUser(reader, bytes);
+            else
+                reader.skipValue();
+        }
+
+        return new DiscordJoinRequest(user);
+    }
+
+    @Nullable
+    private ReadyEvent readReady(JsonByteReader reader, byte[] bytes) {
+        if (!reader.beginObject())
+            return null;
+
+        int version = 0;
+        User user = null;
+
+        while (reader.nextField()) {
+            if (reader.isField("v"))
+                version = (int) reader.nextLong();
+            else if (reader.isField("user"))
+                user = this.readUser(reader, bytes);
+            else
+                reader.skipValue();
+        }
+
+        return new ReadyEvent(version, user);
+    }
+
+    @Nullable
+    private static SecretEvent readSecret(JsonByteReader reader) {
+        if (!reader.beginObject())
+            return null;
+
+        String secret = null;
+
+        while (reader.nextField()) {
+            if (reader.isField("secret"))
+                secret = reader.nextString();
+            else
+                reader.skipValue();
+        }
+
+        return new SecretEvent(secret);
+    }
+
+    @Nullable
+    private static ErrorEvent readError(JsonByteReader reader) {
+        if (!reader.beginObject())
+            return null;
+
+        int code = 0;
+        String message = null;
+
+        while (reader.nextField()) {
+            if (reader.isField("code"))
+                code = (int) reader.nextLong();
+            else if (reader.isField("message"))
+                message = reader.nextString();
+            else
+                reader.skipValue();
+        }
+
+        return new ErrorEvent(code, message);
+    }
+}
@@ -0,0 +1,136 @@
+package dev.firstdark.rpc.json;
+
+import dev.firstdark.rpc.models.User;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * @author HypherionSA
+ * Bounded cache of decoded {@link User}s, keyed by user ID, that evicts the least recently used user when full.
+ * Join requests usually come from the same few friends, so codecs can hand out the same {@link User} again,
+ * instead of decoding and allocating an identical one.
+ * <p>
+ * Codecs that see the raw JSON keep a copy of it, and only have to compare bytes on a hit.
+ * Other codecs decode the user, and compare the fields.
+ * <p>
+ * Thread safe
+ */
+public class UserCache {
+
+    /**
+     * The capacity used by the built-in codecs
+     */
+    public static final int DEFAULT_CAPACITY = 128;
+
+    private final Map<String, CachedUser> users;
+
+    /**
+     * @param capacity The maximum number of users to keep
+     */
+    public UserCache(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be at least 1");
+
+        this.users = new LinkedHashMap<String, CachedUser>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUser> eldest) {
+                return this.size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Find a cached user that was decoded from exactly the same JSON
+     *
+     * @param id The ID of the user
+     * @param bytes The array holding the user JSON
+     * @param offset The offset of the JSON in the array
+     * @param length The length of the JSON
+     * @return The cached user, or null if the user isn't cached, or changed
+     */
+    @Nullable
+    public synchronized User get(@NotNull String id, byte[] bytes, int offset, int length) {
+        CachedUser entry = this.users.get(id);
+
+        if (entry == null || entry.json == null || entry.json.length != length)
+            return null;
+
+        for (int i = 0; i < length; i++) {
+            if (entry.json[i] != bytes[offset + i])
+                return null;
+        }
+
+        return entry.user;
+    }
+
+    /**
+     * Cache a user, together with the JSON it was decoded from
+     *
+     * @param bytes The array holding the user JSON
+     * @param offset The offset of the JSON in the array
+     * @param length The length of the JSON
+     * @param user The decoded user. Must have an ID
+     * @return The user
+     */
+    public synchronized User put(byte[] bytes, int offset, int length, @NotNull User user) {
+        this.users.put(user.getUserId(), new CachedUser(user, Arrays.copyOfRange(bytes, offset, offset + length)));
+        return user;
+    }
+
+    /**
+     * Return the cached user if it's identical to a freshly decoded one, or cache the new user otherwise
+     *
+     * @param user The decoded user
+     * @return The user to use
+     */
+    public synchronized User intern(@NotNull User user) {
+        if (user.getUserId() == null)
+            return user;
+
+        CachedUser entry = this.users.get(user.getUserId());
+
+        if (entry != null && isSame(entry.user, user))
+            return entry.user;
+
+        this.users.put(user.getUserId(), new CachedUser(user, null));
+        return user;
+    }
+
+    /**
+     * @return The number of cached users
+     */
+    public synchronized int size() {
+        return this.users.size();
+    }
+
+    /**
+     * Remove all cached users
+     */
+    public synchronized void clear() {
+        this.users.clear();
+    }
+
+    @SuppressWarnings("deprecation")
+    private static boolean isSame(User a, User b) {
+        return Objects.equals(a.getUserId(), b.getUserId())
+                && Objects.equals(a.getUsername(), b.getUsername())
+                && Objects.equals(a.getDiscriminator(), b.getDiscriminator())
+                && Objects.equals(a.getGlobalName(), b.getGlobalName())
+                && Objects.equals(a.getAvatar(), b.getAvatar());
+    }
+
+    private static final class CachedUser {
+        private final User user;
+        private final byte[] json;
+
+        private CachedUser(User user, byte[] json) {
+            this.user = user;
+            this.json = json;
+        }
+    }
+}
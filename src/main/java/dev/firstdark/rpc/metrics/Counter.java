@@ -0,0 +1,42 @@
+package dev.firstdark.rpc.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author HypherionSA
+ * A monotonically increasing count. Backed by a {@link LongAdder}, so concurrent updates don't contend
+ */
+public class Counter {
+
+    private final RpcMetrics owner;
+    private final LongAdder adder = new LongAdder();
+
+    Counter(RpcMetrics owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Add one to the counter
+     */
+    public void increment() {
+        if (this.owner.isEnabled())
+            this.adder.increment();
+    }
+
+    /**
+     * Add a value to the counter
+     *
+     * @param amount The amount to add
+     */
+    public void add(long amount) {
+        if (this.owner.isEnabled())
+            this.adder.add(amount);
+    }
+
+    /**
+     * @return The current value of the counter
+     */
+    public long get() {
+        return this.adder.sum();
+    }
+}
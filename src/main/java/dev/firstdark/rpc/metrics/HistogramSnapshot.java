@@ -0,0 +1,27 @@
+package dev.firstdark.rpc.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @author HypherionSA
+ * Point in time statistics of a {@link LatencyHistogram}. All values are in nanoseconds
+ */
+@AllArgsConstructor
+@Getter
+public class HistogramSnapshot {
+
+    private final long count;
+    private final double mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    @Override
+    public String toString() {
+        return String.format("count=%d p50=%.3fms p99=%.3fms p999=%.3fms max=%.3fms mean=%.3fms",
+                this.count, this.p50 / 1e6, this.p99 / 1e6, this.p999 / 1e6, this.max / 1e6, this.mean / 1e6);
+    }
+}
@@ -0,0 +1,142 @@
+package dev.firstdark.rpc.metrics;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author HypherionSA
+ * Fixed-bucket latency histogram, in the style of HdrHistogram.
+ * Every power of two is split into 32 linear sub-buckets, giving roughly 3% precision
+ * over the full range of a long, with a fixed memory footprint and lock-free recording
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final RpcMetrics owner;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private volatile long max;
+
+    /**
+     * Create a standalone histogram, that always records
+     */
+    public LatencyHistogram() {
+        this(null);
+    }
+
+    LatencyHistogram(@Nullable RpcMetrics owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Record a single latency
+     *
+     * @param nanos The latency, in nanoseconds. Negative values are clamped to 0
+     */
+    public void record(long nanos) {
+        if (this.owner != null && !this.owner.isEnabled())
+            return;
+
+        long value = Math.max(0, nanos);
+        this.counts.incrementAndGet(indexOf(value));
+        this.total.increment();
+        this.sum.add(value);
+
+        if (value > this.max) {
+            synchronized (this) {
+                if (value > this.max)
+                    this.max = value;
+            }
+        }
+    }
+
+    /**
+     * Record the time elapsed since a {@link System#nanoTime()} timestamp
+     *
+     * @param startNanos The start timestamp
+     */
+    public void recordSince(long startNanos) {
+        this.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return The number of recorded values
+     */
+    public long count() {
+        return this.total.sum();
+    }
+
+    /**
+     * @return The largest recorded value, in nanoseconds
+     */
+    public long max() {
+        return this.max;
+    }
+
+    /**
+     * @return The mean of all recorded values, in nanoseconds
+     */
+    public double mean() {
+        long count = this.count();
+        return count == 0 ? 0 : (double) this.sum.sum() / count;
+    }
+
+    /**
+     * Find the value at a given percentile
+     *
+     * @param percentile The percentile, between 0 and 100
+     * @return The upper bound of the bucket containing the percentile, in nanoseconds
+     */
+    public long percentile(double percentile) {
+        long count = this.count();
+        if (count == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(count * (percentile / 100.0)));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.counts.get(i);
+
+            if (seen >= target)
+                return Math.min(upperBoundOf(i), this.max);
+        }
+
+        return this.max;
+    }
+
+    /**
+     * Take a point in time copy of the main statistics
+     *
+     * @return The snapshot
+     */
+    public HistogramSnapshot snapshot() {
+        return new HistogramSnapshot(this.count(), this.mean(), this.percentile(50), this.percentile(90),
+                this.percentile(99), this.percentile(99.9), this.max());
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + subBucket * width + width - 1;
+    }
+}
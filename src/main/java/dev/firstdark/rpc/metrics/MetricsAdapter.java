@@ -0,0 +1,36 @@
+package dev.firstdark.rpc.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * @author HypherionSA
+ * Bridges {@link RpcMetrics} into another metrics registry (Micrometer, Dropwizard, a game's own telemetry etc).
+ * Pass an implementation to {@link RpcMetrics#bindTo(MetricsAdapter)}, and register each metric with your registry
+ */
+public interface MetricsAdapter {
+
+    /**
+     * Register a monotonically increasing counter
+     *
+     * @param name The name of the metric
+     * @param value Reads the current value
+     */
+    void counter(String name, LongSupplier value);
+
+    /**
+     * Register a gauge, like a queue depth
+     *
+     * @param name The name of the metric
+     * @param value Reads the current value
+     */
+    void gauge(String name, LongSupplier value);
+
+    /**
+     * Register a latency histogram. Values are in nanoseconds
+     *
+     * @param name The name of the metric
+     * @param histogram The histogram to read from
+     */
+    void histogram(String name, LatencyHistogram histogram);
+
+}
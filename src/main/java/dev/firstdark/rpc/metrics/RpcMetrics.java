@@ -0,0 +1,182 @@
+package dev.firstdark.rpc.metrics;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.jetbrains.annotations.Nullable;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * @author HypherionSA
+ * Counters, gauges and latency histograms for a single {@link dev.firstdark.rpc.DiscordRpc} instance.
+ * Recording is lock-free and safe from any thread. Read the values with {@link #snapshot()}, over JMX with
+ * {@link #registerMBean()}, or bridge them into your own registry with {@link #bindTo(MetricsAdapter)}
+ */
+public class RpcMetrics {
+
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    /**
+     * When disabled, counters and histograms ignore new values. Gauges are always live
+     */
+    @Getter
+    @Setter
+    private volatile boolean enabled = true;
+
+    private final Map<String, Counter> counters = new LinkedHashMap<>();
+    private final Map<String, LongSupplier> gauges = new LinkedHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+
+    @Nullable
+    private ObjectName objectName;
+
+    // IPC traffic
+    @Getter
+    private final Counter framesIn = this.counter("frames.in");
+    @Getter
+    private final Counter framesOut = this.counter("frames.out");
+    @Getter
+    private final Counter bytesIn = this.counter("bytes.in");
+    @Getter
+    private final Counter bytesOut = this.counter("bytes.out");
+    @Getter
+    private final Counter writeFailures = this.counter("frames.write.failures");
+    @Getter
+    private final Counter corruptFrames = this.counter("frames.corrupt");
+
+    // Connection lifecycle
+    @Getter
+    private final Counter connects = this.counter("connection.connects");
+    @Getter
+    private final Counter reconnects = this.counter("connection.reconnects");
+    @Getter
+    private final Counter disconnects = this.counter("connection.disconnects");
+
+    // Connections lost soon after they were established, and the cooling-off periods they caused
+    @Getter
+    private final Counter flaps = this.counter("connection.flaps");
+    @Getter
+    private final Counter coolOffs = this.counter("connection.cooloffs");
+
+    // Events that arrived without a subscription, and were dropped without decoding them
+    @Getter
+    private final Counter unhandledEvents = this.counter("events.unhandled");
+
+    // Events dropped because a bounded buffer was full, see OverflowStrategy
+    @Getter
+    private final Counter droppedEvents = this.counter("events.dropped");
+
+    // Time spent inside user callbacks
+    @Getter
+    private final LatencyHistogram callbackDuration = this.histogram("callback.duration");
+
+    /**
+     * Get, or create, a named counter
+     *
+     * @param name The name of the counter
+     * @return The counter
+     */
+    public synchronized Counter counter(String name) {
+        return this.counters.computeIfAbsent(name, key -> new Counter(this));
+    }
+
+    /**
+     * Get, or create, a named latency histogram
+     *
+     * @param name The name of the histogram
+     * @return The histogram
+     */
+    public synchronized LatencyHistogram histogram(String name) {
+        return this.histograms.computeIfAbsent(name, key -> new LatencyHistogram(this));
+    }
+
+    /**
+     * Register a gauge, that is read every time a snapshot is taken
+     *
+     * @param name The name of the gauge
+     * @param supplier Reads the current value
+     */
+    public synchronized void gauge(String name, LongSupplier supplier) {
+        this.gauges.put(name, supplier);
+    }
+
+    /**
+     * Start timing an operation
+     *
+     * @return The current {@link System#nanoTime()}, or 0 when metrics are disabled
+     */
+    public long startTimer() {
+        return this.enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Take a point in time copy of all metrics
+     *
+     * @return The snapshot
+     */
+    public synchronized RpcMetricsSnapshot snapshot() {
+        Map<String, Long> counterValues = new LinkedHashMap<>();
+        Map<String, Long> gaugeValues = new LinkedHashMap<>();
+        Map<String, HistogramSnapshot> histogramValues = new LinkedHashMap<>();
+
+        this.counters.forEach((name, counter) -> counterValues.put(name, counter.get()));
+        this.gauges.forEach((name, gauge) -> gaugeValues.put(name, gauge.getAsLong()));
+        this.histograms.forEach((name, histogram) -> histogramValues.put(name, histogram.snapshot()));
+
+        return new RpcMetricsSnapshot(Collections.unmodifiableMap(counterValues),
+                Collections.unmodifiableMap(gaugeValues), Collections.unmodifiableMap(histogramValues));
+    }
+
+    /**
+     * Register every metric with another metrics registry.
+     * Metrics created after this call are not bound
+     *
+     * @param adapter The adapter for your registry
+     */
+    public synchronized void bindTo(MetricsAdapter adapter) {
+        this.counters.forEach((name, counter) -> adapter.counter(name, counter::get));
+        this.gauges.forEach(adapter::gauge);
+        this.histograms.forEach(adapter::histogram);
+    }
+
+    /**
+     * Expose the metrics on the platform MBean server, under {@code dev.firstdark.rpc:type=RpcMetrics}
+     *
+     * @return The name the metrics were registered under
+     * @throws JMException Thrown when the MBean could not be registered
+     */
+    public synchronized ObjectName registerMBean() throws JMException {
+        if (this.objectName != null)
+            return this.objectName;
+
+        ObjectName name = new ObjectName("dev.firstdark.rpc:type=RpcMetrics,instance=" + INSTANCES.incrementAndGet());
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new RpcMetricsMBean(this), name);
+        this.objectName = name;
+        return name;
+    }
+
+    /**
+     * Remove the metrics from the platform MBean server, if they were registered
+     */
+    public synchronized void unregisterMBean() {
+        if (this.objectName == null)
+            return;
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+            if (server.isRegistered(this.objectName))
+                server.unregisterMBean(this.objectName);
+        } catch (JMException ignored) {}
+
+        this.objectName = null;
+    }
+}
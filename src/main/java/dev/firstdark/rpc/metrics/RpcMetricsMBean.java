@@ -0,0 +1,102 @@
+package dev.firstdark.rpc.metrics;
+
+import javax.management.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author HypherionSA
+ * Read-only JMX view of {@link RpcMetrics}. Counters and gauges are exposed as-is,
+ * and every histogram as {@code <name>.count}, {@code .p50}, {@code .p99}, {@code .p999}, {@code .max} in nanoseconds
+ */
+class RpcMetricsMBean implements DynamicMBean {
+
+    private static final String[] HISTOGRAM_FIELDS = { "count", "p50", "p90", "p99", "p999", "max" };
+
+    private final RpcMetrics metrics;
+
+    RpcMetricsMBean(RpcMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        RpcMetricsSnapshot snapshot = this.metrics.snapshot();
+
+        if (snapshot.getCounters().containsKey(attribute))
+            return snapshot.getCounters().get(attribute);
+
+        if (snapshot.getGauges().containsKey(attribute))
+            return snapshot.getGauges().get(attribute);
+
+        int split = attribute.lastIndexOf('.');
+        HistogramSnapshot histogram = split < 0 ? null : snapshot.getHistogram(attribute.substring(0, split));
+
+        if (histogram != null) {
+            switch (attribute.substring(split + 1)) {
+                case "count":
+                    return histogram.getCount();
+                case "p50":
+                    return histogram.getP50();
+                case "p90":
+                    return histogram.getP90();
+                case "p99":
+                    return histogram.getP99();
+                case "p999":
+                    return histogram.getP999();
+                case "max":
+                    return histogram.getMax();
+            }
+        }
+
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, this.getAttribute(attribute)));
+            } catch (AttributeNotFoundException ignored) {}
+        }
+
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("RpcMetrics attributes are read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        RpcMetricsSnapshot snapshot = this.metrics.snapshot();
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+
+        snapshot.getCounters().keySet().forEach(name -> attributes.add(attribute(name, "Counter")));
+        snapshot.getGauges().keySet().forEach(name -> attributes.add(attribute(name, "Gauge")));
+        snapshot.getHistograms().keySet().forEach(name -> {
+            for (String field : HISTOGRAM_FIELDS)
+                attributes.add(attribute(name + "." + field, "Latency histogram, in nanoseconds"));
+        });
+
+        return new MBeanInfo(RpcMetrics.class.getName(), "Discord RPC metrics",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+
+    private static MBeanAttributeInfo attribute(String name, String description) {
+        return new MBeanAttributeInfo(name, "long", description, true, false, false);
+    }
+}
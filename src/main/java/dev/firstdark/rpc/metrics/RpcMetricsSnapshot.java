@@ -0,0 +1,56 @@
+package dev.firstdark.rpc.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * @author HypherionSA
+ * Point in time copy of all {@link RpcMetrics}, keyed by metric name
+ */
+@AllArgsConstructor
+@Getter
+public class RpcMetricsSnapshot {
+
+    private final Map<String, Long> counters;
+    private final Map<String, Long> gauges;
+    private final Map<String, HistogramSnapshot> histograms;
+
+    /**
+     * @param name The name of the counter
+     * @return The value of the counter, or 0 if it doesn't exist
+     */
+    public long getCounter(String name) {
+        Long value = this.counters.get(name);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * @param name The name of the gauge
+     * @return The value of the gauge, or 0 if it doesn't exist
+     */
+    public long getGauge(String name) {
+        Long value = this.gauges.get(name);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * @param name The name of the histogram
+     * @return The histogram statistics, or null if it doesn't exist
+     */
+    @Nullable
+    public HistogramSnapshot getHistogram(String name) {
+        return this.histograms.get(name);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        this.counters.forEach((name, value) -> builder.append(name).append('=').append(value).append('\n'));
+        this.gauges.forEach((name, value) -> builder.append(name).append('=').append(value).append('\n'));
+        this.histograms.forEach((name, value) -> builder.append(name).append(' ').append(value).append('\n'));
+        return builder.toString();
+    }
+}
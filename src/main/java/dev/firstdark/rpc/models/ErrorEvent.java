@@ -0,0 +1,26 @@
+package dev.firstdark.rpc.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * @author HypherionSA
+ * Error sent by Discord, either as an ERROR event in response to a command, or as the reason of a CLOSE frame
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+public class ErrorEvent {
+
+    /**
+     * The RPC error code
+     */
+    private int code;
+
+    /**
+     * The error message, if any
+     */
+    private String message;
+
+}
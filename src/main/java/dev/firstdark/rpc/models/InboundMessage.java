@@ -0,0 +1,383 @@
+package dev.firstdark.rpc.models;
+
+import dev.firstdark.rpc.exceptions.JsonCodecException;
+import dev.firstdark.rpc.json.JsonCodec;
+import lombok.Getter;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author HypherionSA
+ * A message received from Discord, decoded by scanning the raw UTF-8 payload.
+ * Only {@code cmd}, {@code evt} and {@code nonce} are decoded up front. The {@code data} object is only
+ * decoded when {@link #readData(JsonCodec, Class)} is called, so events nobody handles are never decoded.
+ * Escapes in strings are checked while scanning, so a payload with an invalid escape is rejected by {@link #decode(byte[], int, int)}
+ * <p>
+ * The SDK reuses a single instance, which points into the connection's read buffer.
+ * It is only valid until the next message is read
+ */
+@ApiStatus.Internal
+public class InboundMessage {
+
+    // Names that Discord sends all the time. Matching them avoids creating a new String for every message
+    private static final String[] KNOWN_NAMES = {
+            "DISPATCH", "READY", "ERROR", "ACTIVITY_JOIN", "ACTIVITY_SPECTATE", "ACTIVITY_JOIN_REQUEST",
+            "SET_ACTIVITY", "SUBSCRIBE", "UNSUBSCRIBE", "SEND_ACTIVITY_JOIN_INVITE", "CLOSE_ACTIVITY_JOIN_REQUEST"
+    };
+
+    private static final byte[][] KNOWN_BYTES = new byte[KNOWN_NAMES.length][];
+
+    static {
+        for (int i = 0; i < KNOWN_NAMES.length; i++)
+            KNOWN_BYTES[i] = KNOWN_NAMES[i].getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Getter
+    @Nullable
+    private String cmd;
+
+    @Getter
+    @Nullable
+    private String evt;
+
+    /**
+     * The nonce of the command this message answers, or null for events
+     */
+    @Getter
+    @Nullable
+    private String nonce;
+
+    private byte[] bytes;
+    private int offset;
+    private int length;
+    private int dataStart;
+    private int dataEnd;
+
+    /**
+     * Decode a raw payload into this message, replacing its previous contents.
+     * The payload is not copied, and must not change until the message is no longer used
+     *
+     * @param bytes The array holding the payload
+     * @param offset The offset of the payload in the array
+     * @param length The length of the payload
+     * @return False if the payload is not a valid JSON object
+     */
+    public boolean decode(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        this.cmd = null;
+        this.evt = null;
+        this.nonce = null;
+        this.dataStart = -1;
+        this.dataEnd = -1;
+
+        // An empty frame is an empty message
+        if (length == 0)
+            return true;
+
+        int end = offset + length;
+        int i = this.skipWhitespace(offset, end);
+
+        if (i >= end || bytes[i] != '{')
+            return false;
+
+        i = this.skipWhitespace(i + 1, end);
+
+        if (i < end && bytes[i] == '}')
+            return this.skipWhitespace(i + 1, end) == end;
+
+        while (i < end) {
+            if (bytes[i] != '"')
+                return false;
+
+            int keyStart = i + 1;
+            i = this.skipString(i, end);
+
+            if (i < 0)
+                return false;
+
+            int keyEnd = i - 1;
+            i = this.skipWhitespace(i, end);
+
+            if (i >= end || bytes[i] != ':')
+                return false;
+
+            int valueStart = this.skipWhitespace(i + 1, end);
+            int valueEnd = this.skipValue(valueStart, end);
+
+            if (valueEnd < 0)
+                return false;
+
+            if (this.keyEquals(keyStart, keyEnd, "cmd")) {
+                this.cmd = this.readName(valueStart, valueEnd);
+            } else if (this.keyEquals(keyStart, keyEnd, "evt")) {
+                this.evt = this.readName(valueStart, valueEnd);
+            } else if (this.keyEquals(keyStart, keyEnd, "nonce")) {
+                this.nonce = this.readName(valueStart, valueEnd);
+            } else if (this.keyEquals(keyStart, keyEnd, "data")) {
+                this.dataStart = valueStart;
+                this.dataEnd = valueEnd;
+            }
+
+            i = this.skipWhitespace(valueEnd, end);
+
+            if (i >= end)
+                return false;
+
+            if (bytes[i] == '}')
+                return this.skipWhitespace(i + 1, end) == end;
+
+            if (bytes[i] != ',')
+                return false;
+
+            i = this.skipWhitespace(i + 1, end);
+        }
+
+        return false;
+    }
+
+    /**
+     * Decode the {@code data} object of the message into one of the SDK models
+     *
+     * @param codec The codec to decode with
+     * @param type The model to decode, see {@link JsonCodec#read(byte[], int, int, Class)}
+     * @return The decoded data, or null if the message has no data
+     * @throws JsonCodecException Thrown when the data can't be decoded
+     */
+    @Nullable
+    public <T> T readData(JsonCodec codec, Class<T> type) {
+        if (this.dataStart < 0)
+            return null;
+
+        return codec.read(this.bytes, this.dataStart, this.dataEnd - this.dataStart, type);
+    }
+
+    /**
+     * Decode the complete message into one of the SDK models
+     *
+     * @param codec The codec to decode with
+     * @param type The model to decode, see {@link JsonCodec#read(byte[], int, int, Class)}
+     * @return The decoded message, or null if the message is empty
+     * @throws JsonCodecException Thrown when the message can't be decoded
+     */
+    @Nullable
+    public <T> T read(JsonCodec codec, Class<T> type) {
+        if (this.length == 0)
+            return null;
+
+        return codec.read(this.bytes, this.offset, this.length, type);
+    }
+
+    /**
+     * @return The raw message
+     */
+    @Override
+    public String toString() {
+        return new String(this.bytes, this.offset, this.length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read a string value, preferring one of the {@link #KNOWN_NAMES}. Numbers are returned as written, null as null
+     */
+    @Nullable
+    private String readName(int start, int end) {
+        if (this.bytes[start] != '"')
+            return this.bytes[start] == 'n' ? null : new String(this.bytes, start, end - start, StandardCharsets.US_ASCII);
+
+        int contentStart = start + 1;
+        int contentEnd = end - 1;
+
+        for (int i = contentStart; i < contentEnd; i++) {
+            // Escaped strings are rare, and can't be one of the known names
+            if (this.bytes[i] == '\\')
+                return this.readEscaped(contentStart, contentEnd);
+        }
+
+        for (int i = 0; i < KNOWN_BYTES.length; i++) {
+            if (this.regionEquals(contentStart, contentEnd, KNOWN_BYTES[i]))
+                return KNOWN_NAMES[i];
+        }
+
+        return new String(this.bytes, contentStart, contentEnd - contentStart, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decode the contents of a string with escapes. The escapes were already checked by {@link #skipString(int, int)}
+     */
+    private String readEscaped(int start, int end) {
+        StringBuilder builder = new StringBuilder(end - start);
+        int runStart = start;
+
+        for (int i = start; i < end; i++) {
+            if (this.bytes[i] != '\\')
+                continue;
+
+            // A backslash is never part of a multi-byte character, so the bytes before it are complete characters
+            builder.append(new String(this.bytes, runStart, i - runStart, StandardCharsets.UTF_8));
+            byte escape = this.bytes[++i];
+
+            switch (escape) {
+                case 'b': builder.append('\b'); break;
+                case 'f': builder.append('\f'); break;
+                case 'n': builder.append('\n'); break;
+                case 'r': builder.append('\r'); break;
+                case 't': builder.append('\t'); break;
+                case 'u':
+                    int value = 0;
+
+                    for (int j = i + 1; j <= i + 4; j++)
+                        value = (value << 4) | Character.digit(this.bytes[j], 16);
+
+                    builder.append((char) value);
+                    i += 4;
+                    break;
+                default:
+                    // A quote, backslash or slash
+                    builder.append((char) escape);
+            }
+
+            runStart = i + 1;
+        }
+
+        builder.append(new String(this.bytes, runStart, end - runStart, StandardCharsets.UTF_8));
+        return builder.toString();
+    }
+
+    private boolean keyEquals(int start, int end, String key) {
+        if (end - start != key.length())
+            return false;
+
+        for (int i = 0; i < key.length(); i++) {
+            if (this.bytes[start + i] != key.charAt(i))
+                return false;
+        }
+
+        return true;
+    }
+
+    private boolean regionEquals(int start, int end, byte[] expected) {
+        if (end - start != expected.length)
+            return false;
+
+        for (int i = 0; i < expected.length; i++) {
+            if (this.bytes[start + i] != expected[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    private int skipWhitespace(int i, int end) {
+        while (i < end && (this.bytes[i] == ' ' || this.bytes[i] == '\t' || this.bytes[i] == '\n' || this.bytes[i] == '\r'))
+            i++;
+
+        return i;
+    }
+
+    /**
+     * Skip a string, starting at its opening quote, checking its escapes along the way
+     *
+     * @return The index after the closing quote, or -1 if the string is not terminated or has an invalid escape
+     */
+    private int skipString(int i, int end) {
+        for (i = i + 1; i < end; i++) {
+            byte b = this.bytes[i];
+
+            if (b == '"')
+                return i + 1;
+
+            if (b != '\\')
+                continue;
+
+            if (++i >= end)
+                return -1;
+
+            switch (this.bytes[i]) {
+                case '"':
+                case '\\':
+                case '/':
+                case 'b':
+                case 'f':
+                case 'n':
+                case 'r':
+                case 't':
+                    break;
+                case 'u':
+                    if (i + 4 >= end)
+                        return -1;
+
+                    for (int j = i + 1; j <= i + 4; j++) {
+                        if (Character.digit(this.bytes[j], 16) < 0)
+                            return -1;
+                    }
+
+                    i += 4;
+                    break;
+                default:
+                    return -1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Skip a complete value, without decoding it
+     *
+     * @return The index after the value, or -1 if the value is malformed
+     */
+    private int skipValue(int i, int end) {
+        if (i >= end)
+            return -1;
+
+        byte first = this.bytes[i];
+
+        if (first == '"')
+            return this.skipString(i, end);
+
+        if (first == '{' || first == '[') {
+            int depth = 0;
+
+            while (i < end) {
+                byte b = this.bytes[i];
+
+                if (b == '"') {
+                    i = this.skipString(i, end);
+
+                    if (i < 0)
+                        return -1;
+
+                    continue;
+                }
+
+                if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    if (--depth == 0)
+                        return i + 1;
+                }
+
+                i++;
+            }
+
+            return -1;
+        }
+
+        // A number, true, false or null
+        int start = i;
+
+        while (i < end) {
+            byte b = this.bytes[i];
+
+            if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\t' || b == '\n' || b == '\r')
+                break;
+
+            i++;
+        }
+
+        return i > start ? i : -1;
+    }
+}
@@ -50,12 +50,19 @@ public class MessageFrame {
     /**
      * Retrieve the header from the RPC packet
      *
-     * @return True if the header was processed
+     * @return True if the header was processed, false if it is corrupt
      */
     public boolean parseHeader() {
         try (ByteArrayInputStream inputStream = new ByteArrayInputStream(this.headerBuffer)) {
-            this.opCode = OpCode.values()[this.readInt(inputStream)];
-            this.length = this.readInt(inputStream);
+            int code = this.readInt(inputStream);
+            int size = this.readInt(inputStream);
+
+            // Reject headers that can't be valid, instead of reading garbage or overflowing the message buffer
+            if (code < 0 || code >= OpCode.values().length || size < 0 || size > this.messageBuffer.length)
+                return false;
+
+            this.opCode = OpCode.values()[code];
+            this.length = size;
             return true;
         } catch (IOException ex) {
             System.out.println("Failed to parse header: " + ex.getMessage());
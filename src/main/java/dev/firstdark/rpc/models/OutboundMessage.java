@@ -0,0 +1,77 @@
+package dev.firstdark.rpc.models;
+
+import dev.firstdark.rpc.enums.OpCode;
+import lombok.Getter;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author HypherionSA
+ * A serialized command waiting to be written to Discord, with the nonce it was sent with.
+ * The payload can be split over several buffers, which are written in order as a single frame
+ */
+@ApiStatus.Internal
+@Getter
+public class OutboundMessage {
+
+    private final long nonce;
+    private final OpCode opCode;
+    private final ByteBuffer[] payload;
+
+    // When the message was queued, for the outbound latency metrics
+    private final long queuedAt = System.nanoTime();
+
+    /**
+     * Messages with the same key replace each other while they wait to be sent, only the latest is kept. Null to always keep the message
+     */
+    @Nullable
+    private final String compactionKey;
+
+    /**
+     * The {@link System#nanoTime()} after which the message is dropped instead of sent, or 0 to never expire
+     */
+    private final long expiresAt;
+
+    public OutboundMessage(long nonce, OpCode opCode, ByteBuffer[] payload, @Nullable String compactionKey, long expiresAt) {
+        this.nonce = nonce;
+        this.opCode = opCode;
+        this.payload = payload;
+        this.compactionKey = compactionKey;
+        this.expiresAt = expiresAt;
+    }
+
+    public OutboundMessage(long nonce, OpCode opCode, ByteBuffer[] payload) {
+        this(nonce, opCode, payload, null, 0);
+    }
+
+    public OutboundMessage(long nonce, ByteBuffer[] payload) {
+        this(nonce, OpCode.FRAME, payload);
+    }
+
+    public OutboundMessage(long nonce, byte[] payload) {
+        this(nonce, new ByteBuffer[] { ByteBuffer.wrap(payload) });
+    }
+
+    /**
+     * @return The number of payload bytes
+     */
+    public int size() {
+        int size = 0;
+
+        for (ByteBuffer buffer : this.payload)
+            size += buffer.remaining();
+
+        return size;
+    }
+
+    /**
+     * @param now The current {@link System#nanoTime()}
+     * @return True if the message should no longer be sent
+     */
+    public boolean isExpired(long now) {
+        return this.expiresAt != 0 && now - this.expiresAt > 0;
+    }
+
+}
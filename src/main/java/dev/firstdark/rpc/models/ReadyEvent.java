@@ -0,0 +1,28 @@
+package dev.firstdark.rpc.models;
+
+import com.google.gson.annotations.SerializedName;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * @author HypherionSA
+ * Event sent by Discord once the handshake completed. Only the fields the SDK uses are decoded
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+public class ReadyEvent {
+
+    /**
+     * The RPC protocol version
+     */
+    @SerializedName("v")
+    private int version;
+
+    /**
+     * The user that is logged into the Discord client
+     */
+    private User user;
+
+}
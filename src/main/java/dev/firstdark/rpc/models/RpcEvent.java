@@ -0,0 +1,105 @@
+package dev.firstdark.rpc.models;
+
+import dev.firstdark.rpc.enums.ErrorCode;
+import dev.firstdark.rpc.enums.RpcEventType;
+import lombok.Getter;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * @author HypherionSA
+ * An inbound event, as published by {@link dev.firstdark.rpc.handlers.RpcEventPublisher}
+ */
+@Getter
+public final class RpcEvent {
+
+    /**
+     * What kind of event this is
+     */
+    @NotNull
+    private final RpcEventType type;
+
+    /**
+     * The name of the RPC event, for example {@code ACTIVITY_JOIN}, or null for connection events
+     */
+    @Nullable
+    private final String eventName;
+
+    /**
+     * The data of the event. See {@link RpcEventType} for what each type carries
+     */
+    @Nullable
+    private final Object data;
+
+    /**
+     * The error code, for {@link RpcEventType#DISCONNECTED} and {@link RpcEventType#ERRORED}
+     */
+    @Nullable
+    private final ErrorCode errorCode;
+
+    /**
+     * The error message, for {@link RpcEventType#DISCONNECTED} and {@link RpcEventType#ERRORED}
+     */
+    @Nullable
+    private final String message;
+
+    private RpcEvent(RpcEventType type, @Nullable String eventName, @Nullable Object data, @Nullable ErrorCode errorCode, @Nullable String message) {
+        this.type = type;
+        this.eventName = eventName;
+        this.data = data;
+        this.errorCode = errorCode;
+        this.message = message;
+    }
+
+    /**
+     * Get the data of the event as a specific type
+     *
+     * @param type The expected type of the data
+     * @return The data, or null if the event has no data, or the data is of another type
+     */
+    @Nullable
+    public <T> T getData(@NotNull Class<T> type) {
+        return type.isInstance(this.data) ? type.cast(this.data) : null;
+    }
+
+    @ApiStatus.Internal
+    public static RpcEvent ready(User user) {
+        return new RpcEvent(RpcEventType.READY, "READY", user, null, null);
+    }
+
+    @ApiStatus.Internal
+    public static RpcEvent disconnected(ErrorCode errorCode, @Nullable String message) {
+        return new RpcEvent(RpcEventType.DISCONNECTED, null, null, errorCode, message);
+    }
+
+    @ApiStatus.Internal
+    public static RpcEvent errored(ErrorCode errorCode, @Nullable String message) {
+        return new RpcEvent(RpcEventType.ERRORED, "ERROR", null, errorCode, message);
+    }
+
+    @ApiStatus.Internal
+    public static RpcEvent joinGame(String secret) {
+        return new RpcEvent(RpcEventType.JOIN_GAME, "ACTIVITY_JOIN", secret, null, null);
+    }
+
+    @ApiStatus.Internal
+    public static RpcEvent spectateGame(String secret) {
+        return new RpcEvent(RpcEventType.SPECTATE_GAME, "ACTIVITY_SPECTATE", secret, null, null);
+    }
+
+    @ApiStatus.Internal
+    public static RpcEvent joinRequest(DiscordJoinRequest request) {
+        return new RpcEvent(RpcEventType.JOIN_REQUEST, "ACTIVITY_JOIN_REQUEST", request, null, null);
+    }
+
+    @ApiStatus.Internal
+    public static RpcEvent event(String eventName, @Nullable Object data) {
+        return new RpcEvent(RpcEventType.EVENT, eventName, data, null, null);
+    }
+
+    @Override
+    public String toString() {
+        return "RpcEvent{type=" + this.type + ", eventName=" + this.eventName + (this.errorCode != null ? ", errorCode=" + this.errorCode + ", message=" + this.message : "") + "}";
+    }
+}
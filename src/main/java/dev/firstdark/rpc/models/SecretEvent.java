@@ -0,0 +1,21 @@
+package dev.firstdark.rpc.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * @author HypherionSA
+ * Event sent when the user accepted a Join or Spectate invite
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+public class SecretEvent {
+
+    /**
+     * The join or spectate secret from the presence of the user that sent the invite
+     */
+    private String secret;
+
+}
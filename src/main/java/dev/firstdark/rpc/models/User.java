@@ -14,6 +14,7 @@ import lombok.NoArgsConstructor;
 @Getter
 public class User {
 
+    @SerializedName("id")
     private String userId;
     private String username;
 
@@ -0,0 +1,332 @@
+package dev.firstdark.rpc.presence;
+
+import dev.firstdark.rpc.enums.ActivityType;
+import dev.firstdark.rpc.enums.PartyPrivacy;
+import dev.firstdark.rpc.models.DiscordRichPresence;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+
+/**
+ * @author HypherionSA
+ * A reusable, mutable Rich Presence, for games that update their presence every frame.
+ * <p>
+ * Setters only mark a field as changed when its value is actually different, and never allocate.
+ * Pass it to {@link dev.firstdark.rpc.DiscordRpc#updatePresence(MutablePresence)} once, and keep mutating it from any thread.
+ * The SDK copies it on the IO thread whenever something changed, so mutations never wait for serialization.
+ * <p>
+ * Every setter is atomic on its own. To change several fields at once, without the SDK sending a half-updated presence in between,
+ * synchronize on the presence:
+ * <pre>{@code
+ * synchronized (presence) {
+ *     presence.setState("In a match").setPartySize(2, 4);
+ * }
+ * }</pre>
+ */
+public class MutablePresence {
+
+    // Sections of the activity, used to track what changed
+    public static final int STATE = 1;
+    public static final int DETAILS = 1 << 1;
+    public static final int TIMESTAMPS = 1 << 2;
+    public static final int ASSETS = 1 << 3;
+    public static final int PARTY = 1 << 4;
+    public static final int SECRETS = 1 << 5;
+    public static final int BUTTONS = 1 << 6;
+    public static final int ACTIVITY = 1 << 7;
+    public static final int ALL = (1 << 8) - 1;
+
+    // Package-private, so the PresenceEncoder can read the IO thread's copy directly
+    String state;
+    String details;
+    long startTimestamp;
+    long endTimestamp;
+
+    String largeImageKey;
+    String largeImageText;
+    String smallImageKey;
+    String smallImageText;
+
+    String partyId;
+    int partySize;
+    int partyMax;
+    PartyPrivacy privacy = PartyPrivacy.PRIVATE;
+
+    String matchSecret;
+    String joinSecret;
+    String spectateSecret;
+
+    ActivityType activityType = ActivityType.PLAYING;
+    boolean instance;
+
+    final String[] buttonLabels = new String[2];
+    final String[] buttonUrls = new String[2];
+
+    // The sections that changed since the last time the SDK sent this presence
+    private int dirty = ALL;
+
+    @Nullable
+    private volatile Runnable changeListener;
+
+    public synchronized MutablePresence setState(@Nullable String state) {
+        if (!Objects.equals(this.state, state)) {
+            this.state = state;
+            this.markDirty(STATE);
+        }
+        return this;
+    }
+
+    public synchronized MutablePresence setDetails(@Nullable String details) {
+        if (!Objects.equals(this.details, details)) {
+            this.details = details;
+            this.markDirty(DETAILS);
+        }
+        return this;
+    }
+
+    public synchronized MutablePresence setStartTimestamp(long startTimestamp) {
+        if (this.startTimestamp != startTimestamp) {
+            this.startTimestamp = startTimestamp;
+            this.markDirty(TIMESTAMPS);
+        }
+        return this;
+    }
+
+    public synchronized MutablePresence setEndTimestamp(long endTimestamp) {
+        if (this.endTimestamp != endTimestamp) {
+            this.endTimestamp = endTimestamp;
+            this.markDirty(TIMESTAMPS);
+        }
+        return this;
+    }
+
+    public synchronized MutablePresence setLargeImage(@Nullable String key, @Nullable String text) {
+        if (!Objects.equals(this.largeImageKey, key) || !Objects.equals(this.largeImageText, text)) {
+            this.largeImageKey = key;
+            this.largeImageText = text;
+            this.markDirty(ASSETS);
+        }
+        return this;
+    }
+
+    public synchronized MutablePresence setSmallImage(@Nullable String key, @Nullable String text) {
+        if (!Objects.equals(this.smallImageKey, key) || !Objects.equals(this.smallImageText, text)) {
+            this.smallImageKey = key;
+            this.smallImageText = text;
+            this.markDirty(ASSETS);
+        }
+        return this;
+    }
+
+    public synchronized MutablePresence setPartyId(@Nullable String partyId) {
+        if (!Objects.equals(this.partyId, partyId)) {
+            this.partyId = partyId;
+            this.markDirty(PARTY);
+        }
+        return this;
+    }
+
+    public synchronized MutablePresence setPartySize(int partySize, int partyMax) {
+        if (this.partySize != partySize || this.partyMax != partyMax) {
+            this.partySize = partySize;
+            this.partyMax = partyMax;
+            this.markDirty(PARTY);
+        }
+        return this;
+    }
+
+    public synchronized MutablePresence setPrivacy(@NotNull PartyPrivacy privacy) {
+        if (this.privacy != privacy) {
+            this.privacy = privacy;
+            this.markDirty(PARTY);
+        }
+        return this;
+    }
+
+    public synchronized MutablePresence setSecrets(@Nullable String matchSecret, @Nullable String joinSecret, @Nullable String spectateSecret) {
+        if (!Objects.equals(this.matchSecret, matchSecret) || !Objects.equals(this.joinSecret, joinSecret) || !Objects.equals(this.spectateSecret, spectateSecret)) {
+            this.matchSecret = matchSecret;
+            this.joinSecret = joinSecret;
+            this.spectateSecret = spectateSecret;
+            this.markDirty(SECRETS);
+        }
+        return this;
+    }
+
+    /**
+     * Set one of the two buttons
+     *
+     * @param index The button slot, 0 or 1
+     * @param label The label of the button, or null to remove it
+     * @param url The URL of the button, or null to remove it
+     */
+    public synchronized MutablePresence setButton(int index, @Nullable String label, @Nullable String url) {
+        if (index < 0 || index > 1)
+            throw new IndexOutOfBoundsException("Only 2 buttons are supported");
+
+        if (!Objects.equals(this.buttonLabels[index], label) || !Objects.equals(this.buttonUrls[index], url)) {
+            this.buttonLabels[index] = label;
+            this.buttonUrls[index] = url;
+            this.markDirty(BUTTONS);
+        }
+        return this;
+    }
+
+    public synchronized MutablePresence clearButtons() {
+        this.setButton(0, null, null);
+        this.setButton(1, null, null);
+        return this;
+    }
+
+    public synchronized MutablePresence setActivityType(@NotNull ActivityType activityType) {
+        if (this.activityType != activityType) {
+            this.activityType = activityType;
+            this.markDirty(ACTIVITY);
+        }
+        return this;
+    }
+
+    public synchronized MutablePresence setInstance(boolean instance) {
+        if (this.instance != instance) {
+            this.instance = instance;
+            this.markDirty(ACTIVITY);
+        }
+        return this;
+    }
+
+    /**
+     * Replace every field with the values from an immutable presence
+     *
+     * @param presence The presence to copy
+     */
+    public synchronized MutablePresence set(@NotNull DiscordRichPresence presence) {
+        this.setState(presence.getState());
+        this.setDetails(presence.getDetails());
+        this.setStartTimestamp(presence.getStartTimestamp());
+        this.setEndTimestamp(presence.getEndTimestamp());
+        this.setLargeImage(presence.getLargeImageKey(), presence.getLargeImageText());
+        this.setSmallImage(presence.getSmallImageKey(), presence.getSmallImageText());
+        this.setPartyId(presence.getPartyId());
+        this.setPartySize(presence.getPartySize(), presence.getPartyMax());
+        this.setPrivacy(presence.getPrivacy());
+        this.setSecrets(presence.getMatchSecret(), presence.getJoinSecret(), presence.getSpectateSecret());
+        this.setActivityType(presence.getActivityType());
+        this.setInstance(presence.isInstance());
+
+        // Like DiscordRichPresence.toJson, invalid buttons are skipped before taking the first two
+        int slot = 0;
+
+        for (DiscordRichPresence.RPCButton button : presence.getButtons()) {
+            if (slot < 2 && button != null && button.isValid())
+                this.setButton(slot++, button.getLabel(), button.getUrl());
+        }
+
+        while (slot < 2)
+            this.setButton(slot++, null, null);
+
+        return this;
+    }
+
+    /**
+     * @return True if anything changed since the SDK last sent this presence
+     */
+    public synchronized boolean isChanged() {
+        return this.dirty != 0;
+    }
+
+    /**
+     * Force the whole presence to be sent again, even if nothing changed
+     */
+    public synchronized void markChanged() {
+        this.markDirty(ALL);
+    }
+
+    /**
+     * Internal method
+     * Called when the presence goes from unchanged to changed. Used by the SDK to wake up the IO thread
+     *
+     * @param changeListener The listener, or null to remove it
+     */
+    @ApiStatus.Internal
+    public void setChangeListener(@Nullable Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Internal method
+     * Copy every field to another instance, and reset the changed sections
+     *
+     * @param target The instance to copy to
+     * @return The sections that changed since the last copy
+     */
+    @ApiStatus.Internal
+    public synchronized int copyTo(@NotNull MutablePresence target) {
+        target.state = this.state;
+        target.details = this.details;
+        target.startTimestamp = this.startTimestamp;
+        target.endTimestamp = this.endTimestamp;
+        target.largeImageKey = this.largeImageKey;
+        target.largeImageText = this.largeImageText;
+        target.smallImageKey = this.smallImageKey;
+        target.smallImageText = this.smallImageText;
+        target.partyId = this.partyId;
+        target.partySize = this.partySize;
+        target.partyMax = this.partyMax;
+        target.privacy = this.privacy;
+        target.matchSecret = this.matchSecret;
+        target.joinSecret = this.joinSecret;
+        target.spectateSecret = this.spectateSecret;
+        target.activityType = this.activityType;
+        target.instance = this.instance;
+        System.arraycopy(this.buttonLabels, 0, target.buttonLabels, 0, 2);
+        System.arraycopy(this.buttonUrls, 0, target.buttonUrls, 0, 2);
+
+        int changed = this.dirty;
+        this.dirty = 0;
+        return changed;
+    }
+
+    /**
+     * Convert to an immutable {@link DiscordRichPresence}
+     *
+     * @return The new presence
+     */
+    public synchronized DiscordRichPresence toRichPresence() {
+        DiscordRichPresence.DiscordRichPresenceBuilder builder = DiscordRichPresence.builder()
+                .state(this.state)
+                .details(this.details)
+                .startTimestamp(this.startTimestamp)
+                .endTimestamp(this.endTimestamp)
+                .largeImageKey(this.largeImageKey)
+                .largeImageText(this.largeImageText)
+                .smallImageKey(this.smallImageKey)
+                .smallImageText(this.smallImageText)
+                .partyId(this.partyId)
+                .partySize(this.partySize)
+                .partyMax(this.partyMax)
+                .privacy(this.privacy)
+                .matchSecret(this.matchSecret)
+                .joinSecret(this.joinSecret)
+                .spectateSecret(this.spectateSecret)
+                .activityType(this.activityType)
+                .instance(this.instance);
+
+        for (int i = 0; i < 2; i++) {
+            if (this.buttonLabels[i] != null && this.buttonUrls[i] != null)
+                builder.button(DiscordRichPresence.RPCButton.of(this.buttonLabels[i], this.buttonUrls[i]));
+        }
+
+        return builder.build();
+    }
+
+    private void markDirty(int section) {
+        boolean wasClean = this.dirty == 0;
+        this.dirty |= section;
+
+        Runnable listener = this.changeListener;
+        if (wasClean && listener != null)
+            listener.run();
+    }
+}
@@ -0,0 +1,275 @@
+package dev.firstdark.rpc.presence;
+
+import dev.firstdark.rpc.enums.ActivityType;
+import dev.firstdark.rpc.enums.PartyPrivacy;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author HypherionSA
+ * Builds one presence out of named layers, for games where different subsystems own different parts of the presence.
+ * Every subsystem writes only its own fields to its {@link PresenceLayer}, and the composer merges the layers section by section:
+ * of the layers that own a section, the one with the highest precedence wins.
+ * <pre>{@code
+ * PresenceComposer composer = new PresenceComposer(500);
+ * PresenceLayer lobby = composer.layer("lobby", 10);
+ * PresenceLayer match = composer.layer("match", 20);
+ *
+ * rpc.updatePresence(composer);
+ *
+ * lobby.setPartySize(2, 4).setState("In the lobby");
+ * match.setState("Wave 3 of 10");
+ * }</pre>
+ * Layers can be written from any thread without locking. The SDK merges them at most once per interval, so however many
+ * subsystems write in the meantime, Discord receives a single SET_ACTIVITY, and only when the merged presence changed
+ */
+public class PresenceComposer {
+
+    /**
+     * The default minimum time between two merges, in milliseconds
+     */
+    public static final long DEFAULT_INTERVAL_MS = 1000L;
+
+    private final List<PresenceLayer> layers = new CopyOnWriteArrayList<>();
+    private final AtomicInteger dirty = new AtomicInteger();
+    private final MutablePresence presence = new MutablePresence();
+
+    private volatile long intervalNanos;
+    private long lastFlush;
+    private boolean flushed;
+
+    @Nullable
+    private volatile Runnable changeListener;
+
+    /**
+     * Create a composer that merges at most once per {@link #DEFAULT_INTERVAL_MS}
+     */
+    public PresenceComposer() {
+        this(DEFAULT_INTERVAL_MS);
+    }
+
+    /**
+     * Create a composer
+     *
+     * @param intervalMs The minimum time between two merges, in milliseconds
+     */
+    public PresenceComposer(long intervalMs) {
+        this.setIntervalMs(intervalMs);
+    }
+
+    /**
+     * Get a layer, creating it if it doesn't exist yet
+     *
+     * @param name The name of the layer
+     * @param precedence The precedence of a new layer, for every section. Of the layers that own a section, the highest precedence wins.
+     *                   When two layers have the same precedence, the layer that was created first wins
+     * @return The layer
+     */
+    public synchronized PresenceLayer layer(@NotNull String name, int precedence) {
+        PresenceLayer layer = this.getLayer(name);
+
+        if (layer == null) {
+            layer = new PresenceLayer(name, precedence, this);
+            this.layers.add(layer);
+        }
+
+        return layer;
+    }
+
+    /**
+     * @param name The name of the layer
+     * @return The layer, or null if it doesn't exist
+     */
+    @Nullable
+    public PresenceLayer getLayer(@NotNull String name) {
+        for (PresenceLayer layer : this.layers) {
+            if (layer.getName().equals(name))
+                return layer;
+        }
+
+        return null;
+    }
+
+    /**
+     * Remove a layer, and give all its sections back to the other layers
+     *
+     * @param name The name of the layer
+     */
+    public synchronized void removeLayer(@NotNull String name) {
+        PresenceLayer layer = this.getLayer(name);
+
+        if (layer != null && this.layers.remove(layer))
+            this.changed(MutablePresence.ALL);
+    }
+
+    /**
+     * @return The minimum time between two merges, in milliseconds
+     */
+    public long getIntervalMs() {
+        return TimeUnit.NANOSECONDS.toMillis(this.intervalNanos);
+    }
+
+    /**
+     * Change the minimum time between two merges
+     *
+     * @param intervalMs The interval in milliseconds. 0 merges on every pass of the IO thread
+     */
+    public void setIntervalMs(long intervalMs) {
+        if (intervalMs < 0)
+            throw new IllegalArgumentException("Interval must not be negative, got " + intervalMs);
+
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+    }
+
+    /**
+     * @return The merged presence, as of the last merge. Must not be modified
+     */
+    public MutablePresence getPresence() {
+        return this.presence;
+    }
+
+    /**
+     * Internal method
+     * Called when the composer goes from unchanged to changed. Used by the SDK to wake up the IO thread
+     *
+     * @param changeListener The listener, or null to remove it
+     */
+    @ApiStatus.Internal
+    public void setChangeListener(@Nullable Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Internal method
+     * Merge the sections that changed into {@link #getPresence()}, unless the last merge was less than an interval ago.
+     * The merged presence is only marked as changed when a value is actually different
+     *
+     * @param now The current {@link System#nanoTime()}
+     * @return True if the layers were merged
+     */
+    @ApiStatus.Internal
+    public synchronized boolean flush(long now) {
+        if (this.dirty.get() == 0 || (this.flushed && now - this.lastFlush < this.intervalNanos))
+            return false;
+
+        this.lastFlush = now;
+        this.flushed = true;
+
+        int sections = this.dirty.getAndSet(0);
+
+        // Merge every section in one go, so the SDK never sends a presence that is only partly merged
+        synchronized (this.presence) {
+            for (int i = 0; i < PresenceLayer.SECTIONS; i++) {
+                if ((sections & (1 << i)) != 0)
+                    this.apply(1 << i, this.resolve(i));
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Internal method
+     * Used by the SDK to wake up in time for the next merge
+     *
+     * @param now The current {@link System#nanoTime()}
+     * @return The nanoseconds until changed layers can be merged, or {@link Long#MAX_VALUE} if nothing changed
+     */
+    @ApiStatus.Internal
+    public synchronized long nanosUntilFlush(long now) {
+        if (this.dirty.get() == 0)
+            return Long.MAX_VALUE;
+
+        return this.flushed ? Math.max(0, this.lastFlush + this.intervalNanos - now) : 0;
+    }
+
+    /**
+     * Internal method
+     * Mark sections as changed. Called by the layers, from any thread
+     *
+     * @param sections The sections that changed
+     */
+    void changed(int sections) {
+        int previous;
+
+        do {
+            previous = this.dirty.get();
+        } while (!this.dirty.compareAndSet(previous, previous | sections));
+
+        Runnable listener = this.changeListener;
+        if (previous == 0 && listener != null)
+            listener.run();
+    }
+
+    /**
+     * Internal method
+     * Find the values of the layer that wins a section
+     *
+     * @param index The index of the section
+     * @return The values of the winning layer, or null if no layer owns the section
+     */
+    @Nullable
+    private Object[] resolve(int index) {
+        Object[] winner = null;
+        int best = Integer.MIN_VALUE;
+
+        for (PresenceLayer layer : this.layers) {
+            Object[] values = layer.section(index);
+            int precedence = layer.getPrecedence(1 << index);
+
+            if (values != null && (winner == null || precedence > best)) {
+                winner = values;
+                best = precedence;
+            }
+        }
+
+        return winner;
+    }
+
+    /**
+     * Internal method
+     * Copy the values of a section to the merged presence
+     */
+    private void apply(int section, @Nullable Object[] values) {
+        Object[] v = values == null ? PresenceLayer.defaults(section) : values;
+
+        switch (section) {
+            case MutablePresence.STATE:
+                this.presence.setState((String) v[0]);
+                break;
+            case MutablePresence.DETAILS:
+                this.presence.setDetails((String) v[0]);
+                break;
+            case MutablePresence.TIMESTAMPS:
+                this.presence.setStartTimestamp((Long) v[0]);
+                this.presence.setEndTimestamp((Long) v[1]);
+                break;
+            case MutablePresence.ASSETS:
+                this.presence.setLargeImage((String) v[0], (String) v[1]);
+                this.presence.setSmallImage((String) v[2], (String) v[3]);
+                break;
+            case MutablePresence.PARTY:
+                this.presence.setPartyId((String) v[0]);
+                this.presence.setPartySize((Integer) v[1], (Integer) v[2]);
+                this.presence.setPrivacy((PartyPrivacy) v[3]);
+                break;
+            case MutablePresence.SECRETS:
+                this.presence.setSecrets((String) v[0], (String) v[1], (String) v[2]);
+                break;
+            case MutablePresence.BUTTONS:
+                this.presence.setButton(0, (String) v[0], (String) v[1]);
+                this.presence.setButton(1, (String) v[2], (String) v[3]);
+                break;
+            case MutablePresence.ACTIVITY:
+                this.presence.setActivityType((ActivityType) v[0]);
+                this.presence.setInstance((Boolean) v[1]);
+                break;
+        }
+    }
+}
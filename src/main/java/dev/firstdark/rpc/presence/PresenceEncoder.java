@@ -0,0 +1,253 @@
+package dev.firstdark.rpc.presence;
+
+import dev.firstdark.rpc.json.JsonByteWriter;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * @author HypherionSA
+ * Encodes a {@link MutablePresence} into a SET_ACTIVITY payload, keeping the UTF-8 bytes of every activity section.
+ * Only the sections that changed are encoded again, and the payload is assembled from the cached bytes,
+ * so the cost of an update scales with what changed, not with the size of the presence.
+ * <p>
+ * Not thread safe. The SDK uses one encoder on the IO thread
+ */
+@ApiStatus.Internal
+public class PresenceEncoder {
+
+    private static final int[] SECTIONS = {
+            MutablePresence.STATE, MutablePresence.DETAILS, MutablePresence.TIMESTAMPS, MutablePresence.ASSETS,
+            MutablePresence.PARTY, MutablePresence.SECRETS, MutablePresence.BUTTONS, MutablePresence.ACTIVITY
+    };
+
+    // The SET_ACTIVITY command, around the nonce, pid and activity
+    static final String NONCE_PREFIX = "{\"nonce\":";
+    static final String PID_PREFIX = ",\"cmd\":\"SET_ACTIVITY\",\"args\":{\"pid\":";
+    static final String ACTIVITY_PREFIX = ",\"activity\":";
+    static final String SUFFIX = "}}";
+    private static final byte[] SUFFIX_BYTES = SUFFIX.getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[][] fragments = new byte[SECTIONS.length][];
+    private final JsonByteWriter section = new JsonByteWriter(256);
+    private final JsonByteWriter payload = new JsonByteWriter(1024);
+
+    public PresenceEncoder() {
+        Arrays.fill(this.fragments, new byte[0]);
+    }
+
+    /**
+     * Encode a presence
+     *
+     * @param presence The presence to encode. Must not be modified during the call
+     * @param changed The sections that changed since the last call, see {@link MutablePresence#copyTo(MutablePresence)}
+     * @param pid The process ID of the game
+     * @param nonce The nonce of the command
+     * @return The complete JSON payload
+     */
+    public byte[] encode(MutablePresence presence, int changed, long pid, long nonce) {
+        this.update(presence, changed);
+
+        JsonByteWriter out = this.payload;
+        out.reset();
+        out.writeAscii(NONCE_PREFIX).writeLong(nonce).writeAscii(PID_PREFIX).writeLong(pid).writeAscii(ACTIVITY_PREFIX);
+        this.writeActivity(out);
+        out.writeAscii(SUFFIX);
+        return out.toByteArray();
+    }
+
+    /**
+     * Wrap an activity that was serialized elsewhere in a SET_ACTIVITY command, without copying it
+     *
+     * @param activity The activity JSON object
+     * @param pid The process ID of the game
+     * @param nonce The nonce of the command
+     * @return The command, as buffers to be written in order
+     */
+    public static ByteBuffer[] wrapActivity(ByteBuffer activity, long pid, long nonce) {
+        JsonByteWriter header = new JsonByteWriter(96);
+        header.writeAscii(NONCE_PREFIX).writeLong(nonce).writeAscii(PID_PREFIX).writeLong(pid).writeAscii(ACTIVITY_PREFIX);
+
+        return new ByteBuffer[] {
+                ByteBuffer.wrap(header.buffer(), 0, header.size()),
+                activity.duplicate(),
+                ByteBuffer.wrap(SUFFIX_BYTES)
+        };
+    }
+
+    /**
+     * Encode only the activity object of a presence
+     *
+     * @param presence The presence to encode
+     * @return The activity JSON object
+     */
+    byte[] encodeActivity(MutablePresence presence) {
+        this.update(presence, MutablePresence.ALL);
+
+        JsonByteWriter out = this.payload;
+        out.reset();
+        this.writeActivity(out);
+        return out.toByteArray();
+    }
+
+    private void update(MutablePresence presence, int changed) {
+        for (int i = 0; i < SECTIONS.length; i++) {
+            if ((changed & SECTIONS[i]) == 0)
+                continue;
+
+            this.section.reset();
+            this.encodeSection(presence, SECTIONS[i]);
+            this.fragments[i] = this.section.toByteArray();
+        }
+    }
+
+    private void writeActivity(JsonByteWriter out) {
+        boolean first = true;
+        out.write((byte) '{');
+
+        for (byte[] fragment : this.fragments) {
+            if (fragment.length == 0)
+                continue;
+
+            if (!first)
+                out.write((byte) ',');
+
+            out.write(fragment);
+            first = false;
+        }
+
+        out.write((byte) '}');
+    }
+
+    private void encodeSection(MutablePresence p, int section) {
+        JsonByteWriter out = this.section;
+
+        switch (section) {
+            case MutablePresence.STATE:
+                if (isSet(p.state))
+                    out.writeAscii("\"state\":").writeString(p.state);
+                break;
+
+            case MutablePresence.DETAILS:
+                if (isSet(p.details))
+                    out.writeAscii("\"details\":").writeString(p.details);
+                break;
+
+            case MutablePresence.TIMESTAMPS:
+                if (p.startTimestamp == 0 && p.endTimestamp == 0)
+                    break;
+
+                out.writeAscii("\"timestamps\":{");
+
+                if (p.startTimestamp != 0)
+                    out.writeAscii("\"start\":").writeLong(p.startTimestamp);
+
+                if (p.endTimestamp != 0) {
+                    if (p.startTimestamp != 0)
+                        out.write((byte) ',');
+
+                    out.writeAscii("\"end\":").writeLong(p.endTimestamp);
+                }
+
+                out.write((byte) '}');
+                break;
+
+            case MutablePresence.ASSETS:
+                if (!isSet(p.largeImageKey) && !isSet(p.largeImageText) && !isSet(p.smallImageKey) && !isSet(p.smallImageText))
+                    break;
+
+                out.writeAscii("\"assets\":{");
+                boolean first = member(out, "large_image", p.largeImageKey, true);
+                first = member(out, "large_text", p.largeImageText, first);
+                first = member(out, "small_image", p.smallImageKey, first);
+                member(out, "small_text", p.smallImageText, first);
+                out.write((byte) '}');
+                break;
+
+            case MutablePresence.PARTY:
+                if (!isSet(p.partyId) && p.partySize <= 0 && p.partyMax <= 0)
+                    break;
+
+                out.writeAscii("\"party\":{");
+
+                if (isSet(p.partyId))
+                    out.writeAscii("\"id\":").writeString(p.partyId).write((byte) ',');
+
+                if (p.partySize != 0) {
+                    out.writeAscii("\"size\":[").writeLong(p.partySize);
+
+                    if (p.partyMax > 0)
+                        out.write((byte) ',').writeLong(p.partyMax);
+
+                    out.writeAscii("],");
+                }
+
+                out.writeAscii("\"privacy\":").writeLong(p.privacy.ordinal()).write((byte) '}');
+                break;
+
+            case MutablePresence.SECRETS:
+                if (!isSet(p.matchSecret) && !isSet(p.joinSecret) && !isSet(p.spectateSecret))
+                    break;
+
+                out.writeAscii("\"secrets\":{");
+                boolean firstSecret = member(out, "match", p.matchSecret, true);
+                firstSecret = member(out, "join", p.joinSecret, firstSecret);
+                member(out, "spectate", p.spectateSecret, firstSecret);
+                out.write((byte) '}');
+                break;
+
+            case MutablePresence.BUTTONS:
+                boolean any = false;
+
+                for (int i = 0; i < 2; i++) {
+                    String label = p.buttonLabels[i];
+                    String url = p.buttonUrls[i];
+
+                    // Same rules as RPCButton, invalid buttons are skipped and labels are limited to 32 characters
+                    if (label == null || label.isEmpty() || url == null || url.isEmpty())
+                        continue;
+
+                    out.writeAscii(any ? "," : "\"buttons\":[");
+                    out.writeAscii("{\"label\":").writeString(label, 32).writeAscii(",\"url\":").writeString(url).write((byte) '}');
+                    any = true;
+                }
+
+                if (any)
+                    out.write((byte) ']');
+                break;
+
+            case MutablePresence.ACTIVITY:
+                out.writeAscii("\"type\":").writeLong(p.activityType.ordinal())
+                        .writeAscii(",\"instance\":").writeBoolean(p.instance);
+                break;
+        }
+    }
+
+    private static boolean member(JsonByteWriter out, String key, String value, boolean first) {
+        if (!isSet(value))
+            return first;
+
+        if (!first)
+            out.write((byte) ',');
+
+        out.write((byte) '"').writeAscii(key).writeAscii("\":").writeString(value);
+        return false;
+    }
+
+    /**
+     * Same check as {@link dev.firstdark.rpc.models.DiscordRichPresence}, without trimming a copy of the string
+     */
+    static boolean isSet(String value) {
+        if (value == null)
+            return false;
+
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > ' ')
+                return true;
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,219 @@
+package dev.firstdark.rpc.presence;
+
+import dev.firstdark.rpc.enums.ActivityType;
+import dev.firstdark.rpc.enums.PartyPrivacy;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * @author HypherionSA
+ * The part of a {@link PresenceComposer} owned by one subsystem. A layer only holds the sections it wrote to, and only
+ * those sections take part in the merge. Sections are the ones of {@link MutablePresence}, like {@link MutablePresence#PARTY}.
+ * <p>
+ * Writes never lock. Every section is kept as a small immutable snapshot, that is replaced with a compare-and-set,
+ * so the composer always merges the values of a section from a single write
+ */
+public class PresenceLayer {
+
+    static final int SECTIONS = Integer.bitCount(MutablePresence.ALL);
+
+    @Getter
+    private final String name;
+    private final PresenceComposer composer;
+    private final AtomicReferenceArray<Object[]> sections = new AtomicReferenceArray<>(SECTIONS);
+    private final AtomicIntegerArray precedence = new AtomicIntegerArray(SECTIONS);
+
+    PresenceLayer(String name, int precedence, PresenceComposer composer) {
+        this.name = name;
+        this.composer = composer;
+
+        for (int i = 0; i < SECTIONS; i++)
+            this.precedence.set(i, precedence);
+    }
+
+    public PresenceLayer setState(@Nullable String state) {
+        return this.update(MutablePresence.STATE, 0, state);
+    }
+
+    public PresenceLayer setDetails(@Nullable String details) {
+        return this.update(MutablePresence.DETAILS, 0, details);
+    }
+
+    public PresenceLayer setTimestamps(long startTimestamp, long endTimestamp) {
+        return this.update(MutablePresence.TIMESTAMPS, 0, startTimestamp, endTimestamp);
+    }
+
+    public PresenceLayer setLargeImage(@Nullable String key, @Nullable String text) {
+        return this.update(MutablePresence.ASSETS, 0, key, text);
+    }
+
+    public PresenceLayer setSmallImage(@Nullable String key, @Nullable String text) {
+        return this.update(MutablePresence.ASSETS, 2, key, text);
+    }
+
+    public PresenceLayer setPartyId(@Nullable String partyId) {
+        return this.update(MutablePresence.PARTY, 0, partyId);
+    }
+
+    public PresenceLayer setPartySize(int partySize, int partyMax) {
+        return this.update(MutablePresence.PARTY, 1, partySize, partyMax);
+    }
+
+    public PresenceLayer setPrivacy(@NotNull PartyPrivacy privacy) {
+        return this.update(MutablePresence.PARTY, 3, privacy);
+    }
+
+    public PresenceLayer setSecrets(@Nullable String matchSecret, @Nullable String joinSecret, @Nullable String spectateSecret) {
+        return this.update(MutablePresence.SECRETS, 0, matchSecret, joinSecret, spectateSecret);
+    }
+
+    /**
+     * Set one of the two buttons
+     *
+     * @param index The button slot, 0 or 1
+     * @param label The label of the button, or null to remove it
+     * @param url The URL of the button, or null to remove it
+     */
+    public PresenceLayer setButton(int index, @Nullable String label, @Nullable String url) {
+        if (index < 0 || index > 1)
+            throw new IndexOutOfBoundsException("Only 2 buttons are supported");
+
+        return this.update(MutablePresence.BUTTONS, index * 2, label, url);
+    }
+
+    public PresenceLayer setActivityType(@NotNull ActivityType activityType) {
+        return this.update(MutablePresence.ACTIVITY, 0, activityType);
+    }
+
+    public PresenceLayer setInstance(boolean instance) {
+        return this.update(MutablePresence.ACTIVITY, 1, instance);
+    }
+
+    /**
+     * Give sections back to the layers below this one. A section that was set to null is still owned by this layer,
+     * and hides the value of the layers below it
+     *
+     * @param sections The sections to release, like {@code MutablePresence.STATE | MutablePresence.DETAILS}
+     */
+    public PresenceLayer release(int sections) {
+        int changed = 0;
+
+        for (int i = 0; i < SECTIONS; i++) {
+            if ((sections & (1 << i)) != 0 && this.sections.getAndSet(i, null) != null)
+                changed |= 1 << i;
+        }
+
+        if (changed != 0)
+            this.composer.changed(changed);
+
+        return this;
+    }
+
+    /**
+     * Release every section
+     */
+    public PresenceLayer clear() {
+        return this.release(MutablePresence.ALL);
+    }
+
+    /**
+     * @param section A single section, like {@link MutablePresence#STATE}
+     * @return The precedence of this layer for the section. Of the layers that own a section, the highest precedence wins
+     */
+    public int getPrecedence(int section) {
+        return this.precedence.get(index(section));
+    }
+
+    /**
+     * Change the precedence of this layer for some sections only. For example, a match layer can win the state,
+     * while a lobby layer keeps winning the party
+     *
+     * @param sections The sections, like {@code MutablePresence.STATE | MutablePresence.TIMESTAMPS}
+     * @param precedence The new precedence. Of the layers that own a section, the highest precedence wins
+     */
+    public PresenceLayer setPrecedence(int sections, int precedence) {
+        int changed = 0;
+
+        for (int i = 0; i < SECTIONS; i++) {
+            if ((sections & (1 << i)) != 0 && this.precedence.getAndSet(i, precedence) != precedence)
+                changed |= 1 << i;
+        }
+
+        if (changed != 0)
+            this.composer.changed(changed);
+
+        return this;
+    }
+
+    /**
+     * Internal method
+     * Get the snapshot of a section
+     *
+     * @param index The index of the section
+     * @return The values of the section, or null if this layer doesn't own it. Must not be modified
+     */
+    @Nullable
+    Object[] section(int index) {
+        return this.sections.get(index);
+    }
+
+    /**
+     * Internal method
+     * Replace some values of a section, keeping the others. Only notifies the composer when a value actually changed
+     */
+    private PresenceLayer update(int section, int offset, Object... values) {
+        int index = index(section);
+        Object[] current;
+        Object[] next;
+
+        do {
+            current = this.sections.get(index);
+            next = current == null ? defaults(section) : current.clone();
+            System.arraycopy(values, 0, next, offset, values.length);
+
+            if (current != null && Arrays.equals(current, next))
+                return this;
+        } while (!this.sections.compareAndSet(index, current, next));
+
+        this.composer.changed(section);
+        return this;
+    }
+
+    /**
+     * @param section A single section
+     * @return The index of the section in the layer
+     */
+    static int index(int section) {
+        if (Integer.bitCount(section) != 1 || (section & MutablePresence.ALL) == 0)
+            throw new IllegalArgumentException("Not a single presence section: " + section);
+
+        return Integer.numberOfTrailingZeros(section);
+    }
+
+    /**
+     * @param section A single section
+     * @return The values of a section that was never written, matching a new {@link MutablePresence}
+     */
+    static Object[] defaults(int section) {
+        switch (section) {
+            case MutablePresence.TIMESTAMPS:
+                return new Object[] { 0L, 0L };
+            case MutablePresence.ASSETS:
+            case MutablePresence.BUTTONS:
+                return new Object[4];
+            case MutablePresence.PARTY:
+                return new Object[] { null, 0, 0, PartyPrivacy.PRIVATE };
+            case MutablePresence.SECRETS:
+                return new Object[3];
+            case MutablePresence.ACTIVITY:
+                return new Object[] { ActivityType.PLAYING, false };
+            default:
+                return new Object[1];
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package dev.firstdark.rpc.presence;
+
+import dev.firstdark.rpc.exceptions.JsonCodecException;
+import dev.firstdark.rpc.json.JsonByteReader;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * @author HypherionSA
+ * Keeps the activity of the last presence that was sent in a small memory-mapped file, so a restarted game can show its
+ * presence again as soon as it connects, before it has loaded its own state.
+ * Saving goes straight into the page cache, so it costs a copy of the activity and no syscalls
+ * <p>
+ * File layout, all values are big endian:
+ * <pre>
+ *   0  long   magic "DRPCPRS1"
+ *   8  int    format version
+ *  12  int    capacity in bytes
+ *  16  int    length of the activity, 0 when there is none
+ *  20  int    CRC32 of the activity
+ *  24  long   time the activity was saved, in epoch milliseconds
+ *  32  ...    the activity JSON object
+ * </pre>
+ * The length is cleared while the activity is written, so a snapshot that was cut off halfway is never loaded
+ */
+public class PresenceSnapshot implements Closeable {
+
+    static final long MAGIC = 0x4452504350525331L;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    static final int LENGTH_OFFSET = 16;
+    static final int CRC_OFFSET = 20;
+    static final int SAVED_AT_OFFSET = 24;
+
+    /**
+     * The default capacity, which fits any activity Discord accepts
+     */
+    public static final int DEFAULT_CAPACITY = 16 * 1024;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final CRC32 crc = new CRC32();
+    private byte[] scratch = new byte[512];
+    private boolean closed;
+
+    private PresenceSnapshot(FileChannel channel, MappedByteBuffer buffer, int capacity) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Open a snapshot file, creating it if it doesn't exist. A file that isn't a snapshot of the same capacity is reset
+     *
+     * @param file The snapshot file
+     * @param capacity The largest activity that can be saved, in bytes
+     * @return The open snapshot
+     * @throws IOException Thrown when the file could not be created or mapped
+     */
+    public static PresenceSnapshot open(Path file, int capacity) throws IOException {
+        if (capacity < 2)
+            throw new IllegalArgumentException("Snapshot capacity must be at least 2 bytes");
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try {
+            boolean valid = channel.size() == (long) HEADER_SIZE + capacity;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) HEADER_SIZE + capacity);
+
+            if (!valid || buffer.getLong(0) != MAGIC || buffer.getInt(8) != VERSION || buffer.getInt(12) != capacity) {
+                buffer.putInt(LENGTH_OFFSET, 0);
+                buffer.putLong(0, MAGIC);
+                buffer.putInt(8, VERSION);
+                buffer.putInt(12, capacity);
+            }
+
+            return new PresenceSnapshot(channel, buffer, capacity);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Read the saved activity
+     *
+     * @return A copy of the activity JSON object, or null if nothing valid was saved
+     */
+    @Nullable
+    public synchronized ByteBuffer load() {
+        if (this.closed)
+            return null;
+
+        int length = this.buffer.getInt(LENGTH_OFFSET);
+
+        if (length <= 0 || length > this.capacity)
+            return null;
+
+        byte[] activity = new byte[length];
+        ByteBuffer data = this.buffer.duplicate();
+        data.position(HEADER_SIZE);
+        data.get(activity);
+
+        this.crc.reset();
+        this.crc.update(activity, 0, length);
+
+        if ((int) this.crc.getValue() != this.buffer.getInt(CRC_OFFSET))
+            return null;
+
+        return ByteBuffer.wrap(activity);
+    }
+
+    /**
+     * @return The time the saved activity was written, in epoch milliseconds, or 0 if nothing was saved
+     */
+    public synchronized long getSavedAt() {
+        return this.closed || this.buffer.getInt(LENGTH_OFFSET) == 0 ? 0 : this.buffer.getLong(SAVED_AT_OFFSET);
+    }
+
+    /**
+     * Save the activity of a SET_ACTIVITY command that was sent. A command without an activity, or with an activity
+     * that is too large, clears the snapshot instead
+     *
+     * @param command The buffers holding the command, in order. Their positions are not changed
+     * @throws JsonCodecException Thrown when the command is not valid JSON
+     */
+    public synchronized void save(ByteBuffer... command) {
+        if (this.closed)
+            return;
+
+        int length = 0;
+
+        for (ByteBuffer part : command)
+            length += part.remaining();
+
+        if (this.scratch.length < length)
+            this.scratch = new byte[Math.max(length, this.scratch.length * 2)];
+
+        // The command may be split over several buffers, so it is joined before it is read
+        int position = 0;
+
+        for (ByteBuffer part : command) {
+            int remaining = part.remaining();
+            part.duplicate().get(this.scratch, position, remaining);
+            position += remaining;
+        }
+
+        long range = findActivity(this.scratch, length);
+        int start = (int) (range >>> 32);
+        int size = (int) range;
+
+        this.buffer.putInt(LENGTH_OFFSET, 0);
+
+        if (size <= 0 || size > this.capacity)
+            return;
+
+        ByteBuffer data = this.buffer.duplicate();
+        data.position(HEADER_SIZE);
+        data.put(this.scratch, start, size);
+
+        this.crc.reset();
+        this.crc.update(this.scratch, start, size);
+        this.buffer.putInt(CRC_OFFSET, (int) this.crc.getValue());
+        this.buffer.putLong(SAVED_AT_OFFSET, System.currentTimeMillis());
+        this.buffer.putInt(LENGTH_OFFSET, size);
+    }
+
+    /**
+     * Forget the saved activity
+     */
+    public synchronized void clear() {
+        if (!this.closed)
+            this.buffer.putInt(LENGTH_OFFSET, 0);
+    }
+
+    /**
+     * Flush the snapshot to disk, and close the file
+     *
+     * @throws IOException Thrown when the file could not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.closed)
+            return;
+
+        this.closed = true;
+        this.buffer.force();
+        this.channel.close();
+    }
+
+    /**
+     * Internal method
+     * Find {@code args.activity} in a SET_ACTIVITY command
+     *
+     * @param bytes The command
+     * @param length The length of the command
+     * @return The offset of the activity object in the upper 32 bits, and its length in the lower 32 bits. The length is 0 if there is no activity
+     */
+    private static long findActivity(byte[] bytes, int length) {
+        JsonByteReader reader = new JsonByteReader(bytes, 0, length);
+
+        if (!reader.beginObject())
+            return 0;
+
+        while (reader.nextField()) {
+            if (!reader.isField("args")) {
+                reader.skipValue();
+                continue;
+            }
+
+            if (!reader.beginObject())
+                return 0;
+
+            while (reader.nextField()) {
+                if (!reader.isField("activity")) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                // A null activity clears the presence
+                int start = reader.position();
+                reader.skipValue();
+                return bytes[start] == '{' ? ((long) start << 32) | (reader.position() - start) : 0;
+            }
+
+            return 0;
+        }
+
+        return 0;
+    }
+}
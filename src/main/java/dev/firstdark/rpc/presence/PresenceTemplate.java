@@ -0,0 +1,236 @@
+package dev.firstdark.rpc.presence;
+
+import dev.firstdark.rpc.json.JsonByteWriter;
+import dev.firstdark.rpc.models.DiscordRichPresence;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author HypherionSA
+ * A presence with placeholders, compiled once into the bytes of a SET_ACTIVITY command.
+ * Updates only patch the placeholders, so numbers are written as ASCII digits without creating any Strings,
+ * and the rest of the presence is never serialized again.
+ * <pre>{@code
+ * PresenceTemplate template = PresenceTemplate.compile(DiscordRichPresence.builder()
+ *         .state("Wave {wave} of {max}")
+ *         .details("Score: {score}")
+ *         .build());
+ *
+ * int score = template.slot("score");
+ * template.set(score, 12345);
+ * rpc.updatePresence(template);
+ * }</pre>
+ * Placeholders are {@code {name}}, in any text field. Placeholders that were never set are empty.
+ * All methods are thread safe
+ */
+public class PresenceTemplate {
+
+    // Special slots, that the SDK fills in when the command is rendered
+    private static final int NONCE = -1;
+    private static final int PID = -2;
+
+    private final byte[][] literals;
+    private final int[] gaps;
+    private final String[] names;
+    private final JsonByteWriter[] values;
+
+    private PresenceTemplate(byte[][] literals, int[] gaps, String[] names) {
+        this.literals = literals;
+        this.gaps = gaps;
+        this.names = names;
+        this.values = new JsonByteWriter[names.length];
+
+        for (int i = 0; i < this.values.length; i++)
+            this.values[i] = new JsonByteWriter(24);
+    }
+
+    /**
+     * Compile a presence with placeholders into a template
+     *
+     * @param presence The presence. Text fields can contain {@code {name}} placeholders
+     * @return The compiled template
+     */
+    public static PresenceTemplate compile(@NotNull DiscordRichPresence presence) {
+        byte[] activity = new PresenceEncoder().encodeActivity(new MutablePresence().set(presence));
+
+        List<byte[]> literals = new ArrayList<>();
+        List<Integer> gaps = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+
+        literals.add(ascii(PresenceEncoder.NONCE_PREFIX));
+        gaps.add(NONCE);
+        literals.add(ascii(PresenceEncoder.PID_PREFIX));
+        gaps.add(PID);
+
+        JsonByteWriter literal = new JsonByteWriter(activity.length + 32);
+        literal.writeAscii(PresenceEncoder.ACTIVITY_PREFIX);
+        int start = 0;
+
+        for (int i = 0; i < activity.length; i++) {
+            int end = placeholderEnd(activity, i);
+            if (end < 0)
+                continue;
+
+            // Placeholders are plain ASCII, and never escaped, so they appear as-is in the encoded bytes
+            String name = new String(activity, i + 1, end - i - 1, StandardCharsets.US_ASCII);
+            int slot = names.indexOf(name);
+
+            if (slot < 0) {
+                slot = names.size();
+                names.add(name);
+            }
+
+            literal.write(activity, start, i - start);
+            literals.add(literal.toByteArray());
+            gaps.add(slot);
+
+            literal.reset();
+            start = end + 1;
+            i = end;
+        }
+
+        literal.write(activity, start, activity.length - start);
+        literal.writeAscii(PresenceEncoder.SUFFIX);
+        literals.add(literal.toByteArray());
+
+        int[] gapArray = new int[gaps.size()];
+        for (int i = 0; i < gapArray.length; i++)
+            gapArray[i] = gaps.get(i);
+
+        return new PresenceTemplate(literals.toArray(new byte[0][]), gapArray, names.toArray(new String[0]));
+    }
+
+    /**
+     * Look up the index of a placeholder, for use with the fast setters
+     *
+     * @param name The name of the placeholder, without braces
+     * @return The index of the placeholder
+     * @throws IllegalArgumentException Thrown when the template doesn't have the placeholder
+     */
+    public int slot(@NotNull String name) {
+        for (int i = 0; i < this.names.length; i++) {
+            if (this.names[i].equals(name))
+                return i;
+        }
+
+        throw new IllegalArgumentException("Template has no placeholder {" + name + "}");
+    }
+
+    /**
+     * @return The names of all placeholders in the template
+     */
+    public String[] getPlaceholders() {
+        return Arrays.copyOf(this.names, this.names.length);
+    }
+
+    /**
+     * Set a placeholder to a number
+     *
+     * @param slot The index of the placeholder, see {@link #slot(String)}
+     * @param value The number
+     */
+    public synchronized PresenceTemplate set(int slot, long value) {
+        JsonByteWriter writer = this.values[slot];
+        writer.reset();
+        writer.writeLong(value);
+        return this;
+    }
+
+    /**
+     * Set a placeholder to text
+     *
+     * @param slot The index of the placeholder, see {@link #slot(String)}
+     * @param value The text
+     */
+    public synchronized PresenceTemplate set(int slot, @NotNull String value) {
+        JsonByteWriter writer = this.values[slot];
+        writer.reset();
+        writer.writeEscaped(value, value.length());
+        return this;
+    }
+
+    public PresenceTemplate set(@NotNull String name, long value) {
+        return this.set(this.slot(name), value);
+    }
+
+    public PresenceTemplate set(@NotNull String name, @NotNull String value) {
+        return this.set(this.slot(name), value);
+    }
+
+    /**
+     * Internal method
+     * Assemble the complete SET_ACTIVITY command, with the current placeholder values
+     *
+     * @param pid The process ID of the game
+     * @param nonce The nonce of the command
+     * @return The JSON payload
+     */
+    public synchronized byte[] render(long pid, long nonce) {
+        int length = 0;
+
+        for (byte[] literal : this.literals)
+            length += literal.length;
+
+        for (int gap : this.gaps)
+            length += gap == NONCE ? numberLength(nonce) : gap == PID ? numberLength(pid) : this.values[gap].size();
+
+        JsonByteWriter out = new JsonByteWriter(length);
+
+        for (int i = 0; i < this.gaps.length; i++) {
+            out.write(this.literals[i]);
+
+            int gap = this.gaps[i];
+
+            if (gap == NONCE)
+                out.writeLong(nonce);
+            else if (gap == PID)
+                out.writeLong(pid);
+            else
+                out.write(this.values[gap].buffer(), 0, this.values[gap].size());
+        }
+
+        out.write(this.literals[this.literals.length - 1]);
+
+        // Sized exactly, so the buffer is the payload
+        return out.buffer();
+    }
+
+    /**
+     * Find the end of a {@code {name}} placeholder
+     *
+     * @return The index of the closing brace, or -1 if there is no placeholder at this index
+     */
+    private static int placeholderEnd(byte[] bytes, int start) {
+        if (bytes[start] != '{' || start + 1 >= bytes.length || !isNameStart(bytes[start + 1]))
+            return -1;
+
+        for (int i = start + 2; i < bytes.length; i++) {
+            if (bytes[i] == '}')
+                return i;
+
+            if (!isNameStart(bytes[i]) && (bytes[i] < '0' || bytes[i] > '9'))
+                return -1;
+        }
+
+        return -1;
+    }
+
+    private static boolean isNameStart(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || b == '_';
+    }
+
+    private static int numberLength(long value) {
+        if (value == Long.MIN_VALUE)
+            return 20;
+
+        return value < 0 ? JsonByteWriter.digits(-value) + 1 : JsonByteWriter.digits(value);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,68 @@
+package dev.firstdark.rpc.tracing;
+
+import dev.firstdark.rpc.enums.PresenceOutcome;
+import lombok.Getter;
+
+/**
+ * @author HypherionSA
+ * The timeline of a single presence update, from {@link dev.firstdark.rpc.DiscordRpc#updatePresence} to Discord's response.
+ * Timestamps are {@link System#nanoTime()} values, and 0 for stages that were never reached
+ */
+@Getter
+public class PresenceTrace {
+
+    private final long nonce;
+    private final long enqueuedAt;
+    private long writtenAt;
+    private long completedAt;
+    private PresenceOutcome outcome;
+
+    PresenceTrace(long nonce, long enqueuedAt) {
+        this.nonce = nonce;
+        this.enqueuedAt = enqueuedAt;
+    }
+
+    void written(long now) {
+        this.writtenAt = now;
+    }
+
+    void complete(PresenceOutcome outcome, long now) {
+        this.outcome = outcome;
+        this.completedAt = now;
+    }
+
+    /**
+     * @return Time spent waiting for the IO thread, and being written, in nanoseconds. -1 if never written
+     */
+    public long getQueueNanos() {
+        return this.writtenAt == 0 ? -1 : this.writtenAt - this.enqueuedAt;
+    }
+
+    /**
+     * @return Time between the write completing and Discord's response, in nanoseconds. -1 if never answered
+     */
+    public long getAckNanos() {
+        return this.writtenAt == 0 || !this.isAnswered() ? -1 : this.completedAt - this.writtenAt;
+    }
+
+    /**
+     * @return Time from the update, to Discord's response, in nanoseconds. -1 if never answered
+     */
+    public long getTotalNanos() {
+        return this.isAnswered() ? this.completedAt - this.enqueuedAt : -1;
+    }
+
+    private boolean isAnswered() {
+        return this.outcome == PresenceOutcome.ACKNOWLEDGED || this.outcome == PresenceOutcome.ERRORED;
+    }
+
+    @Override
+    public String toString() {
+        return "PresenceTrace{nonce=" + this.nonce + ", outcome=" + this.outcome + ", queue=" + millis(this.getQueueNanos())
+                + ", ack=" + millis(this.getAckNanos()) + ", total=" + millis(this.getTotalNanos()) + "}";
+    }
+
+    private static String millis(long nanos) {
+        return nanos < 0 ? "n/a" : String.format("%.3fms", nanos / 1e6);
+    }
+}
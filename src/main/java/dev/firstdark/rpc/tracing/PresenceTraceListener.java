@@ -0,0 +1,17 @@
+package dev.firstdark.rpc.tracing;
+
+/**
+ * @author HypherionSA
+ * Receives the timeline of every presence update, once its outcome is known
+ */
+@FunctionalInterface
+public interface PresenceTraceListener {
+
+    /**
+     * Called on the IO thread (or the thread that replaced, or dropped, the update). Keep it short
+     *
+     * @param trace The completed trace
+     */
+    void onPresenceTrace(PresenceTrace trace);
+
+}
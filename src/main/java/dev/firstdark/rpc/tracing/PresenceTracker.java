@@ -0,0 +1,196 @@
+package dev.firstdark.rpc.tracing;
+
+import dev.firstdark.rpc.enums.PresenceOutcome;
+import dev.firstdark.rpc.metrics.Counter;
+import dev.firstdark.rpc.metrics.LatencyHistogram;
+import dev.firstdark.rpc.metrics.RpcMetrics;
+import lombok.Getter;
+import lombok.Setter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author HypherionSA
+ * Follows presence updates through the SDK, keyed by nonce.
+ * Stage latencies are recorded in the {@code presence.queue}, {@code presence.ack} and {@code presence.total} histograms,
+ * and every finished {@link PresenceTrace} is passed to the listener, if one is set
+ */
+public class PresenceTracker {
+
+    /**
+     * Updates that Discord never answers are forgotten after this many newer ones
+     */
+    private static final int MAX_TRACKED = 256;
+
+    private final Map<Long, PresenceTrace> inFlight = new LinkedHashMap<>();
+
+    private final Counter updates;
+    private final Counter coalesced;
+    private final Counter dropped;
+    private final Counter errors;
+    private final Counter evicted;
+    private final LatencyHistogram queueLatency;
+    private final LatencyHistogram ackLatency;
+    private final LatencyHistogram totalLatency;
+
+    /**
+     * Receives every completed trace
+     */
+    @Getter
+    @Setter
+    @Nullable
+    private volatile PresenceTraceListener listener;
+
+    public PresenceTracker(RpcMetrics metrics) {
+        this.updates = metrics.counter("presence.updates");
+        this.coalesced = metrics.counter("presence.coalesced");
+        this.dropped = metrics.counter("presence.dropped");
+        this.errors = metrics.counter("presence.errors");
+        this.evicted = metrics.counter("presence.evicted");
+        this.queueLatency = metrics.histogram("presence.queue");
+        this.ackLatency = metrics.histogram("presence.ack");
+        this.totalLatency = metrics.histogram("presence.total");
+    }
+
+    /**
+     * A presence update was queued
+     *
+     * @param nonce The nonce the update will be sent with
+     */
+    public void enqueued(long nonce) {
+        this.updates.increment();
+        boolean evicted = false;
+
+        synchronized (this.inFlight) {
+            this.inFlight.put(nonce, new PresenceTrace(nonce, System.nanoTime()));
+
+            if (this.inFlight.size() > MAX_TRACKED) {
+                Iterator<PresenceTrace> iterator = this.inFlight.values().iterator();
+                iterator.next();
+                iterator.remove();
+                evicted = true;
+            }
+        }
+
+        // The trace of the evicted update is lost, so count it to make that visible
+        if (evicted)
+            this.evicted.increment();
+    }
+
+    /**
+     * A queued presence update was replaced by a newer one, before it was written
+     *
+     * @param nonce The nonce of the replaced update
+     */
+    public void coalesced(long nonce) {
+        this.coalesced.increment();
+        this.complete(nonce, PresenceOutcome.COALESCED);
+    }
+
+    /**
+     * A presence update was fully written to the pipe
+     *
+     * @param nonce The nonce of the update
+     */
+    public void written(long nonce) {
+        PresenceTrace trace;
+
+        synchronized (this.inFlight) {
+            trace = this.inFlight.get(nonce);
+        }
+
+        if (trace == null)
+            return;
+
+        trace.written(System.nanoTime());
+        this.queueLatency.record(trace.getQueueNanos());
+    }
+
+    /**
+     * Discord answered a command. Nonces that don't belong to a presence update that is being traced are ignored,
+     * so only presence errors are counted in {@code presence.errors}
+     *
+     * @param nonce The nonce from the response
+     * @param error True if Discord answered with an ERROR event
+     */
+    public void answered(String nonce, boolean error) {
+        long value;
+
+        try {
+            value = Long.parseLong(nonce);
+        } catch (NumberFormatException e) {
+            return;
+        }
+
+        this.complete(value, error ? PresenceOutcome.ERRORED : PresenceOutcome.ACKNOWLEDGED);
+    }
+
+    /**
+     * The connection closed. Updates that were written, but not answered, are lost.
+     * Updates that are still queued will be sent on the next connection
+     */
+    public void connectionLost() {
+        List<PresenceTrace> lost = new ArrayList<>();
+
+        synchronized (this.inFlight) {
+            Iterator<PresenceTrace> iterator = this.inFlight.values().iterator();
+
+            while (iterator.hasNext()) {
+                PresenceTrace trace = iterator.next();
+
+                if (trace.getWrittenAt() != 0) {
+                    lost.add(trace);
+                    iterator.remove();
+                }
+            }
+        }
+
+        for (PresenceTrace trace : lost)
+            this.finish(trace, PresenceOutcome.DROPPED);
+    }
+
+    /**
+     * A queued presence update will never be sent
+     *
+     * @param nonce The nonce of the update
+     */
+    public void dropped(long nonce) {
+        this.complete(nonce, PresenceOutcome.DROPPED);
+    }
+
+    private void complete(long nonce, PresenceOutcome outcome) {
+        PresenceTrace trace;
+
+        synchronized (this.inFlight) {
+            trace = this.inFlight.remove(nonce);
+        }
+
+        if (trace != null)
+            this.finish(trace, outcome);
+    }
+
+    private void finish(PresenceTrace trace, PresenceOutcome outcome) {
+        trace.complete(outcome, System.nanoTime());
+
+        if (outcome == PresenceOutcome.DROPPED)
+            this.dropped.increment();
+        else if (outcome == PresenceOutcome.ERRORED)
+            this.errors.increment();
+
+        if (trace.getAckNanos() >= 0)
+            this.ackLatency.record(trace.getAckNanos());
+
+        if (trace.getTotalNanos() >= 0)
+            this.totalLatency.record(trace.getTotalNanos());
+
+        PresenceTraceListener listener = this.listener;
+
+        if (listener != null)
+            listener.onPresenceTrace(trace);
+    }
+}
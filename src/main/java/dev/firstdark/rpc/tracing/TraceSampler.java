@@ -0,0 +1,70 @@
+package dev.firstdark.rpc.tracing;
+
+/**
+ * @author HypherionSA
+ * Decides which high-frequency trace messages are logged. Supports keeping 1 in N messages,
+ * a maximum number of messages per second, or both
+ */
+class TraceSampler {
+
+    private final int oneIn;
+    private final int maxPerSecond;
+
+    private long seen;
+    private long windowStart;
+    private int windowCount;
+    private long suppressed;
+
+    /**
+     * @param oneIn Keep one in every N messages. 1 or less keeps everything
+     * @param maxPerSecond The maximum number of messages to keep per second. 0 or less is unlimited
+     */
+    TraceSampler(int oneIn, int maxPerSecond) {
+        this.oneIn = Math.max(1, oneIn);
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    /**
+     * @return True if the next message should be logged
+     */
+    synchronized boolean sample() {
+        if (this.seen++ % this.oneIn != 0) {
+            this.suppressed++;
+            return false;
+        }
+
+        if (this.maxPerSecond > 0) {
+            long now = System.nanoTime();
+
+            if (now - this.windowStart >= 1_000_000_000L) {
+                this.windowStart = now;
+                this.windowCount = 0;
+            }
+
+            if (this.windowCount >= this.maxPerSecond) {
+                this.suppressed++;
+                return false;
+            }
+
+            this.windowCount++;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return The number of messages suppressed since the last call
+     */
+    synchronized long drainSuppressed() {
+        long count = this.suppressed;
+        this.suppressed = 0;
+        return count;
+    }
+
+    /**
+     * @return True if this sampler never drops a message
+     */
+    boolean isPassthrough() {
+        return this.oneIn == 1 && this.maxPerSecond <= 0;
+    }
+}
@@ -0,0 +1,130 @@
+package dev.firstdark.rpc.tracing;
+
+import dev.firstdark.rpc.DiscordRpc;
+import dev.firstdark.rpc.enums.TraceCategory;
+import dev.firstdark.rpc.enums.TraceLevel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * @author HypherionSA
+ * Structured debug tracing, with a level per {@link TraceCategory}.
+ * Messages are built lazily, so a disabled category costs a single level check.
+ * {@link TraceLevel#TRACE} messages can be sampled, to keep log volume down for high-frequency events.
+ * <p>
+ * When {@link DiscordRpc#isDebugMode()} is enabled, every category without an explicit level traces at {@link TraceLevel#DEBUG}
+ */
+public class Tracer {
+
+    private final DiscordRpc rpc;
+    private final CategoryState[] categories;
+
+    public Tracer(@NotNull DiscordRpc rpc) {
+        this.rpc = rpc;
+        this.categories = new CategoryState[TraceCategory.values().length];
+
+        for (int i = 0; i < this.categories.length; i++)
+            this.categories[i] = new CategoryState();
+    }
+
+    /**
+     * Set how much detail to trace for a category
+     *
+     * @param category The category to configure
+     * @param level The new level. {@link TraceLevel#OFF} falls back to debug mode
+     */
+    public void setLevel(@NotNull TraceCategory category, @NotNull TraceLevel level) {
+        this.categories[category.ordinal()].level = level;
+    }
+
+    /**
+     * @param category The category to check
+     * @return The effective level of the category
+     */
+    @NotNull
+    public TraceLevel getLevel(@NotNull TraceCategory category) {
+        TraceLevel level = this.categories[category.ordinal()].level;
+
+        if (level == TraceLevel.OFF && this.rpc.isDebugMode())
+            return TraceLevel.DEBUG;
+
+        return level;
+    }
+
+    /**
+     * Sample the {@link TraceLevel#TRACE} messages of a category
+     *
+     * @param category The category to configure
+     * @param oneIn Keep one in every N messages. 1 keeps everything
+     * @param maxPerSecond The maximum number of messages to keep per second. 0 is unlimited
+     */
+    public void setSampling(@NotNull TraceCategory category, int oneIn, int maxPerSecond) {
+        TraceSampler sampler = new TraceSampler(oneIn, maxPerSecond);
+        this.categories[category.ordinal()].sampler = sampler.isPassthrough() ? null : sampler;
+    }
+
+    /**
+     * Check if messages at a level would be traced
+     *
+     * @param category The category of the message
+     * @param level The level of the message
+     * @return True if enabled
+     */
+    public boolean isEnabled(@NotNull TraceCategory category, @NotNull TraceLevel level) {
+        return level != TraceLevel.OFF && level.ordinal() <= this.getLevel(category).ordinal();
+    }
+
+    /**
+     * Trace a message
+     *
+     * @param category The category of the message
+     * @param level The level of the message
+     * @param message Builds the message, only called when the message will be logged
+     */
+    public void trace(@NotNull TraceCategory category, @NotNull TraceLevel level, @NotNull Supplier<String> message) {
+        if (!this.isEnabled(category, level) || !this.sample(category, level))
+            return;
+
+        this.emit(category, level, message.get());
+    }
+
+    /**
+     * Trace a message about a subject. Use a non-capturing lambda on hot paths, so nothing is allocated when tracing is disabled
+     *
+     * @param category The category of the message
+     * @param level The level of the message
+     * @param subject The value the message is about
+     * @param message Builds the message from the subject, only called when the message will be logged
+     * @param <T> The type of the subject
+     */
+    public <T> void trace(@NotNull TraceCategory category, @NotNull TraceLevel level, @Nullable T subject, @NotNull Function<T, String> message) {
+        if (!this.isEnabled(category, level) || !this.sample(category, level))
+            return;
+
+        this.emit(category, level, message.apply(subject));
+    }
+
+    private boolean sample(TraceCategory category, TraceLevel level) {
+        TraceSampler sampler = this.categories[category.ordinal()].sampler;
+        return level != TraceLevel.TRACE || sampler == null || sampler.sample();
+    }
+
+    private void emit(TraceCategory category, TraceLevel level, String message) {
+        TraceSampler sampler = this.categories[category.ordinal()].sampler;
+        long suppressed = level == TraceLevel.TRACE && sampler != null ? sampler.drainSuppressed() : 0;
+
+        if (suppressed > 0)
+            this.rpc.getLogger().info("[{}/{}] {} ({} similar messages sampled out)", level, category, message, suppressed);
+        else
+            this.rpc.getLogger().info("[{}/{}] {}", level, category, message);
+    }
+
+    private static class CategoryState {
+        private volatile TraceLevel level = TraceLevel.OFF;
+        @Nullable
+        private volatile TraceSampler sampler;
+    }
+}
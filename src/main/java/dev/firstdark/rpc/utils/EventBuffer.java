@@ -0,0 +1,94 @@
+package dev.firstdark.rpc.utils;
+
+import dev.firstdark.rpc.enums.OverflowStrategy;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * @author HypherionSA
+ * A bounded FIFO buffer for events, that handles a full buffer with an {@link OverflowStrategy}
+ * instead of growing when the consumer doesn't keep up. Safe to use from multiple threads
+ *
+ * @param <T> The type of the buffered events
+ */
+public final class EventBuffer<T> {
+
+    private final Object[] ring;
+    private final OverflowStrategy strategy;
+    private int head;
+    private int size;
+
+    /**
+     * Create a new buffer
+     *
+     * @param capacity The maximum number of buffered events. Ignored for {@link OverflowStrategy#LATEST_ONLY}
+     * @param strategy What to do with new events when the buffer is full
+     */
+    public EventBuffer(int capacity, @NotNull OverflowStrategy strategy) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity must be at least 1, got " + capacity);
+
+        this.ring = new Object[strategy == OverflowStrategy.LATEST_ONLY ? 1 : capacity];
+        this.strategy = strategy;
+    }
+
+    /**
+     * Add an event to the buffer
+     *
+     * @param event The event to add
+     * @return False if an event was dropped, either this one or a buffered one to make room for it
+     */
+    public synchronized boolean offer(@NotNull T event) {
+        if (this.size < this.ring.length) {
+            this.ring[(this.head + this.size++) % this.ring.length] = event;
+            return true;
+        }
+
+        if (this.strategy == OverflowStrategy.DROP_NEWEST)
+            return false;
+
+        // Drop the oldest. With one slot, that is the same as only keeping the latest event
+        this.ring[this.head] = event;
+        this.head = (this.head + 1) % this.ring.length;
+        return false;
+    }
+
+    /**
+     * Remove the oldest event from the buffer
+     *
+     * @return The oldest event, or null if the buffer is empty
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public synchronized T poll() {
+        if (this.size == 0)
+            return null;
+
+        T event = (T) this.ring[this.head];
+        this.ring[this.head] = null;
+        this.head = (this.head + 1) % this.ring.length;
+        this.size--;
+        return event;
+    }
+
+    /**
+     * @return The number of buffered events
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * @return True if no events are buffered
+     */
+    public synchronized boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Remove all buffered events
+     */
+    public synchronized void clear() {
+        while (this.poll() != null);
+    }
+}
@@ -0,0 +1,126 @@
+import dev.firstdark.rpc.LoopbackSession;
+import dev.firstdark.rpc.RpcFixtures;
+import dev.firstdark.rpc.connection.unix.FaultInjectingBackend;
+import dev.firstdark.rpc.connection.unix.FaultProfile;
+import dev.firstdark.rpc.connection.unix.LoopbackBackend;
+import dev.firstdark.rpc.enums.OpCode;
+import dev.firstdark.rpc.models.DiscordRichPresence;
+
+/**
+ * Runs the SDK over an in-memory transport with injected I/O faults, for a range of seeds.
+ * Short reads, short writes and latency must not lose or reorder anything. Dropped connections,
+ * stalls and corrupt frames must never escape the IO loop, and the connection must recover once they stop.
+ * <p>
+ * Usage: FaultInjectionTest [seeds]
+ */
+public class FaultInjectionTest {
+
+    public static void main(String[] args) throws Exception {
+        int seeds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+        for (long seed = 1; seed <= seeds; seed++)
+            lossless(seed);
+
+        for (long seed = 1; seed <= Math.min(seeds, 3); seed++)
+            adverse(seed);
+
+        System.out.println("All fault injection checks passed");
+    }
+
+    /**
+     * Short reads, short writes and small delays. Every event and presence update must arrive intact and in order
+     */
+    private static void lossless(long seed) throws Exception {
+        FaultProfile profile = FaultProfile.builder()
+                .seed(seed)
+                .shortReadChance(0.5)
+                .shortWriteChance(0.5)
+                .latencyChance(0.01)
+                .maxLatencyMs(1)
+                .build();
+
+        LoopbackBackend discord = new LoopbackBackend();
+        FaultInjectingBackend faults = new FaultInjectingBackend(discord, profile);
+        LoopbackSession session = new LoopbackSession(discord, faults, true);
+        session.awaitReady(5000);
+
+        int count = 200;
+
+        for (int i = 0; i < count; i++) {
+            discord.feedFrame(OpCode.FRAME, LoopbackSession.joinRequest("user-" + i));
+            session.getRpc().updatePresence(DiscordRichPresence.builder().state("state-" + i).build());
+            session.tick();
+        }
+
+        for (int i = 0; i < 10; i++)
+            session.tick();
+
+        RpcFixtures.check(faults.getShortReads().get() > 0 && faults.getShortWrites().get() > 0, "Seed " + seed, "no short I/O was injected");
+        RpcFixtures.check(session.getJoinRequests().size() == count, "Seed " + seed, "expected " + count + " join requests, got " + session.getJoinRequests().size());
+        RpcFixtures.check(session.getPresences().size() == count, "Seed " + seed, "expected " + count + " presence updates, got " + session.getPresences().size());
+
+        for (int i = 0; i < count; i++) {
+            RpcFixtures.check(session.getJoinRequests().get(i).equals("user-" + i), "Seed " + seed, "join request " + i + " out of order");
+            RpcFixtures.check(session.getPresences().get(i).equals("state-" + i), "Seed " + seed, "presence " + i + " out of order");
+        }
+
+        session.getRpc().shutdown();
+    }
+
+    /**
+     * Drops, stalls and corrupt headers on top of short I/O. Nothing may escape the IO loop,
+     * and once the faults stop the SDK must reconnect and deliver again
+     */
+    private static void adverse(long seed) throws Exception {
+        FaultProfile profile = FaultProfile.builder()
+                .seed(seed)
+                .shortReadChance(0.3)
+                .shortWriteChance(0.3)
+                .stallChance(0.005)
+                .stallMs(5)
+                .dropChance(0.005)
+                .corruptHeaderChance(0.05)
+                .build();
+
+        LoopbackBackend discord = new LoopbackBackend();
+        FaultInjectingBackend faults = new FaultInjectingBackend(discord, profile);
+        LoopbackSession session = new LoopbackSession(discord, faults, true);
+        session.awaitReady(5000);
+
+        long chaosEnd = System.currentTimeMillis() + 2000;
+
+        while (System.currentTimeMillis() < chaosEnd) {
+            discord.feedFrame(OpCode.FRAME, LoopbackSession.joinRequest("chaos"));
+            session.getRpc().updatePresence(DiscordRichPresence.builder().state("chaos").build());
+            session.tick();
+            Thread.sleep(1);
+        }
+
+        RpcFixtures.check(faults.getDrops().get() + faults.getCorruptHeaders().get() > 0, "Seed " + seed, "no drops or corruption were injected");
+
+        // Stop the chaos, and wait for a clean connection. Reconnects are subject to the SDK's backoff
+        faults.setEnabled(false);
+        int readyBefore = session.getReadyCount();
+        long deadline = System.currentTimeMillis() + 30000;
+
+        while (session.getReadyCount() == readyBefore && System.currentTimeMillis() < deadline) {
+            session.tick();
+            Thread.sleep(5);
+        }
+
+        RpcFixtures.check(session.getReadyCount() > readyBefore, "Seed " + seed, "did not reconnect after faults stopped");
+
+        session.getJoinRequests().clear();
+        session.getPresences().clear();
+        discord.feedFrame(OpCode.FRAME, LoopbackSession.joinRequest("after"));
+        session.getRpc().updatePresence(DiscordRichPresence.builder().state("after").build());
+
+        for (int i = 0; i < 10; i++)
+            session.tick();
+
+        RpcFixtures.check(session.getJoinRequests().contains("after"), "Seed " + seed, "join request lost after recovery");
+        RpcFixtures.check(session.getPresences().contains("after"), "Seed " + seed, "presence lost after recovery");
+
+        session.getRpc().shutdown();
+    }
+}
@@ -0,0 +1,310 @@
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dev.firstdark.rpc.enums.ActivityType;
+import dev.firstdark.rpc.enums.PartyPrivacy;
+import dev.firstdark.rpc.exceptions.JsonCodecException;
+import dev.firstdark.rpc.json.GsonJsonCodec;
+import dev.firstdark.rpc.json.JsonCodec;
+import dev.firstdark.rpc.json.StreamingJsonCodec;
+import dev.firstdark.rpc.models.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Checks the built-in JSON codec against the Gson codec. Every payload the SDK reads must decode to the same model with both,
+ * and malformed payloads must only ever fail with a {@link JsonCodecException}.
+ * Also covers the inbound message scanner, and the diff encoding of activities by the built-in codec.
+ * <p>
+ * Usage: JsonCodecTest
+ */
+public class JsonCodecTest {
+
+    private static final String[] MALFORMED = {
+            "", " ", "{", "}", "[]", "\"user\"", "{\"id\":}", "{\"id\":\"1\"", "{\"id\":\"1\",}", "{\"id\" \"1\"}",
+            "{\"id\":\"1\"}}", "{\"id\":\"1\"} x", "{\"id\":\"\\x\"}", "{\"id\":\"\\u12\"}", "{\"id\":\"\\u12zz\"}",
+            "{\"id\":\"1", "{\"v\":1.5.2}", "{\"v\":tru}", "{\"user\":{\"id\":[}}", "{\"v\":\"x\"}"
+    };
+
+    public static void main(String[] args) {
+        JsonCodec streaming = new StreamingJsonCodec();
+        JsonCodec gson = new GsonJsonCodec();
+
+        models(streaming, gson);
+        escapes(streaming, gson);
+        malformed(streaming);
+        malformed(gson);
+        inbound();
+        activities();
+
+        System.out.println("All JSON codec checks passed");
+    }
+
+    /**
+     * Every model the SDK reads, including nulls, missing fields and unknown nested fields
+     */
+    private static void models(JsonCodec streaming, JsonCodec gson) {
+        String ready = "{\"v\":1,\"config\":{\"cdn_host\":\"cdn.discordapp.com\",\"api_endpoint\":\"//discord.com/api\",\"environment\":\"production\"},"
+                + "\"user\":{\"id\":\"123456789\",\"username\":\"test\",\"discriminator\":\"0\",\"global_name\":\"Test\",\"avatar\":null,"
+                + "\"avatar_decoration_data\":{\"asset\":\"a_1\",\"sku_id\":\"2\",\"nested\":[1,2.5e3,{\"deep\":[true,false,null]}]},\"bot\":false,\"flags\":32,\"premium_type\":0}}";
+
+        ReadyEvent expected = gson.read(bytes(ready), 0, bytes(ready).length, ReadyEvent.class);
+        check(expected.getVersion() == 1 && expected.getUser().getUserId().equals("123456789"), "Gson codec decoded READY wrongly");
+        check(expected.getUser().getAvatar() == null, "null avatar decoded as " + expected.getUser().getAvatar());
+
+        compare(streaming, gson, ready, ReadyEvent.class);
+        compare(streaming, gson, "{\"v\":1}", ReadyEvent.class);
+        compare(streaming, gson, "{\"v\":1,\"user\":null}", ReadyEvent.class);
+        compare(streaming, gson, "{}", ReadyEvent.class);
+
+        compare(streaming, gson, "{\"code\":4000,\"message\":\"Invalid Client ID\"}", ErrorEvent.class);
+        compare(streaming, gson, "{\"code\":-1,\"message\":null,\"extra\":{\"a\":[{}]}}", ErrorEvent.class);
+
+        compare(streaming, gson, "{\"user\":{\"id\":\"2\",\"username\":\"joiner\",\"global_name\":null,\"avatar\":\"abc\"}}", DiscordJoinRequest.class);
+        compare(streaming, gson, "{\"user\":null,\"activity\":{\"party\":{\"size\":[1,4]}}}", DiscordJoinRequest.class);
+
+        compare(streaming, gson, "{\"secret\":\"join-123\"}", SecretEvent.class);
+        compare(streaming, gson, "{\"secret\":null}", SecretEvent.class);
+        compare(streaming, gson, " \t\r\n{ \"secret\" : \"spaced\" } \n", SecretEvent.class);
+
+        // The built-in codec caches users. A user with the same ID but different JSON must not come from the cache
+        compare(streaming, gson, "{\"id\":\"7\",\"username\":\"before\"}", User.class);
+        compare(streaming, gson, "{\"id\":\"7\",\"username\":\"after\"}", User.class);
+        compare(streaming, gson, "{\"id\":\"7\",\"username\":\"after\"}", User.class);
+
+        // The payload doesn't have to start at the beginning of the array
+        byte[] padded = bytes("xx{\"secret\":\"offset\"}yy");
+        check("offset".equals(streaming.read(padded, 2, padded.length - 4, SecretEvent.class).getSecret()), "payload at an offset decoded wrongly");
+    }
+
+    /**
+     * Escapes, surrogate pairs and non-ASCII text must decode to the same string as Gson
+     */
+    private static void escapes(JsonCodec streaming, JsonCodec gson) {
+        String[] names = {
+                "plain",
+                "quote \\\" backslash \\\\ slash \\/",
+                "control \\b\\f\\n\\r\\t",
+                "unicode \\u00e9\\u4e2d\\u0000",
+                "surrogates \\ud83d\\ude00 \\uD83C\\uDFAE",
+                "raw UTF-8 \u00e9\u4e2d\uD83D\uDE00"
+        };
+
+        for (String name : names) {
+            String json = "{\"id\":\"1\",\"username\":\"" + name + "\",\"global_name\":\"" + name + "\"}";
+            compare(streaming, gson, json, User.class);
+            compare(streaming, gson, "{\"secret\":\"" + name + "\"}", SecretEvent.class);
+        }
+
+        User user = streaming.read(bytes("{\"username\":\"\\ud83d\\ude00\"}"), 0, bytes("{\"username\":\"\\ud83d\\ude00\"}").length, User.class);
+        check("\uD83D\uDE00".equals(user.getUsername()), "surrogate pair decoded as " + user.getUsername());
+
+        // Escaped field names must still be matched
+        compare(streaming, gson, "{\"\\u0073ecret\":\"escaped key\"}", SecretEvent.class);
+    }
+
+    /**
+     * Malformed payloads must be rejected with a JsonCodecException, and never with any other exception
+     */
+    private static void malformed(JsonCodec codec) {
+        Class<?>[] types = {User.class, ReadyEvent.class, ErrorEvent.class, SecretEvent.class, DiscordJoinRequest.class};
+
+        for (String json : MALFORMED) {
+            for (Class<?> type : types) {
+                // Gson accepts empty documents and some lenient input. Only the exception type matters here
+                try {
+                    codec.read(bytes(json), 0, bytes(json).length, type);
+                } catch (JsonCodecException ignored) {
+                } catch (RuntimeException e) {
+                    throw new AssertionError(codec.getName() + " threw " + e + " reading " + type.getSimpleName() + " from " + json, e);
+                }
+            }
+        }
+
+        // The built-in codec is strict, and must reject every malformed payload
+        if (!(codec instanceof StreamingJsonCodec))
+            return;
+
+        for (String json : MALFORMED) {
+            boolean rejected = false;
+
+            try {
+                codec.read(bytes(json), 0, bytes(json).length, ReadyEvent.class);
+            } catch (JsonCodecException e) {
+                rejected = true;
+            }
+
+            check(rejected, "built-in codec accepted " + json);
+        }
+
+        // A null document is a null model, like with Gson
+        check(codec.read(bytes("null"), 0, 4, ReadyEvent.class) == null, "null document decoded to a model");
+
+        try {
+            codec.read(bytes("{}"), 0, 2, Object.class);
+            throw new AssertionError("built-in codec read an unsupported type");
+        } catch (JsonCodecException ignored) {
+        }
+    }
+
+    /**
+     * The scanner that decodes {@code cmd}, {@code evt} and {@code nonce} without decoding the data
+     */
+    private static void inbound() {
+        InboundMessage message = new InboundMessage();
+
+        check(decode(message, "{\"cmd\":\"DISPATCH\",\"data\":{\"v\":1,\"user\":{\"id\":\"1\"}},\"evt\":\"READY\",\"nonce\":null}"), "READY rejected");
+        check("DISPATCH".equals(message.getCmd()) && "READY".equals(message.getEvt()) && message.getNonce() == null, "READY decoded as " + describe(message));
+        check(message.readData(new StreamingJsonCodec(), ReadyEvent.class).getUser().getUserId().equals("1"), "READY data decoded wrongly");
+
+        check(decode(message, " { \"nonce\" : \"42\" , \"cmd\" : \"SET_ACTIVITY\" , \"evt\" : null } "), "whitespace rejected");
+        check("SET_ACTIVITY".equals(message.getCmd()) && message.getEvt() == null && "42".equals(message.getNonce()), "reply decoded as " + describe(message));
+        check(message.readData(new StreamingJsonCodec(), SecretEvent.class) == null, "message without data returned data");
+
+        check(decode(message, "{\"cmd\":\"DISPATCH\",\"evt\":\"\\u0052EADY\",\"nonce\":7}"), "escaped name rejected");
+        check("READY".equals(message.getEvt()) && "7".equals(message.getNonce()), "escaped name decoded as " + describe(message));
+
+        check(decode(message, "{\"cmd\":\"UNKNOWN_\\\"CMD\\\"\",\"evt\":\"\\ud83d\\ude00\"}"), "unknown name rejected");
+        check("UNKNOWN_\"CMD\"".equals(message.getCmd()) && "\uD83D\uDE00".equals(message.getEvt()), "unknown name decoded as " + describe(message));
+
+        check(decode(message, ""), "empty frame rejected");
+        check(message.getCmd() == null && message.read(new StreamingJsonCodec(), ReadyEvent.class) == null, "empty frame decoded as " + describe(message));
+
+        String[] invalid = {
+                " ", "[]", "{", "{\"cmd\"}", "{\"cmd\":}", "{\"cmd\":\"DISPATCH\",}", "{\"cmd\":\"DISPATCH\"} x",
+                "{\"cmd\":\"\\x\"}", "{\"evt\":\"\\u12\"}", "{\"evt\":\"\\u12zz\"}", "{\"data\":{\"a\":\"\\q\"}}", "{\"cmd\":\"DISPATCH"
+        };
+
+        for (String json : invalid) {
+            try {
+                check(!decode(message, json), "accepted " + json);
+            } catch (RuntimeException e) {
+                throw new AssertionError("InboundMessage threw " + e + " decoding " + json, e);
+            }
+        }
+    }
+
+    /**
+     * The built-in codec only encodes the sections of an activity that changed. Every activity it writes must still
+     * carry the complete presence, exactly as the Gson codec writes it
+     */
+    private static void activities() {
+        JsonCodec streaming = new StreamingJsonCodec();
+        JsonCodec gson = new GsonJsonCodec();
+
+        DiscordRichPresence full = DiscordRichPresence.builder()
+                .state("In a match")
+                .details("Ranked \"quoted\" \\ \u00e9\uD83D\uDE00")
+                .startTimestamp(1700000000L)
+                .largeImageKey("large")
+                .largeImageText("Large")
+                .smallImageKey("small")
+                .partyId("party")
+                .partySize(2)
+                .partyMax(4)
+                .privacy(PartyPrivacy.PUBLIC)
+                .joinSecret("join")
+                .spectateSecret("spectate")
+                .activityType(ActivityType.WATCHING)
+                .button(DiscordRichPresence.RPCButton.of("Website", "https://example.com"))
+                .build();
+
+        DiscordRichPresence[] sequence = {
+                full,
+                full,
+                DiscordRichPresence.builder().state("In a match").details("Ranked \"quoted\" \\ \u00e9\uD83D\uDE00").startTimestamp(1700000000L)
+                        .largeImageKey("large").largeImageText("Large").smallImageKey("small").partyId("party").partySize(3).partyMax(4)
+                        .privacy(PartyPrivacy.PUBLIC).joinSecret("join").spectateSecret("spectate").activityType(ActivityType.WATCHING)
+                        .button(DiscordRichPresence.RPCButton.of("Website", "https://example.com")).build(),
+                DiscordRichPresence.builder().state("Idle").build(),
+                // Invalid buttons are skipped before the first two are taken
+                DiscordRichPresence.builder().state("Idle")
+                        .button(DiscordRichPresence.RPCButton.of("", "https://example.com/invalid"))
+                        .button(DiscordRichPresence.RPCButton.of("First", "https://example.com/1"))
+                        .button(DiscordRichPresence.RPCButton.of("Second with a label longer than thirty-two characters", "https://example.com/2"))
+                        .build(),
+                DiscordRichPresence.builder().state("Idle")
+                        .button(DiscordRichPresence.RPCButton.of("First", null))
+                        .button(DiscordRichPresence.RPCButton.of("Only", "https://example.com/only"))
+                        .build(),
+                DiscordRichPresence.builder().build(),
+                full,
+                DiscordRichPresence.builder().state("Idle").endTimestamp(1700003600L).instance(true).build()
+        };
+
+        for (int i = 0; i < sequence.length; i++) {
+            long nonce = 100 + i;
+            JsonObject expected = parse(gson.writeActivity(sequence[i], 1234, nonce));
+            JsonObject actual = parse(streaming.writeActivity(sequence[i], 1234, nonce));
+
+            check(actual.get("cmd").getAsString().equals("SET_ACTIVITY"), "activity " + i + " has cmd " + actual.get("cmd"));
+            check(actual.get("nonce").getAsLong() == nonce, "activity " + i + " has nonce " + actual.get("nonce"));
+            check(actual.get("args").equals(expected.get("args")), "activity " + i + " encoded as " + actual.get("args") + ", expected " + expected.get("args"));
+        }
+    }
+
+    private static <T> void compare(JsonCodec streaming, JsonCodec gson, String json, Class<T> type) {
+        byte[] bytes = bytes(json);
+        String expected = describe(gson.read(bytes, 0, bytes.length, type));
+        String actual = describe(streaming.read(bytes, 0, bytes.length, type));
+
+        check(expected.equals(actual), type.getSimpleName() + " from " + json + " decoded as " + actual + ", expected " + expected);
+    }
+
+    /**
+     * The models don't implement equals, so they are compared by their fields
+     */
+    private static String describe(Object value) {
+        if (value == null)
+            return "null";
+
+        if (value instanceof User) {
+            User user = (User) value;
+            return "User[" + quote(user.getUserId()) + ", " + quote(user.getUsername()) + ", " + quote(user.getDiscriminator())
+                    + ", " + quote(user.getGlobalName()) + ", " + quote(user.getAvatar()) + "]";
+        }
+
+        if (value instanceof ReadyEvent)
+            return "Ready[" + ((ReadyEvent) value).getVersion() + ", " + describe(((ReadyEvent) value).getUser()) + "]";
+
+        if (value instanceof ErrorEvent)
+            return "Error[" + ((ErrorEvent) value).getCode() + ", " + quote(((ErrorEvent) value).getMessage()) + "]";
+
+        if (value instanceof SecretEvent)
+            return "Secret[" + quote(((SecretEvent) value).getSecret()) + "]";
+
+        if (value instanceof DiscordJoinRequest)
+            return "JoinRequest[" + describe(((DiscordJoinRequest) value).getUser()) + "]";
+
+        if (value instanceof InboundMessage) {
+            InboundMessage message = (InboundMessage) value;
+            return "Message[" + quote(message.getCmd()) + ", " + quote(message.getEvt()) + ", " + quote(message.getNonce()) + "]";
+        }
+
+        throw new IllegalArgumentException("Can't describe " + value.getClass());
+    }
+
+    private static String quote(String value) {
+        return value == null ? "null" : "\"" + value + "\"";
+    }
+
+    private static boolean decode(InboundMessage message, String json) {
+        byte[] bytes = bytes(json);
+        return message.decode(bytes, 0, bytes.length);
+    }
+
+    private static JsonObject parse(byte[] bytes) {
+        JsonElement element = JsonParser.parseString(new String(bytes, StandardCharsets.UTF_8));
+        return Objects.requireNonNull(element).getAsJsonObject();
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition)
+            throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,254 @@
+import dev.firstdark.rpc.DiscordRpc;
+import dev.firstdark.rpc.LoopbackSession;
+import dev.firstdark.rpc.RpcFixtures;
+import dev.firstdark.rpc.connection.unix.IUnixBackend;
+import dev.firstdark.rpc.connection.unix.LoopbackBackend;
+import dev.firstdark.rpc.models.DiscordRichPresence;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long {@link DiscordRpc#shutdown(Duration)} takes, over many runs, and checks the distribution stays within the deadline.
+ * Covers an idle connection, flushing a final presence (with and without the IO thread), an IO thread stuck in a blocking read,
+ * and Discord not running.
+ * <p>
+ * Usage: ShutdownTest [runs]
+ */
+public class ShutdownTest {
+
+    private static final Duration DEADLINE = Duration.ofMillis(500);
+    private static final Duration STUCK_DEADLINE = Duration.ofMillis(200);
+
+    // Time allowed on top of the deadline, for scheduling noise
+    private static final long SLACK_MS = 20;
+
+    // How long a blocked read takes to notice its pipe was closed. Longer than the grace period, so the IO thread misses the deadline
+    private static final long LATE_WAKE_MS = 250;
+
+    // Set when the blocked IO thread dies with an exception, like touching a connection that shutdown already tore down
+    private static volatile Throwable uncaught;
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+
+        long[] idle = new long[runs];
+        long[] flush = new long[runs];
+        long[] manual = new long[runs];
+        long[] stuck = new long[runs];
+        long[] offline = new long[runs];
+
+        for (int i = 0; i < runs; i++) {
+            idle[i] = idle(i);
+            flush[i] = flush(i, false);
+            manual[i] = flush(i, true);
+            stuck[i] = stuck(i);
+            offline[i] = offline(i);
+        }
+
+        report("idle", idle, DEADLINE);
+        report("flush", flush, DEADLINE);
+        report("flush (no IO thread)", manual, DEADLINE);
+        report("stuck read", stuck, STUCK_DEADLINE);
+        report("offline", offline, DEADLINE);
+
+        System.out.println("All shutdown checks passed");
+    }
+
+    /**
+     * Nothing is queued, so shutdown only has to stop the IO thread
+     */
+    private static long idle(int run) throws Exception {
+        BlockingBackend backend = new BlockingBackend();
+        LoopbackSession session = new LoopbackSession(backend.discord, backend, false);
+        session.awaitReady(5000);
+
+        long start = System.nanoTime();
+        boolean clean = session.getRpc().shutdown(DEADLINE);
+        long elapsed = System.nanoTime() - start;
+
+        RpcFixtures.check(clean, "Run " + run, "idle shutdown was not clean");
+        return elapsed;
+    }
+
+    /**
+     * A presence queued right before shutdown must reach Discord
+     */
+    private static long flush(int run, boolean disableIoThread) throws Exception {
+        BlockingBackend backend = new BlockingBackend();
+        LoopbackSession session = new LoopbackSession(backend.discord, backend, disableIoThread);
+        session.awaitReady(5000);
+
+        String state = "final-" + run;
+        session.getRpc().updatePresence(DiscordRichPresence.builder().state(state).build());
+
+        long start = System.nanoTime();
+        boolean clean = session.getRpc().shutdown(DEADLINE);
+        long elapsed = System.nanoTime() - start;
+
+        RpcFixtures.check(clean, "Run " + run, "final presence was not flushed");
+        session.serve();
+        List<String> presences = session.getPresences();
+        RpcFixtures.check(!presences.isEmpty() && presences.get(presences.size() - 1).equals(state), "Run " + run, "final presence never reached Discord");
+        return elapsed;
+    }
+
+    /**
+     * The IO thread blocks in a read that never returns, until the connection is closed
+     */
+    private static long stuck(int run) throws Exception {
+        BlockingBackend backend = new BlockingBackend();
+        LoopbackSession session = new LoopbackSession(backend.discord, backend, false);
+        session.awaitReady(5000);
+
+        backend.block();
+        backend.awaitBlocked();
+        session.getRpc().updatePresence(DiscordRichPresence.builder().state("never sent").build());
+
+        long start = System.nanoTime();
+        boolean clean = session.getRpc().shutdown(STUCK_DEADLINE);
+        long elapsed = System.nanoTime() - start;
+
+        RpcFixtures.check(!clean, "Run " + run, "shutdown reported a clean stop while the IO thread was stuck");
+
+        // Closing the pipe releases the read. The IO thread must then close the connection itself, and stop without an error
+        Thread ioThread = backend.getBlockedThread();
+        ioThread.join(5000);
+        RpcFixtures.check(!ioThread.isAlive(), "Run " + run, "IO thread did not stop after its pipe was closed");
+        RpcFixtures.check(uncaught == null, "Run " + run, "IO thread failed after shutdown: " + uncaught);
+        return elapsed;
+    }
+
+    /**
+     * Discord is not running, so queued updates can't be sent, and shutdown must not wait for them
+     */
+    private static long offline(int run) throws Exception {
+        BlockingBackend backend = new BlockingBackend();
+        LoopbackSession session = new LoopbackSession(backend.discord, backend, false);
+        backend.refuse();
+        session.getRpc().updatePresence(DiscordRichPresence.builder().state("offline").build());
+
+        long start = System.nanoTime();
+        boolean clean = session.getRpc().shutdown(DEADLINE);
+        long elapsed = System.nanoTime() - start;
+
+        RpcFixtures.check(!clean, "Run " + run, "shutdown reported the presence as sent while offline");
+        return elapsed;
+    }
+
+    private static void report(String scenario, long[] nanos, Duration deadline) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+
+        long p50 = sorted[(sorted.length - 1) / 2];
+        long p99 = sorted[(int) Math.ceil(sorted.length * 0.99) - 1];
+        long max = sorted[sorted.length - 1];
+
+        System.out.printf("%-22s p50=%6.2fms p99=%6.2fms max=%6.2fms (deadline %dms)%n",
+                scenario, p50 / 1e6, p99 / 1e6, max / 1e6, deadline.toMillis());
+
+        if (TimeUnit.NANOSECONDS.toMillis(max) > deadline.toMillis() + SLACK_MS)
+            throw new AssertionError(scenario + ": shutdown took " + TimeUnit.NANOSECONDS.toMillis(max) + "ms, deadline was " + deadline.toMillis() + "ms");
+    }
+
+    /**
+     * Passes everything through to a loopback, but can refuse to connect, or block reads until the pipe is closed,
+     * like a socket read that never returns
+     */
+    private static class BlockingBackend implements IUnixBackend {
+
+        final LoopbackBackend discord = new LoopbackBackend();
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private volatile boolean block;
+        private volatile boolean refuse;
+        private volatile Thread blockedThread;
+
+        void block() {
+            this.block = true;
+        }
+
+        void refuse() {
+            this.refuse = true;
+        }
+
+        Thread getBlockedThread() {
+            return this.blockedThread;
+        }
+
+        void awaitBlocked() throws InterruptedException {
+            if (!this.blocked.await(5, TimeUnit.SECONDS))
+                throw new AssertionError("IO thread never read from the pipe");
+        }
+
+        @Override
+        public void openPipe(String path) throws IOException {
+            if (this.refuse)
+                throw new IOException("Connection refused");
+
+            this.discord.openPipe(path);
+        }
+
+        @Override
+        public void closePipe() {
+            this.discord.closePipe();
+            this.closed.countDown();
+        }
+
+        @Override
+        public void write(byte[] bytes) throws IOException {
+            this.discord.write(bytes);
+        }
+
+        @Override
+        public int write(byte[] bytes, int offset, int length) throws IOException {
+            return this.discord.write(bytes, offset, length);
+        }
+
+        @Override
+        public int getAvailable() {
+            return this.discord.getAvailable();
+        }
+
+        @Override
+        public int read(byte[] bytes) {
+            return this.discord.read(bytes);
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            return this.discord.read(bytes, offset, length);
+        }
+
+        @Override
+        public int readAvailable(byte[] bytes, int offset, int length) throws IOException {
+            if (this.block) {
+                this.blockedThread = Thread.currentThread();
+                this.blockedThread.setUncaughtExceptionHandler((thread, error) -> uncaught = error);
+                this.blocked.countDown();
+
+                try {
+                    this.closed.await();
+
+                    // Like a read that only notices the closed pipe late: shutdown has returned by the time the IO thread runs again
+                    Thread.sleep(LATE_WAKE_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                throw new IOException("Pipe closed while reading");
+            }
+
+            return IUnixBackend.super.readAvailable(bytes, offset, length);
+        }
+
+        @Override
+        public boolean isConnected() {
+            return this.discord.isConnected();
+        }
+    }
+}
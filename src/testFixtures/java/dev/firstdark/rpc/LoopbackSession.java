@@ -0,0 +1,177 @@
+package dev.firstdark.rpc;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import dev.firstdark.rpc.connection.unix.IUnixBackend;
+import dev.firstdark.rpc.connection.unix.LoopbackBackend;
+import dev.firstdark.rpc.enums.OpCode;
+import dev.firstdark.rpc.exceptions.NoDiscordClientException;
+import dev.firstdark.rpc.handlers.RPCEventHandler;
+import dev.firstdark.rpc.models.DiscordJoinRequest;
+import dev.firstdark.rpc.models.User;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * @author HypherionSA
+ * An SDK instance wired to a fake Discord client through a {@link LoopbackBackend}. The fake client answers every handshake
+ * with {@link #READY}, and records the presences the SDK sends. The events the SDK reports are recorded too
+ */
+public class LoopbackSession {
+
+    public static final String APP_ID = "1000773209924317265";
+    public static final String READY = "{\"cmd\":\"DISPATCH\",\"evt\":\"READY\",\"nonce\":null,\"data\":{\"v\":1,\"user\":{\"id\":\"1\",\"username\":\"test\"}}}";
+
+    @Getter
+    private final LoopbackBackend discord;
+
+    @Getter
+    private final DiscordRpc rpc;
+
+    // Usernames of the join requests, and states of the presences (empty when cleared), in the order they arrived
+    @Getter
+    private final List<String> joinRequests = new CopyOnWriteArrayList<>();
+
+    @Getter
+    private final List<String> presences = new CopyOnWriteArrayList<>();
+
+    @Getter
+    private volatile int readyCount;
+
+    private final boolean manual;
+    private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+    private int connection;
+
+    /**
+     * Connect an SDK instance straight to the fake Discord client
+     *
+     * @param disableIoThread True to drive the SDK from {@link #tick()}, instead of its IO thread
+     */
+    public LoopbackSession(boolean disableIoThread) {
+        this(new LoopbackBackend(), null, disableIoThread);
+    }
+
+    /**
+     * Connect an SDK instance to the fake Discord client, through another transport
+     *
+     * @param discord The fake Discord client
+     * @param transport The backend the SDK uses, which passes through to the client, or null to use the client directly
+     * @param disableIoThread True to drive the SDK from {@link #tick()}, instead of its IO thread
+     */
+    public LoopbackSession(@NotNull LoopbackBackend discord, @Nullable IUnixBackend transport, boolean disableIoThread) {
+        this.discord = discord;
+        this.manual = disableIoThread;
+        this.rpc = new DiscordRpc(disableIoThread);
+
+        // Every reconnect must be seen here, so flap damping is turned off
+        this.rpc.setFlapWindowMs(0);
+        RpcFixtures.init(this.rpc, APP_ID, new RPCEventHandler() {
+            @Override
+            public void ready(User user) {
+                readyCount++;
+            }
+
+            @Override
+            public void joinRequest(DiscordJoinRequest joinRequest) {
+                joinRequests.add(joinRequest.getUser().getUsername());
+            }
+        }, transport == null ? discord : transport, "loopback");
+    }
+
+    /**
+     * Let the fake client answer, until the SDK reports it is ready
+     *
+     * @param timeoutMs How long to wait
+     */
+    public void awaitReady(long timeoutMs) throws NoDiscordClientException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+
+        while (this.readyCount == 0) {
+            if (System.currentTimeMillis() > deadline)
+                throw new AssertionError("SDK never became ready");
+
+            this.tick();
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Run one IO tick of the SDK when its IO thread is disabled, then let the fake client respond to what it sent
+     */
+    public void tick() throws NoDiscordClientException {
+        if (this.manual)
+            this.rpc.updateConnection();
+
+        this.serve();
+
+        if (this.manual)
+            this.rpc.runCallbacks();
+    }
+
+    /**
+     * Read the frames the SDK sent to the fake client, answering handshakes and recording presences
+     */
+    public void serve() {
+        // A new connection is a new byte stream, so drop any partial frame from the old one
+        if (this.discord.getConnections() != this.connection) {
+            this.connection = this.discord.getConnections();
+            this.received.reset();
+        }
+
+        byte[] bytes = this.discord.drainOutbound();
+        this.received.write(bytes, 0, bytes.length);
+
+        ByteBuffer buffer = ByteBuffer.wrap(this.received.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+
+        while (buffer.remaining() >= 8) {
+            buffer.mark();
+            int opCode = buffer.getInt();
+            int length = buffer.getInt();
+
+            if (buffer.remaining() < length) {
+                buffer.reset();
+                break;
+            }
+
+            byte[] payload = new byte[length];
+            buffer.get(payload);
+            this.handle(OpCode.values()[opCode], new String(payload, StandardCharsets.UTF_8));
+        }
+
+        this.received.reset();
+        this.received.write(buffer.array(), buffer.position(), buffer.remaining());
+    }
+
+    /**
+     * @param username The username of the user asking to join
+     * @return An ACTIVITY_JOIN_REQUEST event, to feed to the SDK
+     */
+    public static String joinRequest(String username) {
+        return "{\"cmd\":\"DISPATCH\",\"evt\":\"ACTIVITY_JOIN_REQUEST\",\"nonce\":null,\"data\":{\"user\":{\"id\":\"2\",\"username\":\"" + username + "\"}}}";
+    }
+
+    private void handle(OpCode opCode, String json) {
+        // Writes are never corrupted, so every frame the SDK sends must be valid JSON
+        JsonObject message = JsonParser.parseString(json).getAsJsonObject();
+
+        if (opCode == OpCode.HANDSHAKE) {
+            this.discord.feedFrame(OpCode.FRAME, READY);
+            return;
+        }
+
+        if (message.get("cmd").getAsString().equals("SET_ACTIVITY")) {
+            JsonElement activity = message.getAsJsonObject("args").get("activity");
+            JsonElement state = activity == null || !activity.isJsonObject() ? null : activity.getAsJsonObject().get("state");
+            this.presences.add(state == null || state.isJsonNull() ? "" : state.getAsString());
+        }
+    }
+}
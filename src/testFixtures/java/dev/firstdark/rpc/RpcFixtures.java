@@ -0,0 +1,42 @@
+package dev.firstdark.rpc;
+
+import dev.firstdark.rpc.connection.unix.IUnixBackend;
+import dev.firstdark.rpc.handlers.DiscordEventHandler;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * @author HypherionSA
+ * Access to the parts of {@link DiscordRpc} that tests and benchmarks need, but that are not part of the public API,
+ * and helpers shared by the main-method tests
+ */
+public final class RpcFixtures {
+
+    private RpcFixtures() {}
+
+    /**
+     * Start an RPC connection over a specific UNIX socket, instead of scanning for a Discord client.
+     * Used to run the SDK against a local or in-memory IPC server
+     *
+     * @param rpc The SDK instance to start
+     * @param applicationId The discord Application ID to use
+     * @param handler Optional {@link DiscordEventHandler} to handle events
+     * @param backend The {@link IUnixBackend} to use, or null to use the default backend
+     * @param pipePath The socket path to connect to
+     */
+    public static void init(@NotNull DiscordRpc rpc, @NotNull String applicationId, @Nullable DiscordEventHandler handler, @Nullable IUnixBackend backend, @NotNull String pipePath) {
+        rpc.init(applicationId, handler, backend, pipePath);
+    }
+
+    /**
+     * Fail a main-method test when a condition doesn't hold
+     *
+     * @param condition The condition that must hold
+     * @param scope What was being tested, like the seed or run, to prefix the message with
+     * @param message What went wrong
+     */
+    public static void check(boolean condition, @NotNull String scope, @NotNull String message) {
+        if (!condition)
+            throw new AssertionError(scope + ": " + message);
+    }
+}
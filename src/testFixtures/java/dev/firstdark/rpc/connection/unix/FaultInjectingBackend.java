@@ -0,0 +1,226 @@
+package dev.firstdark.rpc.connection.unix;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author HypherionSA
+ * {@link IUnixBackend} decorator that injects I/O faults described by a {@link FaultProfile}.
+ * Faults are driven by a seeded random number generator, so a failing run can be reproduced with the same seed.
+ * Used to test that the protocol stack survives short reads and writes, delays, stalls, dropped connections and corrupt frames
+ */
+public class FaultInjectingBackend implements IUnixBackend {
+
+    private static final int HEADER_SIZE = 8;
+
+    private final IUnixBackend delegate;
+    private final FaultProfile profile;
+    private final Random random;
+
+    @Getter private final AtomicLong shortReads = new AtomicLong();
+    @Getter private final AtomicLong shortWrites = new AtomicLong();
+    @Getter private final AtomicLong delays = new AtomicLong();
+    @Getter private final AtomicLong stalls = new AtomicLong();
+    @Getter private final AtomicLong drops = new AtomicLong();
+    @Getter private final AtomicLong corruptHeaders = new AtomicLong();
+
+    /**
+     * Faults are only injected while enabled. Useful to let a connection recover after a burst of chaos
+     */
+    @Getter
+    @Setter
+    private volatile boolean enabled = true;
+
+    // Tracks where we are in the inbound frame stream, so headers can be found and corrupted
+    private final byte[] header = new byte[HEADER_SIZE];
+    private int headerRead;
+    private long payloadRemaining;
+
+    /**
+     * Wrap a backend with fault injection
+     *
+     * @param delegate The backend that performs the real I/O
+     * @param profile The faults to inject
+     */
+    public FaultInjectingBackend(IUnixBackend delegate, FaultProfile profile) {
+        this.delegate = delegate;
+        this.profile = profile;
+        this.random = new Random(profile.getSeed());
+    }
+
+    @Override
+    public void openPipe(String path) throws IOException {
+        this.resetFrameTracking();
+        this.delegate.openPipe(path);
+    }
+
+    @Override
+    public void closePipe() throws IOException {
+        this.resetFrameTracking();
+        this.delegate.closePipe();
+    }
+
+    @Override
+    public void write(byte[] bytes) throws IOException {
+        int offset = 0;
+
+        // The array must be written completely, so short writes are retried
+        while (offset < bytes.length) {
+            int written = this.write(bytes, offset, bytes.length - offset);
+
+            if (written < 0)
+                throw new IOException("Pipe closed while writing");
+
+            offset += written;
+        }
+    }
+
+    @Override
+    public int write(byte[] bytes, int offset, int length) throws IOException {
+        this.injectTiming();
+
+        if (length > 1 && this.chance(this.profile.getShortWriteChance())) {
+            this.shortWrites.incrementAndGet();
+            length = 1 + this.nextInt(length - 1);
+        }
+
+        return this.delegate.write(bytes, offset, length);
+    }
+
+    @Override
+    public int getAvailable() throws IOException {
+        return this.delegate.getAvailable();
+    }
+
+    @Override
+    public int read(byte[] bytes) throws IOException {
+        return this.read(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        this.injectTiming();
+
+        if (length > 1 && this.chance(this.profile.getShortReadChance())) {
+            this.shortReads.incrementAndGet();
+            length = 1 + this.nextInt(length - 1);
+        }
+
+        int read = this.delegate.read(bytes, offset, length);
+
+        if (read > 0)
+            this.trackInbound(bytes, offset, read);
+
+        return read;
+    }
+
+    @Override
+    public boolean awaitWritable(long timeoutNanos) throws IOException {
+        return this.delegate.awaitWritable(timeoutNanos);
+    }
+
+    @Override
+    public void wakeup() {
+        this.delegate.wakeup();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return this.delegate.isConnected();
+    }
+
+    /**
+     * Inject latency, stalls and dropped connections before an I/O call
+     *
+     * @throws IOException Thrown when the connection was dropped
+     */
+    private void injectTiming() throws IOException {
+        if (this.chance(this.profile.getDropChance())) {
+            this.drops.incrementAndGet();
+            this.delegate.closePipe();
+            throw new IOException("Injected connection drop");
+        }
+
+        long sleep = 0;
+
+        if (this.chance(this.profile.getStallChance())) {
+            this.stalls.incrementAndGet();
+            sleep = this.profile.getStallMs();
+        } else if (this.profile.getMaxLatencyMs() > 0 && this.chance(this.profile.getLatencyChance())) {
+            this.delays.incrementAndGet();
+            sleep = this.nextInt((int) Math.min(Integer.MAX_VALUE, this.profile.getMaxLatencyMs() + 1));
+        }
+
+        if (sleep <= 0)
+            return;
+
+        try {
+            Thread.sleep(sleep);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Follow the frame boundaries of the bytes handed to the caller, corrupting headers as they pass
+     *
+     * @param bytes The buffer that was read into
+     * @param offset The offset of the first byte read
+     * @param count The number of bytes read
+     */
+    private void trackInbound(byte[] bytes, int offset, int count) {
+        int position = offset;
+        int end = offset + count;
+
+        while (position < end) {
+            if (this.payloadRemaining > 0) {
+                int skip = (int) Math.min(this.payloadRemaining, end - position);
+                this.payloadRemaining -= skip;
+                position += skip;
+                continue;
+            }
+
+            // Decide once per frame, when its first header byte passes through
+            if (this.headerRead == 0 && this.chance(this.profile.getCorruptHeaderChance())) {
+                this.corruptHeaders.incrementAndGet();
+                this.headerRead = -HEADER_SIZE;
+            }
+
+            boolean corrupt = this.headerRead < 0;
+            int index = corrupt ? this.headerRead + HEADER_SIZE : this.headerRead;
+            this.header[index] = bytes[position];
+
+            // Byte 3 is the top byte of the opcode, byte 7 the top byte of the length. Setting either makes the header invalid
+            if (corrupt && (index == 3 || index == 7))
+                bytes[position] = (byte) 0x7F;
+
+            this.headerRead++;
+            position++;
+
+            if (index == HEADER_SIZE - 1) {
+                this.headerRead = 0;
+                this.payloadRemaining = (this.header[4] & 0xFFL)
+                        | (this.header[5] & 0xFFL) << 8
+                        | (this.header[6] & 0xFFL) << 16
+                        | (this.header[7] & 0xFFL) << 24;
+            }
+        }
+    }
+
+    private void resetFrameTracking() {
+        this.headerRead = 0;
+        this.payloadRemaining = 0;
+    }
+
+    private synchronized boolean chance(double chance) {
+        return this.enabled && chance > 0 && this.random.nextDouble() < chance;
+    }
+
+    private synchronized int nextInt(int bound) {
+        return this.random.nextInt(bound);
+    }
+}
@@ -0,0 +1,61 @@
+package dev.firstdark.rpc.connection.unix;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * @author HypherionSA
+ * Describes which faults a {@link FaultInjectingBackend} should inject, and how often.
+ * All chances are between 0 (never) and 1 (on every call). Use {@link FaultProfile#builder()} to get started
+ */
+@Builder
+@Getter
+public class FaultProfile {
+
+    /**
+     * Seed for the random number generator, so failures can be reproduced
+     */
+    @Builder.Default
+    private final long seed = 0L;
+
+    /**
+     * Chance that a read returns fewer bytes than requested
+     */
+    private final double shortReadChance;
+
+    /**
+     * Chance that a write accepts fewer bytes than requested
+     */
+    private final double shortWriteChance;
+
+    /**
+     * Chance that a read or write is delayed by up to {@link #maxLatencyMs}
+     */
+    private final double latencyChance;
+    private final long maxLatencyMs;
+
+    /**
+     * Chance that a read or write stalls for {@link #stallMs}
+     */
+    private final double stallChance;
+    private final long stallMs;
+
+    /**
+     * Chance that a read or write drops the connection
+     */
+    private final double dropChance;
+
+    /**
+     * Chance that an inbound frame header is corrupted, with an invalid opcode or length
+     */
+    private final double corruptHeaderChance;
+
+    /**
+     * A profile that injects nothing
+     *
+     * @return The profile
+     */
+    public static FaultProfile none() {
+        return FaultProfile.builder().build();
+    }
+}